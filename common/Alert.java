@@ -1,5 +1,9 @@
 package common;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Date;
 
@@ -30,9 +34,26 @@ public class Alert implements Serializable {
     private AlertPriority priority;
     private int sourceId;  // ID de la machine ou station
     private String sourceName;
+    private transient Machine.PartType partType;  // Pièce concernée (alertes de stockage), sérialisée par son nom
     private String message;
     private Date timestamp;
     private boolean resolved;
+    private volatile int occurrences = 1;  // Doublons regroupés sur cette alerte par le serveur
+    
+    // Forme sérialisée: champs d'origine, plus partType (nom de l'enum) et occurrences, ignorés
+    // par un ancien client; aucune classe qu'il ne connaît pas (Machine.PartType) dans le flux
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("type", AlertType.class),
+        new ObjectStreamField("priority", AlertPriority.class),
+        new ObjectStreamField("sourceId", int.class),
+        new ObjectStreamField("sourceName", String.class),
+        new ObjectStreamField("partType", String.class),
+        new ObjectStreamField("message", String.class),
+        new ObjectStreamField("timestamp", Date.class),
+        new ObjectStreamField("resolved", boolean.class),
+        new ObjectStreamField("occurrences", int.class)
+    };
     
     public Alert() {
         this.timestamp = new Date();
@@ -49,6 +70,14 @@ public class Alert implements Serializable {
         this.priority = determinePriority(type);
     }
     
+    /**
+     * Alerte de stockage: la pièce concernée est portée par partType, pas par le message
+     */
+    public Alert(AlertType type, int sourceId, String sourceName, Machine.PartType partType, String message) {
+        this(type, sourceId, sourceName, message);
+        this.partType = partType;
+    }
+    
     private AlertPriority determinePriority(AlertType type) {
         switch (type) {
             case MACHINE_FAILURE:
@@ -109,6 +138,14 @@ public class Alert implements Serializable {
         this.sourceName = sourceName;
     }
     
+    public Machine.PartType getPartType() {
+        return partType;
+    }
+    
+    public void setPartType(Machine.PartType partType) {
+        this.partType = partType;
+    }
+    
     public String getMessage() {
         return message;
     }
@@ -133,9 +170,47 @@ public class Alert implements Serializable {
         this.resolved = resolved;
     }
     
+    public int getOccurrences() {
+        return occurrences;
+    }
+    
+    public void setOccurrences(int occurrences) {
+        this.occurrences = occurrences;
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("type", type);
+        fields.put("priority", priority);
+        fields.put("sourceId", sourceId);
+        fields.put("sourceName", sourceName);
+        fields.put("partType", partType != null ? partType.name() : null);
+        fields.put("message", message);
+        fields.put("timestamp", timestamp);
+        fields.put("resolved", resolved);
+        fields.put("occurrences", occurrences);
+        out.writeFields();
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        type = (AlertType) fields.get("type", null);
+        priority = (AlertPriority) fields.get("priority", null);
+        sourceId = fields.get("sourceId", 0);
+        sourceName = (String) fields.get("sourceName", null);
+        String part = (String) fields.get("partType", null);
+        partType = part != null ? Machine.PartType.valueOf(part) : null;
+        message = (String) fields.get("message", null);
+        timestamp = (Date) fields.get("timestamp", null);
+        resolved = fields.get("resolved", false);
+        occurrences = fields.get("occurrences", 1);  // Alerte d'un ancien client: une occurrence
+    }
+    
     @Override
     public String toString() {
-        return String.format("[%s] Alert[type=%s, priority=%s, from=%s, msg=%s, resolved=%s]",
-                timestamp, type, priority, sourceName, message, resolved);
+        return String.format("[%s] Alert[type=%s, priority=%s, from=%s, msg=%s, resolved=%s, occurrences=%d]",
+                timestamp, type, priority, sourceName, message, resolved, occurrences);
     }
 }
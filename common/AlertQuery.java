@@ -0,0 +1,127 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * Requête de recherche d'alertes (message ALERT_QUERY), par pages
+ *
+ * Filtres cumulés, chacun optionnel: source, type, priorité, état résolu, intervalle de dates.
+ * Résultats du plus récent au plus ancien (date puis identifiant). La page suivante repart
+ * de la dernière alerte reçue (nextPage), sans décalage à recompter côté serveur.
+ */
+public class AlertQuery implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 1000;
+
+    private int sourceId;                 // 0 = toutes les sources
+    private Alert.AlertType type;         // null = tous les types
+    private Alert.AlertPriority priority; // null = toutes les priorités
+    private Boolean resolved;             // null = résolues ou non
+    private long from;                    // Date minimale (ms, incluse), 0 = pas de borne
+    private long to;                      // Date maximale (ms, incluse), 0 = pas de borne
+    private int limit = DEFAULT_LIMIT;
+
+    // Curseur: dernière alerte de la page précédente (afterId 0 = première page)
+    private long afterTimestamp;
+    private int afterId;
+
+    public AlertQuery() {}
+
+    /**
+     * Même requête, à partir de l'alerte qui suit last
+     */
+    public AlertQuery nextPage(Alert last) {
+        AlertQuery next = new AlertQuery();
+        next.sourceId = sourceId;
+        next.type = type;
+        next.priority = priority;
+        next.resolved = resolved;
+        next.from = from;
+        next.to = to;
+        next.limit = limit;
+        next.afterTimestamp = last.getTimestamp() != null ? last.getTimestamp().getTime() : Long.MIN_VALUE;
+        next.afterId = last.getId();
+        return next;
+    }
+
+    // Getters and Setters
+    public int getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(int sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public Alert.AlertType getType() {
+        return type;
+    }
+
+    public void setType(Alert.AlertType type) {
+        this.type = type;
+    }
+
+    public Alert.AlertPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Alert.AlertPriority priority) {
+        this.priority = priority;
+    }
+
+    public Boolean getResolved() {
+        return resolved;
+    }
+
+    public void setResolved(Boolean resolved) {
+        this.resolved = resolved;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public void setFrom(long from) {
+        this.from = from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public void setTo(long to) {
+        this.to = to;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public long getAfterTimestamp() {
+        return afterTimestamp;
+    }
+
+    public void setAfterTimestamp(long afterTimestamp) {
+        this.afterTimestamp = afterTimestamp;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(int afterId) {
+        this.afterId = afterId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AlertQuery[source=%d, type=%s, priority=%s, resolved=%s, from=%d, to=%d, limit=%d, after=%d]",
+                sourceId, type, priority, resolved, from, to, limit, afterId);
+    }
+}
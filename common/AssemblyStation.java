@@ -18,7 +18,7 @@ public class AssemblyStation implements Serializable {
     
     private int id;
     private String name;
-    private StationState state;
+    private volatile StationState state;  // Lu sans verrou par le serveur
     private Map<String, StorageZone> storageZones;
     private int assembledProducts;
     
@@ -37,6 +37,17 @@ public class AssemblyStation implements Serializable {
         initializeStorageZones();
     }
     
+    /**
+     * Station aux zones définies par la topologie (PlantTopology)
+     */
+    public AssemblyStation(int id, String name, Map<String, StorageZone> storageZones) {
+        this.id = id;
+        this.name = name;
+        this.state = StationState.IDLE;
+        this.storageZones = storageZones;
+        this.assembledProducts = 0;
+    }
+    
     private void initializeStorageZones() {
         storageZones.put("Part_TYPE_A", new StorageZone("Part_TYPE_A", 20));
         storageZones.put("Part_TYPE_B", new StorageZone("Part_TYPE_B", 20));
@@ -1,9 +1,17 @@
 package common;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Classe représentant une machine de production
+ * L'état et le compteur de production se modifient atomiquement (compare-and-set),
+ * sans verrou global: deux machines différentes ne se bloquent jamais.
  */
 public class Machine implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -22,12 +30,74 @@ public class Machine implements Serializable {
         TYPE_D   // Pour produire la partie D
     }
     
+    /**
+     * Type de pièce produite (même ordre que MachineType, noms de l'IDL CORBA)
+     */
+    public enum PartType {
+        PART_TYPE_A("Part_TYPE_A"),
+        PART_TYPE_B("Part_TYPE_B"),
+        PART_TYPE_C("Part_TYPE_C"),
+        PART_TYPE_D("Part_TYPE_D");
+        
+        private static final PartType[] VALUES = values();
+        
+        private final String zoneName;
+        
+        PartType(String zoneName) {
+            this.zoneName = zoneName;
+        }
+        
+        /**
+         * Pièce produite par un type de machine
+         */
+        public static PartType of(MachineType type) {
+            return VALUES[type.ordinal()];
+        }
+        
+        /**
+         * Nom de la zone de stockage de cette pièce ("Part_TYPE_A")
+         */
+        public String zoneName() {
+            return zoneName;
+        }
+        
+        /**
+         * Pièce d'un nom de zone ("Part_TYPE_A"), null si inconnu
+         */
+        public static PartType ofZoneName(String zoneName) {
+            for (PartType part : VALUES) {
+                if (part.zoneName.equals(zoneName)) {
+                    return part;
+                }
+            }
+            return null;
+        }
+    }
+    
     private int id;
     private String name;
     private MachineType type;
-    private MachineState state;
-    private int productionCount;
-    private String currentPart;
+    private volatile MachineState state;
+    private volatile int productionCount;
+    private transient PartType currentPart;  // Sérialisée sous son nom de zone (String), voir writeObject
+    private int stationId;  // Station d'assemblage alimentée par la machine
+    
+    // Forme sérialisée d'origine: currentPart reste une String ("Part_TYPE_A"), un ancien client
+    // qui ne connaît pas PartType lit toujours les machines (stationId, inconnu de lui, est ignoré)
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", int.class),
+        new ObjectStreamField("name", String.class),
+        new ObjectStreamField("type", MachineType.class),
+        new ObjectStreamField("state", MachineState.class),
+        new ObjectStreamField("productionCount", int.class),
+        new ObjectStreamField("currentPart", String.class),
+        new ObjectStreamField("stationId", int.class)
+    };
+    
+    private static final AtomicReferenceFieldUpdater<Machine, MachineState> STATE =
+            AtomicReferenceFieldUpdater.newUpdater(Machine.class, MachineState.class, "state");
+    private static final AtomicIntegerFieldUpdater<Machine> PRODUCTION =
+            AtomicIntegerFieldUpdater.newUpdater(Machine.class, "productionCount");
     
     public Machine() {
         this.state = MachineState.STOPPED;
@@ -40,7 +110,7 @@ public class Machine implements Serializable {
         this.type = type;
         this.state = MachineState.STOPPED;
         this.productionCount = 0;
-        this.currentPart = "Part_" + type.name();
+        this.currentPart = PartType.of(type);
     }
     
     // Getters and Setters
@@ -84,16 +154,62 @@ public class Machine implements Serializable {
         this.productionCount = productionCount;
     }
     
-    public String getCurrentPart() {
+    public PartType getCurrentPart() {
         return currentPart;
     }
     
-    public void setCurrentPart(String currentPart) {
+    public void setCurrentPart(PartType currentPart) {
         this.currentPart = currentPart;
     }
     
-    public void incrementProduction() {
-        this.productionCount++;
+    public int getStationId() {
+        return stationId;
+    }
+    
+    public void setStationId(int stationId) {
+        this.stationId = stationId;
+    }
+    
+    /**
+     * Transition d'état atomique: réussit seulement si l'état actuel est expected
+     * Exemples: STOPPED → RUNNING (démarrage, remplacement), RUNNING → FAILURE (panne)
+     */
+    public boolean compareAndSetState(MachineState expected, MachineState update) {
+        return STATE.compareAndSet(this, expected, update);
+    }
+    
+    /**
+     * Changer l'état quel qu'il soit et retourner l'état précédent
+     */
+    public MachineState getAndSetState(MachineState update) {
+        return STATE.getAndSet(this, update);
+    }
+    
+    public int incrementProduction() {
+        return PRODUCTION.incrementAndGet(this);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("name", name);
+        fields.put("type", type);
+        fields.put("state", state);
+        fields.put("productionCount", productionCount);
+        fields.put("currentPart", currentPart != null ? currentPart.zoneName() : null);
+        fields.put("stationId", stationId);
+        out.writeFields();
+    }
+    
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        name = (String) fields.get("name", null);
+        type = (MachineType) fields.get("type", null);
+        state = (MachineState) fields.get("state", null);
+        productionCount = fields.get("productionCount", 0);
+        currentPart = PartType.ofZoneName((String) fields.get("currentPart", null));
+        stationId = fields.get("stationId", 0);
     }
     
     @Override
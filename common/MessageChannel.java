@@ -0,0 +1,131 @@
+package common;
+
+import java.io.*;
+import java.net.*;
+import java.util.Arrays;
+
+/**
+ * Connexion message par message au-dessus d'un socket
+ * Négocie le codec: binaire (WireCodec) si les deux côtés le supportent,
+ * sinon sérialisation Java pour rester compatible avec les anciens clients et serveurs.
+ */
+public class MessageChannel implements Closeable {
+    private static final byte[] JAVA_STREAM_HEADER = { (byte) 0xAC, (byte) 0xED, 0x00, 0x05 };
+
+    private final Socket socket;
+    private final boolean binary;
+
+    // Mode binaire
+    private DataInputStream dataIn;
+    private OutputStream rawOut;
+
+    // Mode sérialisation Java
+    private ObjectOutputStream objectOut;
+    private ObjectInputStream objectIn;
+
+    private MessageChannel(Socket socket, boolean binary) {
+        this.socket = socket;
+        this.binary = binary;
+    }
+
+    /**
+     * Côté client: ouvrir une connexion en proposant le codec binaire
+     * Un ancien serveur ferme la connexion en recevant MAGIC: on se reconnecte alors en sérialisation Java.
+     */
+    public static MessageChannel connect(String host, int port, boolean preferBinary) throws IOException {
+        if (preferBinary) {
+            Socket socket = openSocket(host, port);
+            try {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                out.write(WireCodec.MAGIC);
+                out.flush();
+
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                byte[] reply = new byte[WireCodec.MAGIC.length];
+                in.readFully(reply);
+                if (Arrays.equals(reply, WireCodec.MAGIC)) {
+                    MessageChannel channel = new MessageChannel(socket, true);
+                    channel.rawOut = out;
+                    channel.dataIn = in;
+                    return channel;
+                }
+            } catch (EOFException | SocketException e) {
+                // Ancien serveur: il a refusé l'en-tête binaire
+            }
+            socket.close();
+        }
+
+        Socket socket = openSocket(host, port);
+        MessageChannel channel = new MessageChannel(socket, false);
+        channel.objectOut = new ObjectOutputStream(socket.getOutputStream());
+        channel.objectIn = new ObjectInputStream(socket.getInputStream());
+        return channel;
+    }
+
+    /**
+     * Côté serveur: détecter le codec à partir des 4 premiers octets du client
+     */
+    public static MessageChannel accept(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        byte[] hello = new byte[4];
+        in.readFully(hello);
+
+        if (Arrays.equals(hello, WireCodec.MAGIC)) {
+            MessageChannel channel = new MessageChannel(socket, true);
+            channel.rawOut = new BufferedOutputStream(socket.getOutputStream());
+            channel.rawOut.write(WireCodec.MAGIC);
+            channel.rawOut.flush();
+            channel.dataIn = in;
+            return channel;
+        }
+        if (Arrays.equals(hello, JAVA_STREAM_HEADER)) {
+            MessageChannel channel = new MessageChannel(socket, false);
+            channel.objectOut = new ObjectOutputStream(socket.getOutputStream());
+            channel.objectIn = new ObjectInputStream(
+                    new SequenceInputStream(new ByteArrayInputStream(hello), in));
+            return channel;
+        }
+        throw new StreamCorruptedException("Protocole client inconnu");
+    }
+
+    private static Socket openSocket(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
+    /**
+     * Envoyer un message (plusieurs threads peuvent répondre sur la même connexion)
+     */
+    public synchronized void send(ProductionMessage message) throws IOException {
+        if (binary) {
+            WireCodec.writeFrame(rawOut, message);
+            rawOut.flush();
+        } else {
+            objectOut.writeObject(message);
+            // reset() après chaque message: tables des références bornées des deux côtés
+            objectOut.reset();
+            objectOut.flush();
+        }
+    }
+
+    public ProductionMessage receive() throws IOException, ClassNotFoundException {
+        if (binary) {
+            return WireCodec.readFrame(dataIn);
+        }
+        return (ProductionMessage) objectIn.readObject();
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public Socket getSocket() {
+        return socket;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,329 @@
+package common;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Topologie de l'usine chargée au démarrage: stations, zones de stockage et machines
+ *
+ * Format texte, une déclaration par ligne (# pour les commentaires):
+ *   station <id> <nom>                         station d'assemblage
+ *   zone <PART_TYPE_X> <capacité> [seuil]      zone de la dernière station déclarée
+ *   machine <id> <nom> <TYPE_X> [cycle]        machine rattachée à la dernière station
+ *   machines <nombre> <TYPE_X> [cycle]         machines générées: identifiants suivants, nommées Machine-M<id>
+ *   cycle <TYPE_X> <cycle>                     cycle des machines de ce type sans cycle propre
+ * cycle: durée d'un cycle de production en ms, fixe ("500") ou tirée dans un intervalle ("3000-7000");
+ * sans cycle déclaré, celui du serveur (--cycle-ms).
+ * Chaque station doit avoir une zone par type de pièce et au moins une machine par type: l'assemblage
+ * consomme une pièce de chaque.
+ *
+ * Les machines sont gardées en tableaux parallèles (ni objet ni nom par machine générée):
+ * une ligne de 100 000 machines se charge sans allouer plus que les objets Machine du serveur.
+ */
+public class PlantTopology {
+    private static final Machine.MachineType[] TYPES = Machine.MachineType.values();
+    private static final Machine.PartType[] PARTS = Machine.PartType.values();
+
+    private final List<Station> stations = new ArrayList<>();
+
+    private int machineCount;
+    private int[] machineIds = new int[16];
+    private byte[] machineTypes = new byte[16];
+    private int[] machineStations = new int[16];
+    private int[] machineCycles = new int[16];  // Indice dans cycles (0 = cycle du type)
+    private final List<int[]> cycles = new ArrayList<>(Collections.singletonList(new int[0]));
+    private final int[] typeCycles = new int[TYPES.length];
+    private final Map<Integer, String> machineNames = new HashMap<>();  // Noms explicites seulement
+    private int maxMachineId;
+    private Set<Integer> declaredIds = new HashSet<>();  // Chargement seulement (doublons)
+
+    /**
+     * Station d'assemblage et capacités de ses zones (indexées par ordinal de PartType)
+     */
+    public static final class Station {
+        private final int id;
+        private final String name;
+        private final int[] capacities = new int[PARTS.length];
+        private final int[] minThresholds = new int[PARTS.length];
+        private final int[] typeCounts = new int[TYPES.length];  // Machines rattachées, par type
+        private final int line;  // Ligne de déclaration (0 hors fichier)
+
+        Station(int id, String name, int line) {
+            this.id = id;
+            this.name = name;
+            this.line = line;
+            Arrays.fill(minThresholds, -1);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCapacity(Machine.PartType part) {
+            return capacities[part.ordinal()];
+        }
+
+        /**
+         * Zones configurées (capacité > 0), seuil par défaut de StorageZone si non précisé
+         */
+        public Map<String, StorageZone> createStorageZones() {
+            Map<String, StorageZone> zones = new HashMap<>();
+            for (Machine.PartType part : PARTS) {
+                if (capacities[part.ordinal()] > 0) {
+                    StorageZone zone = new StorageZone(part.zoneName(), capacities[part.ordinal()]);
+                    if (minThresholds[part.ordinal()] >= 0) {
+                        zone.setMinThreshold(minThresholds[part.ordinal()]);
+                    }
+                    zones.put(part.zoneName(), zone);
+                }
+            }
+            return zones;
+        }
+
+        /**
+         * Zone ou type de machine manquant (null si la station peut assembler)
+         */
+        String missing() {
+            for (Machine.PartType part : PARTS) {
+                if (capacities[part.ordinal()] <= 0) {
+                    return "aucune zone " + part.name();
+                }
+            }
+            for (Machine.MachineType type : TYPES) {
+                if (typeCounts[type.ordinal()] == 0) {
+                    return "aucune machine " + type.name();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Ligne d'origine: M1 et M2 (secours) en TYPE_A, M3 à M5 en TYPE_B à D, une station de zones de 20
+     */
+    public static PlantTopology defaultTopology() {
+        PlantTopology topology = new PlantTopology();
+        Station station = topology.addStation(100, "Station-Assemblage-Principale", 0);
+        for (Machine.PartType part : PARTS) {
+            station.capacities[part.ordinal()] = 20;
+        }
+        topology.addMachine(1, "Machine-M1", Machine.MachineType.TYPE_A);
+        topology.addMachine(2, "Machine-M2", Machine.MachineType.TYPE_A); // Backup pour M1
+        topology.addMachine(3, "Machine-M3", Machine.MachineType.TYPE_B);
+        topology.addMachine(4, "Machine-M4", Machine.MachineType.TYPE_C);
+        topology.addMachine(5, "Machine-M5", Machine.MachineType.TYPE_D);
+        topology.declaredIds = null;
+        return topology;
+    }
+
+    /**
+     * Charger un fichier de topologie
+     * @throws IOException fichier illisible ou ligne invalide (numéro de ligne dans le message)
+     */
+    public static PlantTopology load(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return parse(reader, file.getName());
+        }
+    }
+
+    public static PlantTopology parse(BufferedReader reader, String source) throws IOException {
+        PlantTopology topology = new PlantTopology();
+        Station station = null;
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].isEmpty()) {
+                continue;
+            }
+            try {
+                switch (fields[0]) {
+                    case "station":
+                        expect(fields, 3);
+                        station = topology.addStation(Integer.parseInt(fields[1]), fields[2], lineNumber);
+                        break;
+                    case "zone":
+                        expect(fields, 3);
+                        requireStation(station);
+                        int part = Machine.PartType.valueOf(fields[1]).ordinal();
+                        station.capacities[part] = Integer.parseInt(fields[2]);
+                        if (fields.length > 3) {
+                            station.minThresholds[part] = Integer.parseInt(fields[3]);
+                        }
+                        break;
+                    case "machine":
+                        expect(fields, 4);
+                        requireStation(station);
+                        topology.addMachine(Integer.parseInt(fields[1]), fields[2],
+                                Machine.MachineType.valueOf(fields[3]),
+                                fields.length > 4 ? topology.addCycle(fields[4]) : 0);
+                        break;
+                    case "machines":
+                        expect(fields, 3);
+                        requireStation(station);
+                        topology.generateMachines(Integer.parseInt(fields[1]),
+                                Machine.MachineType.valueOf(fields[2]),
+                                fields.length > 3 ? topology.addCycle(fields[3]) : 0);
+                        break;
+                    case "cycle":
+                        expect(fields, 3);
+                        topology.typeCycles[Machine.MachineType.valueOf(fields[1]).ordinal()] = topology.addCycle(fields[2]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("déclaration inconnue '" + fields[0] + "'");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException(source + ":" + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        if (topology.stations.isEmpty()) {
+            throw new IOException(source + ": aucune station déclarée");
+        }
+        for (Station s : topology.stations) {
+            String missing = s.missing();
+            if (missing != null) {
+                throw new IOException(source + ":" + s.line + ": station " + s.id + " incomplète: " + missing);
+            }
+        }
+        topology.declaredIds = null;
+        return topology;
+    }
+
+    private static void expect(String[] fields, int count) {
+        if (fields.length < count) {
+            throw new IllegalArgumentException("'" + fields[0] + "' attend " + (count - 1) + " valeurs");
+        }
+    }
+
+    private static void requireStation(Station station) {
+        if (station == null) {
+            throw new IllegalArgumentException("déclarer une station avant ses zones et machines");
+        }
+    }
+
+    private Station addStation(int id, String name, int line) {
+        for (Station s : stations) {
+            if (s.id == id) {
+                throw new IllegalArgumentException("station " + id + " déclarée deux fois");
+            }
+        }
+        Station station = new Station(id, name, line);
+        stations.add(station);
+        return station;
+    }
+
+    /**
+     * Cycle "ms" ou "min-max", enregistré une fois; retourne son indice
+     */
+    private int addCycle(String value) {
+        int dash = value.indexOf('-');
+        int min = Integer.parseInt(dash < 0 ? value : value.substring(0, dash));
+        int max = dash < 0 ? min : Integer.parseInt(value.substring(dash + 1));
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("cycle invalide: " + value);
+        }
+        cycles.add(new int[] { min, max });
+        return cycles.size() - 1;
+    }
+
+    private void addMachine(int id, String name, Machine.MachineType type) {
+        addMachine(id, name, type, 0);
+    }
+
+    private void addMachine(int id, String name, Machine.MachineType type, int cycle) {
+        if (id < 1) {
+            throw new IllegalArgumentException("identifiant machine invalide: " + id);
+        }
+        if (declaredIds.contains(id)) {
+            throw new IllegalArgumentException("machine " + id + " déclarée deux fois");
+        }
+        append(id, type, cycle);
+        if (!name.equals(defaultName(id))) {
+            machineNames.put(id, name);
+        }
+    }
+
+    private void generateMachines(int count, Machine.MachineType type, int cycle) {
+        for (int i = 0; i < count; i++) {
+            append(maxMachineId + 1, type, cycle);
+        }
+    }
+
+    private void append(int id, Machine.MachineType type, int cycle) {
+        if (machineCount == machineIds.length) {
+            int capacity = machineCount * 2;
+            machineIds = Arrays.copyOf(machineIds, capacity);
+            machineTypes = Arrays.copyOf(machineTypes, capacity);
+            machineStations = Arrays.copyOf(machineStations, capacity);
+            machineCycles = Arrays.copyOf(machineCycles, capacity);
+        }
+        machineIds[machineCount] = id;
+        machineTypes[machineCount] = (byte) type.ordinal();
+        machineStations[machineCount] = stations.size() - 1;
+        machineCycles[machineCount] = cycle;
+        machineCount++;
+        declaredIds.add(id);
+        stations.get(stations.size() - 1).typeCounts[type.ordinal()]++;
+        maxMachineId = Math.max(maxMachineId, id);
+    }
+
+    private static String defaultName(int id) {
+        return "Machine-M" + id;
+    }
+
+    public List<Station> getStations() {
+        return Collections.unmodifiableList(stations);
+    }
+
+    public int getMachineCount() {
+        return machineCount;
+    }
+
+    public int getMachineId(int index) {
+        return machineIds[index];
+    }
+
+    public String getMachineName(int index) {
+        String name = machineNames.get(machineIds[index]);
+        return name != null ? name : defaultName(machineIds[index]);
+    }
+
+    public Machine.MachineType getMachineType(int index) {
+        return TYPES[machineTypes[index]];
+    }
+
+    /**
+     * Station à laquelle la machine livre ses pièces
+     */
+    public Station getMachineStation(int index) {
+        return stations.get(machineStations[index]);
+    }
+
+    /**
+     * Cycle de production déclaré pour la machine ou pour son type: {min, max} en ms, null si aucun
+     */
+    public int[] getMachineCycle(int index) {
+        int cycle = machineCycles[index] != 0 ? machineCycles[index] : typeCycles[machineTypes[index]];
+        return cycle != 0 ? cycles.get(cycle).clone() : null;
+    }
+
+    /**
+     * Nouvelle machine (état STOPPED) décrite par l'entrée index
+     */
+    public Machine createMachine(int index) {
+        Machine m = new Machine(getMachineId(index), getMachineName(index), getMachineType(index));
+        m.setStationId(getMachineStation(index).getId());
+        return m;
+    }
+}
@@ -13,13 +13,20 @@ public class ProductionMessage implements Serializable {
         COMMAND,            // Commande de contrôle
         STATUS_UPDATE,      // Mise à jour de statut
         PRODUCTION_DATA,    // Données de production
-        ACK                 // Acquittement
+        ACK,                // Acquittement
+        SUBSCRIBE,          // Abonnement aux changements d'état
+        UNSUBSCRIBE,        // Fin d'abonnement
+        STATE_EVENT,        // Événement poussé par le serveur (payload: StateEvent)
+        SERVER_STATS,       // Statistiques des sessions: files d'envoi, pertes, déconnexions
+        ALERT_QUERY,        // Recherche d'alertes par pages (payload: AlertQuery)
+        TIME_SERIES         // Séries temporelles de production (payload: TimeSeriesQuery)
     }
     
     private MessageType type;
     private Object payload;  // Alert, ControlCommand, Machine, AssemblyStation, etc.
     private boolean success;
     private String responseMessage;
+    private long requestId;  // Corrélation requête/réponse (0 = mode synchrone)
     
     public ProductionMessage() {}
     
@@ -69,9 +76,17 @@ public class ProductionMessage implements Serializable {
         this.responseMessage = responseMessage;
     }
     
+    public long getRequestId() {
+        return requestId;
+    }
+    
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+    
     @Override
     public String toString() {
-        return String.format("ProductionMessage[type=%s, success=%s, msg=%s]",
-                type, success, responseMessage);
+        return String.format("ProductionMessage[type=%s, id=%d, success=%s, msg=%s]",
+                type, requestId, success, responseMessage);
     }
 }
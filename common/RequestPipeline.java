@@ -0,0 +1,118 @@
+package common;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Requêtes en parallèle sur une seule connexion (pipelining)
+ * Chaque requête reçoit un requestId; un thread lecteur associe les réponses,
+ * qui peuvent arriver dans le désordre, aux requêtes en attente.
+ * Un serveur sans pipelining renvoie requestId = 0: on complète alors la plus ancienne requête.
+ * Les messages STATE_EVENT poussés par le serveur sont remis à l'écouteur d'événements.
+ */
+public class RequestPipeline implements Closeable {
+    private final MessageChannel channel;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, CompletableFuture<ProductionMessage>> pending =
+            new ConcurrentSkipListMap<>();
+    private final Thread reader;
+    private volatile Consumer<StateEvent> eventListener;
+
+    public RequestPipeline(MessageChannel channel) {
+        this.channel = channel;
+        this.reader = new Thread(this::readLoop, "pipeline-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Envoyer une requête sans attendre la réponse
+     */
+    public CompletableFuture<ProductionMessage> submit(ProductionMessage request) {
+        long id = nextRequestId.incrementAndGet();
+        CompletableFuture<ProductionMessage> future = new CompletableFuture<>();
+        pending.put(id, future);
+        request.setRequestId(id);
+        try {
+            channel.send(request);
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Envoyer une requête et attendre sa réponse
+     */
+    public ProductionMessage call(ProductionMessage request) throws IOException {
+        try {
+            return submit(request).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Attente de la réponse interrompue");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Écouteur appelé (sur le thread lecteur) pour chaque événement poussé
+     */
+    public void setEventListener(Consumer<StateEvent> listener) {
+        this.eventListener = listener;
+    }
+
+    public int getInFlight() {
+        return pending.size();
+    }
+
+    private void readLoop() {
+        Throwable failure;
+        try {
+            while (true) {
+                ProductionMessage response = channel.receive();
+                if (response.getType() == ProductionMessage.MessageType.STATE_EVENT) {
+                    Consumer<StateEvent> listener = eventListener;
+                    if (listener != null) {
+                        listener.accept((StateEvent) response.getPayload());
+                    }
+                    continue;
+                }
+                CompletableFuture<ProductionMessage> future = response.getRequestId() != 0
+                        ? pending.remove(response.getRequestId())
+                        : pollOldest();
+                if (future != null) {
+                    future.complete(response);
+                }
+            }
+        } catch (EOFException e) {
+            failure = new EOFException("Connexion fermée par le serveur");
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        // Connexion perdue: échouer toutes les requêtes en attente
+        Map.Entry<Long, CompletableFuture<ProductionMessage>> entry;
+        while ((entry = pending.pollFirstEntry()) != null) {
+            entry.getValue().completeExceptionally(failure);
+        }
+    }
+
+    private CompletableFuture<ProductionMessage> pollOldest() {
+        Map.Entry<Long, CompletableFuture<ProductionMessage>> oldest = pending.pollFirstEntry();
+        return oldest != null ? oldest.getValue() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,76 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * Événement de changement d'état poussé par le serveur aux clients abonnés (SUBSCRIBE)
+ */
+public class StateEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum EventType {
+        MACHINE_STATE,        // Une machine a changé d'état
+        STORAGE_LEVEL,        // La quantité d'une zone de stockage a changé
+        ASSEMBLY_COMPLETED,   // Un produit fini a été assemblé
+        STATION_STATE,        // La station d'assemblage a changé d'état
+        ALERT_RAISED,         // Une alerte a été enregistrée
+        RESYNC,               // Client en retard: événements remplacés par l'état complet (Map)
+        ALERT_RESOLVED        // Une alerte a été résolue (résolution asynchrone)
+    }
+
+    private EventType type;
+    private Object payload;  // Machine, StorageZone, AssemblyStation, Alert (copies) ou état complet
+    private long timestamp;
+    private long version;    // Version d'état du serveur après ce changement
+
+    public StateEvent() {}
+
+    public StateEvent(EventType type, Object payload) {
+        this.type = type;
+        this.payload = payload;
+        this.timestamp = System.currentTimeMillis();
+    }
+    
+    public StateEvent(EventType type, Object payload, long version) {
+        this(type, payload);
+        this.version = version;
+    }
+
+    // Getters and Setters
+    public EventType getType() {
+        return type;
+    }
+
+    public void setType(EventType type) {
+        this.type = type;
+    }
+
+    public Object getPayload() {
+        return payload;
+    }
+
+    public void setPayload(Object payload) {
+        this.payload = payload;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("StateEvent[type=%s, version=%d, payload=%s]", type, version, payload);
+    }
+}
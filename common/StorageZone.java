@@ -12,6 +12,7 @@ public class StorageZone implements Serializable {
     private int currentQuantity;
     private int maxCapacity;
     private int minThreshold;
+    private int stationId;  // Station propriétaire de la zone
     
     public StorageZone() {
         this.currentQuantity = 0;
@@ -86,10 +87,18 @@ public class StorageZone implements Serializable {
         this.minThreshold = minThreshold;
     }
     
+    public int getStationId() {
+        return stationId;
+    }
+    
+    public void setStationId(int stationId) {
+        this.stationId = stationId;
+    }
+    
     @Override
     public String toString() {
-        return String.format("StorageZone[part=%s, qty=%d/%d, status=%s]",
-                partType, currentQuantity, maxCapacity, 
+        return String.format("StorageZone[station=%d, part=%s, qty=%d/%d, status=%s]",
+                stationId, partType, currentQuantity, maxCapacity, 
                 isEmpty() ? "EMPTY" : isFull() ? "FULL" : isLow() ? "LOW" : "OK");
     }
 }
@@ -0,0 +1,97 @@
+package common;
+
+import java.io.Serializable;
+
+/**
+ * Requête sur les séries temporelles du serveur (message TIME_SERIES)
+ *
+ * Séries échantillonnées à intervalle fixe: "machine/<id>" (pièces produites), "station/<id>"
+ * (produits assemblés), "zone/<id station>/<PART_TYPE_X>" (niveau de stock). Sans série, la réponse
+ * liste les séries connues. Avec step > 0, les points sont regroupés par intervalles de step ms.
+ */
+public class TimeSeriesQuery implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Aggregation {
+        LAST,   // Dernière valeur de l'intervalle
+        MIN,
+        MAX,
+        AVG,
+        DELTA   // Augmentation d'un compteur sur l'intervalle (pièces par intervalle)
+    }
+
+    private String series;
+    private long from;      // ms, inclus (0 = début de la rétention)
+    private long to;        // ms, inclus (0 = maintenant)
+    private long step;      // ms, 0 = points bruts
+    private Aggregation aggregation = Aggregation.LAST;
+
+    public TimeSeriesQuery() {}
+
+    public TimeSeriesQuery(String series, long from, long to, long step, Aggregation aggregation) {
+        this.series = series;
+        this.from = from;
+        this.to = to;
+        this.step = step;
+        this.aggregation = aggregation;
+    }
+
+    public static String machineSeries(int machineId) {
+        return "machine/" + machineId;
+    }
+
+    public static String stationSeries(int stationId) {
+        return "station/" + stationId;
+    }
+
+    public static String zoneSeries(int stationId, Machine.PartType part) {
+        return "zone/" + stationId + "/" + part.name();
+    }
+
+    // Getters and Setters
+    public String getSeries() {
+        return series;
+    }
+
+    public void setSeries(String series) {
+        this.series = series;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public void setFrom(long from) {
+        this.from = from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public void setTo(long to) {
+        this.to = to;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public void setStep(long step) {
+        this.step = step;
+    }
+
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    public void setAggregation(Aggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TimeSeriesQuery[series=%s, from=%d, to=%d, step=%d, %s]",
+                series, from, to, step, aggregation);
+    }
+}
@@ -0,0 +1,755 @@
+package common;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Codec binaire compact pour ProductionMessage et ses payloads
+ *
+ * Trame: [longueur int32][corps]. Le corps utilise des varints, les ordinaux
+ * des enums et des champs primitifs, sans descripteur de classe.
+ * Remplace la sérialisation Java quand client et serveur l'ont négocié (voir MessageChannel).
+ */
+public final class WireCodec {
+    /** Octets envoyés par un client binaire à l'ouverture, renvoyés par le serveur pour accepter */
+    public static final byte[] MAGIC = { 'P', 'C', 'B', 1 };
+
+    /** Taille maximale d'une trame acceptée en lecture */
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    // Étiquettes des valeurs
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_ALERT = 1;
+    private static final byte TAG_COMMAND = 2;
+    private static final byte TAG_MACHINE = 3;
+    private static final byte TAG_STATION = 4;
+    private static final byte TAG_ZONE = 5;
+    private static final byte TAG_LIST = 6;
+    private static final byte TAG_MAP = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_INT = 9;
+    private static final byte TAG_LONG = 10;
+    private static final byte TAG_BOOLEAN = 11;
+    private static final byte TAG_EVENT = 12;
+    private static final byte TAG_QUERY = 13;
+    private static final byte TAG_SERIES_QUERY = 14;
+
+    private static final int FLAG_SUCCESS = 1;
+
+    private static final ProductionMessage.MessageType[] MESSAGE_TYPES = ProductionMessage.MessageType.values();
+    private static final ControlCommand.CommandType[] COMMAND_TYPES = ControlCommand.CommandType.values();
+    private static final Alert.AlertType[] ALERT_TYPES = Alert.AlertType.values();
+    private static final Alert.AlertPriority[] ALERT_PRIORITIES = Alert.AlertPriority.values();
+    private static final Machine.MachineType[] MACHINE_TYPES = Machine.MachineType.values();
+    private static final Machine.MachineState[] MACHINE_STATES = Machine.MachineState.values();
+    private static final Machine.PartType[] PART_TYPES = Machine.PartType.values();
+    private static final AssemblyStation.StationState[] STATION_STATES = AssemblyStation.StationState.values();
+    private static final StateEvent.EventType[] EVENT_TYPES = StateEvent.EventType.values();
+    private static final TimeSeriesQuery.Aggregation[] AGGREGATIONS = TimeSeriesQuery.Aggregation.values();
+
+    private WireCodec() {}
+
+    /**
+     * Encoder un message en trame complète (préfixe de longueur inclus)
+     */
+    public static byte[] encode(ProductionMessage message) {
+        Writer w = new Writer(128);
+        w.int32(0); // Longueur, renseignée à la fin
+        writeMessage(w, message);
+        w.patchInt32(0, w.size - 4);
+        return w.toByteArray();
+    }
+
+    /**
+     * Encoder une seule fois un payload envoyé à l'identique à de nombreux clients
+     */
+    public static PreEncoded preEncode(Object value) {
+        return preEncode(value, 1024);
+    }
+
+    /**
+     * Idem, avec la taille attendue (payload de plusieurs Mo: pas d'agrandissements successifs)
+     */
+    public static PreEncoded preEncode(Object value, int expectedSize) {
+        Writer w = new Writer(Math.max(16, expectedSize));
+        writeValue(w, value);
+        return new PreEncoded(value, w.toByteArray());
+    }
+
+    /**
+     * Éléments d'une liste encodés à la suite, sans étiquette ni nombre d'éléments:
+     * segment réencodé seulement quand ses éléments changent (voir Segments)
+     */
+    public static byte[] encodeItems(List<?> items) {
+        Writer w = new Writer(64 * items.size() + 16);
+        for (Object item : items) {
+            writeValue(w, item);
+        }
+        return w.toByteArray();
+    }
+
+    /**
+     * Alerte seule, sans étiquette ni trame (enregistrements du journal des alertes)
+     */
+    public static byte[] encodeAlert(Alert alert) {
+        Writer w = new Writer(64);
+        writeAlert(w, alert);
+        return w.toByteArray();
+    }
+
+    public static Alert decodeAlert(ByteBuffer body) throws IOException {
+        try {
+            return readAlert(body);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new StreamCorruptedException("Alerte tronquée");
+        }
+    }
+
+    /**
+     * Source d'une alerte encodée (encodeAlert), lue sans décoder le reste: filtrage d'un journal
+     */
+    public static int peekAlertSource(ByteBuffer body) throws IOException {
+        ByteBuffer r = body.duplicate();
+        try {
+            readZigzag(r);                  // Identifiant
+            r.position(r.position() + 2);   // Type, priorité
+            return readZigzag(r);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new StreamCorruptedException("Alerte tronquée");
+        }
+    }
+
+    /**
+     * Début de trame d'un message dont le payload est pré-encodé: la trame complète
+     * est cet en-tête suivi de payload.buffer() (écriture groupée, sans copie du payload)
+     */
+    public static ByteBuffer encodeHeader(ProductionMessage message) {
+        PreEncoded payload = (PreEncoded) message.getPayload();
+        Writer w = new Writer(64);
+        w.int32(0);
+        writeHeader(w, message);
+        w.patchInt32(0, w.size - 4 + payload.bytes.length);
+        return ByteBuffer.wrap(w.toByteArray());
+    }
+
+    /**
+     * Décoder le corps d'une trame (sans le préfixe de longueur)
+     */
+    public static ProductionMessage decode(ByteBuffer body) throws IOException {
+        try {
+            return readMessage(body);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new StreamCorruptedException("Trame binaire tronquée");
+        }
+    }
+
+    /**
+     * Écrire une trame sur un flux
+     */
+    public static void writeFrame(OutputStream out, ProductionMessage message) throws IOException {
+        if (message.getPayload() instanceof PreEncoded) {
+            out.write(encodeHeader(message).array());
+            out.write(((PreEncoded) message.getPayload()).bytes);
+            return;
+        }
+        out.write(encode(message));
+    }
+
+    /**
+     * Lire une trame complète depuis un flux bloquant
+     */
+    public static ProductionMessage readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new StreamCorruptedException("Longueur de trame invalide: " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return decode(ByteBuffer.wrap(body));
+    }
+
+    // ------------------------------------------------------------------
+    // Encodage
+    // ------------------------------------------------------------------
+
+    private static void writeMessage(Writer w, ProductionMessage m) {
+        writeHeader(w, m);
+        writeValue(w, m.getPayload());
+    }
+
+    private static void writeHeader(Writer w, ProductionMessage m) {
+        w.enumOrdinal(m.getType());
+        w.varlong(m.getRequestId());
+        w.byte8(m.isSuccess() ? FLAG_SUCCESS : 0);
+        w.string(m.getResponseMessage());
+    }
+
+    private static void writeValue(Writer w, Object value) {
+        if (value == null) {
+            w.byte8(TAG_NULL);
+        } else if (value instanceof PreEncoded) {
+            w.raw(((PreEncoded) value).bytes);
+        } else if (value instanceof Segments) {
+            Segments segments = (Segments) value;
+            w.byte8(TAG_LIST);
+            w.varint(segments.size);
+            for (byte[] segment : segments.encoded) {
+                w.raw(segment);
+            }
+        } else if (value instanceof Machine) {
+            w.byte8(TAG_MACHINE);
+            writeMachine(w, (Machine) value);
+        } else if (value instanceof Alert) {
+            w.byte8(TAG_ALERT);
+            writeAlert(w, (Alert) value);
+        } else if (value instanceof AlertQuery) {
+            w.byte8(TAG_QUERY);
+            writeQuery(w, (AlertQuery) value);
+        } else if (value instanceof TimeSeriesQuery) {
+            w.byte8(TAG_SERIES_QUERY);
+            writeSeriesQuery(w, (TimeSeriesQuery) value);
+        } else if (value instanceof ControlCommand) {
+            w.byte8(TAG_COMMAND);
+            writeCommand(w, (ControlCommand) value);
+        } else if (value instanceof AssemblyStation) {
+            w.byte8(TAG_STATION);
+            writeStation(w, (AssemblyStation) value);
+        } else if (value instanceof StorageZone) {
+            w.byte8(TAG_ZONE);
+            writeZone(w, (StorageZone) value);
+        } else if (value instanceof StateEvent) {
+            StateEvent event = (StateEvent) value;
+            w.byte8(TAG_EVENT);
+            w.enumOrdinal(event.getType());
+            w.zigzag64(event.getTimestamp());
+            w.varlong(event.getVersion());
+            writeValue(w, event.getPayload());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            w.byte8(TAG_LIST);
+            w.varint(list.size());
+            for (Object item : list) {
+                writeValue(w, item);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            w.byte8(TAG_MAP);
+            w.varint(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                w.string(String.valueOf(e.getKey()));
+                writeValue(w, e.getValue());
+            }
+        } else if (value instanceof String) {
+            w.byte8(TAG_STRING);
+            w.string((String) value);
+        } else if (value instanceof Integer) {
+            w.byte8(TAG_INT);
+            w.zigzag((Integer) value);
+        } else if (value instanceof Long) {
+            w.byte8(TAG_LONG);
+            w.zigzag64((Long) value);
+        } else if (value instanceof Boolean) {
+            w.byte8(TAG_BOOLEAN);
+            w.byte8((Boolean) value ? 1 : 0);
+        } else {
+            throw new IllegalArgumentException("Type non supporté par le codec binaire: " + value.getClass().getName());
+        }
+    }
+
+    private static void writeMachine(Writer w, Machine m) {
+        w.zigzag(m.getId());
+        w.string(m.getName());
+        w.enumOrdinal(m.getType());
+        w.enumOrdinal(m.getState());
+        w.zigzag(m.getProductionCount());
+        w.enumOrdinal(m.getCurrentPart());
+        w.zigzag(m.getStationId());
+    }
+
+    private static void writeAlert(Writer w, Alert a) {
+        w.zigzag(a.getId());
+        w.enumOrdinal(a.getType());
+        w.enumOrdinal(a.getPriority());
+        w.zigzag(a.getSourceId());
+        w.string(a.getSourceName());
+        w.enumOrdinal(a.getPartType());
+        w.string(a.getMessage());
+        w.zigzag64(a.getTimestamp() != null ? a.getTimestamp().getTime() : Long.MIN_VALUE);
+        w.byte8(a.isResolved() ? 1 : 0);
+        w.zigzag(a.getOccurrences());
+    }
+
+    private static void writeQuery(Writer w, AlertQuery q) {
+        w.zigzag(q.getSourceId());
+        w.enumOrdinal(q.getType());
+        w.enumOrdinal(q.getPriority());
+        w.byte8(q.getResolved() == null ? 2 : q.getResolved() ? 1 : 0);
+        w.zigzag64(q.getFrom());
+        w.zigzag64(q.getTo());
+        w.zigzag(q.getLimit());
+        w.zigzag64(q.getAfterTimestamp());
+        w.zigzag(q.getAfterId());
+    }
+
+    private static void writeSeriesQuery(Writer w, TimeSeriesQuery q) {
+        w.string(q.getSeries());
+        w.zigzag64(q.getFrom());
+        w.zigzag64(q.getTo());
+        w.zigzag64(q.getStep());
+        w.enumOrdinal(q.getAggregation());
+    }
+
+    private static void writeCommand(Writer w, ControlCommand c) {
+        w.enumOrdinal(c.getType());
+        w.zigzag(c.getTargetId());
+        w.zigzag(c.getReplacementId());
+        w.string(c.getParameters());
+        w.string(c.getMessage());
+    }
+
+    private static void writeStation(Writer w, AssemblyStation s) {
+        w.zigzag(s.getId());
+        w.string(s.getName());
+        w.enumOrdinal(s.getState());
+        w.zigzag(s.getAssembledProducts());
+        Map<String, StorageZone> zones = s.getStorageZones();
+        w.varint(zones.size());
+        for (Map.Entry<String, StorageZone> e : zones.entrySet()) {
+            w.string(e.getKey());
+            writeZone(w, e.getValue());
+        }
+    }
+
+    private static void writeZone(Writer w, StorageZone z) {
+        w.string(z.getPartType());
+        w.zigzag(z.getCurrentQuantity());
+        w.zigzag(z.getMaxCapacity());
+        w.zigzag(z.getMinThreshold());
+        w.zigzag(z.getStationId());
+    }
+
+    // ------------------------------------------------------------------
+    // Décodage
+    // ------------------------------------------------------------------
+
+    private static ProductionMessage readMessage(ByteBuffer r) throws IOException {
+        ProductionMessage m = new ProductionMessage();
+        m.setType(readEnum(r, MESSAGE_TYPES));
+        m.setRequestId(readVarlong(r));
+        m.setSuccess((r.get() & FLAG_SUCCESS) != 0);
+        m.setResponseMessage(readString(r));
+        m.setPayload(readValue(r));
+        return m;
+    }
+
+    private static Object readValue(ByteBuffer r) throws IOException {
+        byte tag = r.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_MACHINE:
+                return readMachine(r);
+            case TAG_ALERT:
+                return readAlert(r);
+            case TAG_COMMAND:
+                return readCommand(r);
+            case TAG_QUERY:
+                return readQuery(r);
+            case TAG_SERIES_QUERY:
+                return readSeriesQuery(r);
+            case TAG_STATION:
+                return readStation(r);
+            case TAG_ZONE:
+                return readZone(r);
+            case TAG_EVENT: {
+                StateEvent event = new StateEvent();
+                event.setType(readEnum(r, EVENT_TYPES));
+                event.setTimestamp(readZigzag64(r));
+                event.setVersion(readVarlong(r));
+                event.setPayload(readValue(r));
+                return event;
+            }
+            case TAG_LIST: {
+                int size = readCount(r, 1);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(r));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                int size = readCount(r, 2);
+                Map<String, Object> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    String key = readString(r);
+                    map.put(key, readValue(r));
+                }
+                return map;
+            }
+            case TAG_STRING:
+                return readString(r);
+            case TAG_INT:
+                return readZigzag(r);
+            case TAG_LONG:
+                return readZigzag64(r);
+            case TAG_BOOLEAN:
+                return r.get() != 0;
+            default:
+                throw new StreamCorruptedException("Étiquette inconnue: " + tag);
+        }
+    }
+
+    private static Machine readMachine(ByteBuffer r) throws IOException {
+        Machine m = new Machine();
+        m.setId(readZigzag(r));
+        m.setName(readString(r));
+        m.setType(readEnum(r, MACHINE_TYPES));
+        m.setState(readEnum(r, MACHINE_STATES));
+        m.setProductionCount(readZigzag(r));
+        m.setCurrentPart(readEnum(r, PART_TYPES));
+        m.setStationId(readZigzag(r));
+        return m;
+    }
+
+    private static Alert readAlert(ByteBuffer r) throws IOException {
+        Alert a = new Alert();
+        a.setId(readZigzag(r));
+        a.setType(readEnum(r, ALERT_TYPES));
+        a.setPriority(readEnum(r, ALERT_PRIORITIES));
+        a.setSourceId(readZigzag(r));
+        a.setSourceName(readString(r));
+        a.setPartType(readEnum(r, PART_TYPES));
+        a.setMessage(readString(r));
+        long time = readZigzag64(r);
+        a.setTimestamp(time == Long.MIN_VALUE ? null : new Date(time));
+        a.setResolved(r.get() != 0);
+        a.setOccurrences(readZigzag(r));
+        return a;
+    }
+
+    private static AlertQuery readQuery(ByteBuffer r) throws IOException {
+        AlertQuery q = new AlertQuery();
+        q.setSourceId(readZigzag(r));
+        q.setType(readEnum(r, ALERT_TYPES));
+        q.setPriority(readEnum(r, ALERT_PRIORITIES));
+        byte resolved = r.get();
+        q.setResolved(resolved == 2 ? null : resolved != 0);
+        q.setFrom(readZigzag64(r));
+        q.setTo(readZigzag64(r));
+        q.setLimit(readZigzag(r));
+        q.setAfterTimestamp(readZigzag64(r));
+        q.setAfterId(readZigzag(r));
+        return q;
+    }
+
+    private static TimeSeriesQuery readSeriesQuery(ByteBuffer r) throws IOException {
+        TimeSeriesQuery q = new TimeSeriesQuery();
+        q.setSeries(readString(r));
+        q.setFrom(readZigzag64(r));
+        q.setTo(readZigzag64(r));
+        q.setStep(readZigzag64(r));
+        q.setAggregation(readEnum(r, AGGREGATIONS));
+        return q;
+    }
+
+    private static ControlCommand readCommand(ByteBuffer r) throws IOException {
+        ControlCommand c = new ControlCommand();
+        c.setType(readEnum(r, COMMAND_TYPES));
+        c.setTargetId(readZigzag(r));
+        c.setReplacementId(readZigzag(r));
+        c.setParameters(readString(r));
+        c.setMessage(readString(r));
+        return c;
+    }
+
+    private static AssemblyStation readStation(ByteBuffer r) throws IOException {
+        AssemblyStation s = new AssemblyStation();
+        s.setId(readZigzag(r));
+        s.setName(readString(r));
+        s.setState(readEnum(r, STATION_STATES));
+        s.setAssembledProducts(readZigzag(r));
+        int zones = readCount(r, 2);
+        for (int i = 0; i < zones; i++) {
+            String key = readString(r);
+            s.getStorageZones().put(key, readZone(r));
+        }
+        return s;
+    }
+
+    private static StorageZone readZone(ByteBuffer r) throws IOException {
+        StorageZone z = new StorageZone();
+        z.setPartType(readString(r));
+        z.setCurrentQuantity(readZigzag(r));
+        z.setMaxCapacity(readZigzag(r));
+        z.setMinThreshold(readZigzag(r));
+        z.setStationId(readZigzag(r));
+        return z;
+    }
+
+    private static <E> E readEnum(ByteBuffer r, E[] values) throws IOException {
+        int ordinal = r.get() & 0xFF;
+        if (ordinal == 0xFF) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new StreamCorruptedException("Ordinal hors limites: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static String readString(ByteBuffer r) throws IOException {
+        int length = readVarint(r) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > r.remaining()) {
+            throw new StreamCorruptedException("Chaîne tronquée");
+        }
+        String s;
+        if (r.hasArray()) {
+            s = new String(r.array(), r.arrayOffset() + r.position(), length, StandardCharsets.UTF_8);
+            r.position(r.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            r.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    /**
+     * Nombre d'éléments annoncé, borné par les octets restants de la trame (minBytes au moins
+     * par élément): une trame malformée ne fait pas allouer une collection démesurée
+     */
+    private static int readCount(ByteBuffer r, int minBytes) throws IOException {
+        int count = readVarint(r);
+        if (count < 0 || count > r.remaining() / minBytes) {
+            throw new StreamCorruptedException("Nombre d'éléments invalide: " + count);
+        }
+        return count;
+    }
+
+    private static int readVarint(ByteBuffer r) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = r.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new StreamCorruptedException("Varint invalide");
+    }
+
+    private static long readVarlong(ByteBuffer r) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = r.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new StreamCorruptedException("Varint invalide");
+    }
+
+    private static int readZigzag(ByteBuffer r) throws IOException {
+        int v = readVarint(r);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long readZigzag64(ByteBuffer r) throws IOException {
+        long v = readVarlong(r);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * Tampon d'écriture extensible sans synchronisation
+     */
+    private static final class Writer {
+        private byte[] buf;
+        private int size;
+
+        Writer(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+            }
+        }
+
+        void byte8(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void int32(int v) {
+            ensure(4);
+            buf[size++] = (byte) (v >>> 24);
+            buf[size++] = (byte) (v >>> 16);
+            buf[size++] = (byte) (v >>> 8);
+            buf[size++] = (byte) v;
+        }
+
+        void patchInt32(int pos, int v) {
+            buf[pos] = (byte) (v >>> 24);
+            buf[pos + 1] = (byte) (v >>> 16);
+            buf[pos + 2] = (byte) (v >>> 8);
+            buf[pos + 3] = (byte) v;
+        }
+
+        void varint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void varlong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void zigzag(int v) {
+            varint((v << 1) ^ (v >> 31));
+        }
+
+        void zigzag64(long v) {
+            varlong((v << 1) ^ (v >> 63));
+        }
+
+        void enumOrdinal(Enum<?> e) {
+            byte8(e == null ? 0xFF : e.ordinal());
+        }
+
+        void string(String s) {
+            if (s == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void raw(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return size == buf.length ? buf : Arrays.copyOf(buf, size);
+        }
+    }
+
+    /**
+     * Liste dont les éléments sont encodés par blocs à l'avance (encodeItems): écrite telle quelle
+     * dans le payload qui la contient, sans réencoder ni recopier les éléments en liste.
+     * En sérialisation Java, la liste de ses éléments est écrite à sa place (writeReplace).
+     */
+    public static final class Segments implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Object[][] items;
+        private final transient byte[][] encoded;
+        private final transient int size;
+        private final transient int length;
+
+        /**
+         * @param items éléments de chaque bloc (tableaux partagés, non modifiés ensuite)
+         * @param encoded encodeItems de chaque bloc, dans le même ordre
+         */
+        public Segments(Object[][] items, byte[][] encoded) {
+            this.items = items;
+            this.encoded = encoded;
+            int count = 0;
+            int bytes = 0;
+            for (int i = 0; i < items.length; i++) {
+                count += items[i].length;
+                bytes += encoded[i].length;
+            }
+            this.size = count;
+            this.length = bytes;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Taille encodée des éléments */
+        public int length() {
+            return length;
+        }
+
+        public Object get(int index) {
+            for (Object[] block : items) {
+                if (index < block.length) {
+                    return block[index];
+                }
+                index -= block.length;
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        /** Copie des éléments, dans l'ordre */
+        public List<Object> toList() {
+            List<Object> list = new ArrayList<>(size);
+            for (Object[] block : items) {
+                list.addAll(Arrays.asList(block));
+            }
+            return list;
+        }
+
+        private Object writeReplace() {
+            return toList();
+        }
+    }
+
+    /**
+     * Payload déjà encodé, partagé en lecture seule par plusieurs messages
+     * En sérialisation Java, la valeur d'origine est écrite à sa place (writeReplace).
+     */
+    public static final class PreEncoded implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Object value;
+        private final transient byte[] bytes;
+
+        private PreEncoded(Object value, byte[] bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+
+        /** Valeur d'origine (ne pas la modifier: elle est partagée) */
+        public Object getValue() {
+            return value;
+        }
+
+        /** Vue en lecture seule des octets encodés, une par écriture */
+        public ByteBuffer buffer() {
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        public int size() {
+            return bytes.length;
+        }
+
+        private Object writeReplace() {
+            return value;
+        }
+    }
+}
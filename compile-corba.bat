@@ -32,7 +32,7 @@ if %ERRORLEVEL% NEQ 0 (
 
 echo.
 echo [3/3] Compilation du serveur et client CORBA...
-"%JAVA8_HOME%\bin\javac" -encoding UTF-8 -d bin -cp bin corba-implementation/*.java
+"%JAVA8_HOME%\bin\javac" -encoding UTF-8 -d bin -cp bin common/*.java corba-implementation/*.java
 if %ERRORLEVEL% NEQ 0 (
     echo [ERREUR] Compilation serveur/client echouee!
     pause
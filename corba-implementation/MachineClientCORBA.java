@@ -342,8 +342,9 @@ public class MachineClientCORBA {
         
         try {
             int machineId = Integer.parseInt(args[0]);
-            if (machineId < 1 || machineId > 5) {
-                System.err.println("[ERREUR] ID machine doit etre entre 1 et 5");
+            // Les identifiants valides dépendent de la topologie du serveur: c'est lui qui vérifie
+            if (machineId < 1) {
+                System.err.println("[ERREUR] ID machine doit etre positif");
                 System.exit(1);
             }
             
@@ -1,4 +1,5 @@
 import ProductionControl.*;
+import common.PlantTopology;
 import org.omg.CORBA.*;
 import org.omg.CosNaming.*;
 import org.omg.PortableServer.*;
@@ -62,6 +63,19 @@ public class ProductionControlServerCORBA {
             storageZones.put(PartType.PART_TYPE_C, new StorageData(PartType.PART_TYPE_C, 20));
             storageZones.put(PartType.PART_TYPE_D, new StorageData(PartType.PART_TYPE_D, 20));
         }
+        
+        /**
+         * Zones de la station déclarée dans la topologie (mêmes ordinaux que l'IDL)
+         */
+        AssemblyData(PlantTopology.Station station) {
+            for (common.Machine.PartType part : common.Machine.PartType.values()) {
+                int capacity = station.getCapacity(part);
+                if (capacity > 0) {
+                    PartType type = PartType.from_int(part.ordinal());
+                    storageZones.put(type, new StorageData(type, capacity));
+                }
+            }
+        }
     }
     
     static class StorageData {
@@ -228,7 +242,7 @@ public class ProductionControlServerCORBA {
         
         @Override
         public MachineControl getMachineControl(int machineId) {
-            if (machineId < 1 || machineId > 5) {
+            if (!machines.containsKey(machineId)) {
                 return null;
             }
             
@@ -421,16 +435,25 @@ public class ProductionControlServerCORBA {
     /**
      * Initialiser la chaîne de production
      */
-    private static void initializeProductionLine() {
-        machines.put(1, new MachineData(1, "Machine-M1", MachineType.TYPE_A));
-        machines.put(2, new MachineData(2, "Machine-M2", MachineType.TYPE_A));
-        machines.put(3, new MachineData(3, "Machine-M3", MachineType.TYPE_B));
-        machines.put(4, new MachineData(4, "Machine-M4", MachineType.TYPE_C));
-        machines.put(5, new MachineData(5, "Machine-M5", MachineType.TYPE_D));
+    private static void initializeProductionLine(PlantTopology topology) {
+        int count = topology.getMachineCount();
+        machines = new ConcurrentHashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            int id = topology.getMachineId(i);
+            machines.put(id, new MachineData(id, topology.getMachineName(i), 
+                    MachineType.from_int(topology.getMachineType(i).ordinal())));
+        }
+        
+        // Une seule station gérée (main refuse les topologies à plusieurs stations)
+        assemblyStation = new AssemblyData(topology.getStations().get(0));
         
         System.out.println("✓ Chaîne de production initialisée:");
-        for (MachineData m : machines.values()) {
-            System.out.println("  - " + m.name + " (" + machineTypeToString(m.type) + ") - État: " + machineStateToString(m.state));
+        if (count <= 20) {
+            for (MachineData m : machines.values()) {
+                System.out.println("  - " + m.name + " (" + machineTypeToString(m.type) + ") - État: " + machineStateToString(m.state));
+            }
+        } else {
+            System.out.println("  - " + count + " machines");
         }
     }
     
@@ -441,7 +464,21 @@ public class ProductionControlServerCORBA {
             System.out.println("====================================================");
             System.out.println();
             
-            initializeProductionLine();
+            // --topology=fichier: topologie de l'usine (ligne d'origine M1 à M5 sinon)
+            PlantTopology topology = PlantTopology.defaultTopology();
+            for (String arg : args) {
+                if (arg.startsWith("--topology=")) {
+                    topology = PlantTopology.load(new java.io.File(arg.substring("--topology=".length())));
+                }
+            }
+            // Un seul stock et un seul cycle d'assemblage: les machines des autres stations
+            // alimenteraient la première sans que rien ne le signale
+            if (topology.getStations().size() > 1) {
+                System.err.println("Erreur: le serveur CORBA ne gère qu'une station ("
+                        + topology.getStations().size() + " déclarées); utiliser le serveur socket");
+                System.exit(1);
+            }
+            initializeProductionLine(topology);
             
             // Initialiser ORB
             ORB orb = ORB.init(args, null);
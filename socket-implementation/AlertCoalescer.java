@@ -0,0 +1,135 @@
+package socket.server;
+
+import common.Alert;
+import common.Machine;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Regroupement des alertes répétées (capteur instable, rafale de pannes identiques)
+ *
+ * Clé: (type, sourceId, pièce). La première alerte d'une clé est enregistrée et ouvre une fenêtre;
+ * les suivantes reçues dans la fenêtre ne font qu'incrémenter le compteur d'occurrences de l'alerte
+ * ouverte, sans nouvelle alerte ni nouvelle résolution. Passé la fenêtre, l'alerte suivante est
+ * enregistrée normalement (une résolution échouée est ainsi retentée). Fenêtre 0: pas de regroupement.
+ * Les fenêtres expirées sont retirées à l'ouverture des suivantes: la table ne garde que les clés vues
+ * pendant les deux dernières fenêtres, quelles que soient les clés envoyées par les clients.
+ */
+class AlertCoalescer {
+    private static final Alert.AlertType[] TYPES = Alert.AlertType.values();
+
+    private final long windowNanos;
+    private final AlertLog log;
+    private final Map<Key, Open> open = new ConcurrentHashMap<>();
+    private final LongAdder[] suppressedByType = new LongAdder[TYPES.length];
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    AlertCoalescer(long windowMs, AlertLog log) {
+        this.windowNanos = windowMs * 1_000_000L;
+        this.log = log;
+        for (int i = 0; i < TYPES.length; i++) {
+            suppressedByType[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Enregistrer l'alerte, ou la regrouper sur l'alerte ouverte de même clé
+     * @return alert si elle est nouvelle (identifiant attribué), sinon l'alerte ouverte qui l'absorbe
+     */
+    Alert coalesce(Alert alert) {
+        if (windowNanos <= 0 || alert.getType() == null) {
+            log.append(alert);
+            return alert;
+        }
+        long now = System.nanoTime();
+        // compute() sérialise les alertes d'une même clé sans bloquer les autres
+        Open entry = open.compute(new Key(alert), (key, current) -> {
+            if (current != null && now - current.openedAt < windowNanos) {
+                current.alert.setOccurrences(current.alert.getOccurrences() + 1);
+                return current;
+            }
+            log.append(alert);
+            return new Open(alert, now);
+        });
+        if (entry.alert != alert) {
+            suppressedByType[alert.getType().ordinal()].increment();
+        } else {
+            sweepExpired(now);
+        }
+        return entry.alert;
+    }
+
+    /**
+     * Retirer les fenêtres expirées, au plus une fois par fenêtre et par un seul appelant.
+     * Retrait conditionnel à la valeur: une fenêtre rouverte entre-temps pour la même clé reste en place
+     */
+    private void sweepExpired(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + windowNanos)) {
+            return;
+        }
+        open.values().removeIf(entry -> now - entry.openedAt >= windowNanos);
+    }
+
+    /**
+     * Doublons absorbés depuis le démarrage, par type d'alerte
+     */
+    Map<String, Long> getSuppressedByType() {
+        Map<String, Long> counts = new HashMap<>();
+        for (Alert.AlertType type : TYPES) {
+            long count = suppressedByType[type.ordinal()].sum();
+            if (count > 0) {
+                counts.put(type.name(), count);
+            }
+        }
+        return counts;
+    }
+
+    long getSuppressed() {
+        long total = 0;
+        for (LongAdder count : suppressedByType) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    private static final class Open {
+        final Alert alert;
+        final long openedAt;
+
+        Open(Alert alert, long openedAt) {
+            this.alert = alert;
+            this.openedAt = openedAt;
+        }
+    }
+
+    private static final class Key {
+        final Alert.AlertType type;
+        final int sourceId;
+        final Machine.PartType part;
+
+        Key(Alert alert) {
+            this.type = alert.getType();
+            this.sourceId = alert.getSourceId();
+            this.part = alert.getPartType();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type == other.type && sourceId == other.sourceId && part == other.part;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, sourceId, part);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package socket.server;
+
+import common.Alert;
+import common.AlertQuery;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Index secondaires des alertes du journal, pour ALERT_QUERY
+ *
+ * Un ensemble trié (date décroissante, puis identifiant) par source, par type, par priorité,
+ * plus les alertes non résolues et l'ensemble complet. Une requête parcourt le plus petit
+ * ensemble correspondant à ses filtres, à partir de la borne de date ou du curseur, et vérifie
+ * les autres filtres alerte par alerte: le coût dépend de la page, pas du nombre d'alertes.
+ * Ensembles sans verrou: ni les requêtes ni les écrivains ne bloquent le journal.
+ *
+ * Les index ne couvrent que la fenêtre en mémoire (AlertLog). Avec un journal sur disque, une page
+ * que des alertes sorties de la fenêtre peuvent compléter est complétée par AlertJournal.search;
+ * la date maximale des alertes sorties évite de lire le disque quand la fenêtre suffit.
+ */
+class AlertIndex {
+    private static final Comparator<Alert> NEWEST_FIRST = Comparator
+            .comparingLong(AlertIndex::timeOf).reversed()
+            .thenComparing(Comparator.comparingInt(Alert::getId).reversed());
+
+    private final AlertLog log;
+    private final AlertJournal journal;  // null: alertes en mémoire seulement
+    private final LongAccumulator evictedMaxTime = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private final Entry all = new Entry();
+    private final Entry unresolved = new Entry();
+    private final Entry[] byType = entries(Alert.AlertType.values().length);
+    private final Entry[] byPriority = entries(Alert.AlertPriority.values().length);
+    private final Map<Integer, Entry> bySource = new ConcurrentHashMap<>();
+
+    AlertIndex(AlertLog log, AlertJournal journal) {
+        this.log = log;
+        this.journal = journal;
+    }
+
+    /**
+     * Indexer une alerte qui vient d'être enregistrée dans le journal
+     */
+    void add(Alert alert) {
+        all.add(alert);
+        if (!alert.isResolved()) {
+            unresolved.add(alert);
+        }
+        if (alert.getType() != null) {
+            byType[alert.getType().ordinal()].add(alert);
+        }
+        if (alert.getPriority() != null) {
+            byPriority[alert.getPriority().ordinal()].add(alert);
+        }
+        bySource.computeIfAbsent(alert.getSourceId(), id -> new Entry()).add(alert);
+        if (log.get(alert.getId()) != alert) {
+            // Sortie du journal pendant l'indexation: le retrait a pu passer avant l'ajout
+            remove(alert);
+        }
+    }
+
+    /**
+     * Retirer une alerte sortie du journal
+     */
+    void remove(Alert alert) {
+        evictedUpTo(timeOf(alert));
+        all.remove(alert);
+        unresolved.remove(alert);
+        if (alert.getType() != null) {
+            byType[alert.getType().ordinal()].remove(alert);
+        }
+        if (alert.getPriority() != null) {
+            byPriority[alert.getPriority().ordinal()].remove(alert);
+        }
+        Entry source = bySource.get(alert.getSourceId());
+        if (source != null) {
+            source.remove(alert);
+        }
+    }
+
+    void resolved(Alert alert) {
+        unresolved.remove(alert);
+    }
+
+    /**
+     * Des alertes hors de la fenêtre (journal) peuvent être datées jusqu'à time
+     */
+    void evictedUpTo(long time) {
+        evictedMaxTime.accumulate(time);
+    }
+
+    /**
+     * Alertes correspondant à la requête, au plus limit + 1 (la dernière indique une page suivante)
+     */
+    List<Alert> query(AlertQuery query, int limit) {
+        // Début: après le curseur, sinon à la date maximale; fin: date minimale
+        boolean afterCursor = query.getAfterId() > 0;
+        Alert start = afterCursor ? probe(query.getAfterTimestamp(), query.getAfterId())
+                : probe(query.getTo() != 0 ? query.getTo() : Long.MAX_VALUE, Integer.MAX_VALUE);
+        Alert end = probe(query.getFrom() != 0 ? query.getFrom() : Long.MIN_VALUE, Integer.MIN_VALUE);
+        if (NEWEST_FIRST.compare(start, end) > 0) {
+            return Collections.emptyList();
+        }
+        NavigableSet<Alert> candidates = smallest(query).alerts.subSet(start, !afterCursor, end, true);
+
+        List<Alert> page = new ArrayList<>(Math.min(limit + 1, 64));
+        Iterator<Alert> it = candidates.iterator();
+        while (it.hasNext() && page.size() <= limit) {
+            Alert alert = it.next();
+            if (matches(alert, query)) {
+                page.add(alert);
+            }
+        }
+        return journal != null ? withEvicted(query, page, start, afterCursor, end, limit) : page;
+    }
+
+    /**
+     * Page complétée par les alertes sorties de la fenêtre, relues du journal
+     * Le disque n'est lu que si l'une d'elles peut entrer dans la page: date maximale des alertes sorties
+     * au moins égale à la borne minimale, et postérieure à la dernière alerte retenue si la page est pleine.
+     */
+    private List<Alert> withEvicted(AlertQuery query, List<Alert> page, Alert start, boolean afterCursor,
+            Alert end, int limit) {
+        long minTime = timeOf(end);
+        if (page.size() > limit) {
+            long last = timeOf(page.get(limit));
+            if (last == Long.MAX_VALUE) {
+                return page;
+            }
+            minTime = Math.max(minTime, last + 1); // À date égale, une alerte sortie a un identifiant plus petit
+        }
+        if (evictedMaxTime.get() < minTime) {
+            return page;
+        }
+        List<Alert> evicted;
+        try {
+            evicted = journal.search(log.oldestId(), minTime, timeOf(start), query,
+                    alert -> matches(alert, query) && NEWEST_FIRST.compare(alert, end) <= 0
+                            && (afterCursor ? NEWEST_FIRST.compare(alert, start) > 0 : NEWEST_FIRST.compare(alert, start) >= 0),
+                    NEWEST_FIRST, limit + 1);
+        } catch (IOException e) {
+            System.err.println("[ERREUR] Lecture du journal des alertes: " + e.getMessage());
+            return page;
+        }
+        if (evicted.isEmpty()) {
+            return page;
+        }
+        // Une alerte sortie pendant la requête peut figurer des deux côtés
+        Set<Integer> ids = new HashSet<>();
+        for (Alert alert : page) {
+            ids.add(alert.getId());
+        }
+        List<Alert> merged = new ArrayList<>(page);
+        for (Alert alert : evicted) {
+            if (!ids.contains(alert.getId())) {
+                merged.add(alert);
+            }
+        }
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit + 1 ? new ArrayList<>(merged.subList(0, limit + 1)) : merged;
+    }
+
+    int size() {
+        return all.size.get();
+    }
+
+    /**
+     * Ensemble le plus petit parmi ceux qui correspondent à un filtre de la requête
+     */
+    private Entry smallest(AlertQuery query) {
+        Entry best = all;
+        if (query.getSourceId() != 0) {
+            Entry source = bySource.get(query.getSourceId());
+            best = source != null ? source : new Entry();
+        }
+        if (Boolean.FALSE.equals(query.getResolved())) {
+            best = smaller(best, unresolved);
+        }
+        if (query.getType() != null) {
+            best = smaller(best, byType[query.getType().ordinal()]);
+        }
+        if (query.getPriority() != null) {
+            best = smaller(best, byPriority[query.getPriority().ordinal()]);
+        }
+        return best;
+    }
+
+    private static Entry smaller(Entry a, Entry b) {
+        return b.size.get() < a.size.get() ? b : a;
+    }
+
+    private static boolean matches(Alert alert, AlertQuery query) {
+        return (query.getSourceId() == 0 || alert.getSourceId() == query.getSourceId())
+                && (query.getType() == null || alert.getType() == query.getType())
+                && (query.getPriority() == null || alert.getPriority() == query.getPriority())
+                && (query.getResolved() == null || alert.isResolved() == query.getResolved());
+    }
+
+    private static Alert probe(long time, int id) {
+        Alert probe = new Alert();
+        probe.setTimestamp(new Date(time));
+        probe.setId(id);
+        return probe;
+    }
+
+    private static long timeOf(Alert alert) {
+        return alert.getTimestamp() != null ? alert.getTimestamp().getTime() : Long.MIN_VALUE;
+    }
+
+    private static Entry[] entries(int count) {
+        Entry[] entries = new Entry[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = new Entry();
+        }
+        return entries;
+    }
+
+    /**
+     * Ensemble trié et sa taille (size() d'un ConcurrentSkipListSet parcourt tout l'ensemble)
+     */
+    private static final class Entry {
+        final NavigableSet<Alert> alerts = new ConcurrentSkipListSet<>(NEWEST_FIRST);
+        final AtomicInteger size = new AtomicInteger();
+
+        void add(Alert alert) {
+            if (alerts.add(alert)) {
+                size.incrementAndGet();
+            }
+        }
+
+        void remove(Alert alert) {
+            if (alerts.remove(alert)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,722 @@
+package socket.server;
+
+import common.Alert;
+import common.AlertQuery;
+import common.WireCodec;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Journal des alertes sur disque: segments en ajout seul, projetés en mémoire (mmap)
+ *
+ * Chaque segment alerts-<premier id>.log reçoit des enregistrements [longueur][CRC32][type][corps]:
+ * une alerte (encodage WireCodec) ou sa résolution. La longueur est écrite en dernier: un
+ * enregistrement interrompu par un arrêt brutal se lit comme la fin du journal. Un segment plein
+ * est forcé sur disque et le suivant est créé.
+ *
+ * alerts-<premier id>.idx garde une entrée toutes les INDEX_INTERVAL écritures: position, plus petit
+ * identifiant pouvant suivre, date maximale écrite avant (depuis le début du journal, donc croissante).
+ * Relire les N dernières alertes ou lire à partir d'une date ne parcourt ni les segments précédents
+ * ni le début du segment trouvé.
+ *
+ * alerts-<premier id>.sum résume chaque bloc d'index terminé (entre deux entrées): sources (bit
+ * sourceId % 64), types et priorités des alertes écrites ou résolues dans le bloc, et leur date minimale.
+ * Une recherche (ALERT_QUERY au-delà de la fenêtre en mémoire) saute les blocs qui ne peuvent rien contenir.
+ */
+class AlertJournal implements Closeable {
+    static final int INDEX_INTERVAL = 1024;
+    private static final int HEADER_BYTES = 8;         // Longueur + CRC32
+    private static final int INDEX_ENTRY_BYTES = 16;   // Position, identifiant, date maximale
+    private static final int SUMMARY_BYTES = 24;       // Sources, types, priorités, date minimale
+    private static final byte RECORD_ALERT = 1;
+    private static final byte RECORD_RESOLVED = 2;
+
+    private final File dir;
+    private final int segmentBytes;
+    private final TreeMap<Integer, File> segments = new TreeMap<>();
+    private final CRC32 crc = new CRC32();
+
+    // Segment en cours d'écriture (sous le verrou du journal)
+    private int segmentFirstId;
+    private MappedByteBuffer map;
+    private FileChannel indexChannel;
+    private FileChannel summaryChannel;
+    private int records;
+    private int nextId = 1;
+    private long maxTime = Long.MIN_VALUE;
+    private boolean failed;
+
+    // Résumé du bloc d'index en cours, écrit quand le bloc se termine
+    private long blockSources;
+    private int blockTypes;
+    private int blockPriorities;
+    private long blockMinTime = Long.MAX_VALUE;
+
+    /**
+     * Ouvrir (ou créer) le journal du répertoire dir, à la suite du dernier enregistrement valide
+     */
+    AlertJournal(File dir, int segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Répertoire du journal impossible à créer: " + dir);
+        }
+        File[] files = dir.listFiles((d, name) -> name.startsWith("alerts-") && name.endsWith(".log"));
+        for (File file : files) {
+            String name = file.getName();
+            segments.put(Integer.parseInt(name.substring("alerts-".length(), name.length() - ".log".length())), file);
+        }
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            reopenLastSegment();
+        }
+    }
+
+    /**
+     * Attribuer son identifiant à l'alerte et l'écrire (identifiants croissants dans le journal)
+     */
+    synchronized int append(Alert alert) {
+        int id = nextId;
+        alert.setId(id);
+        if (!failed) {
+            write(RECORD_ALERT, WireCodec.encodeAlert(alert));
+        }
+        note(alert);
+        nextId = id + 1;
+        maxTime = Math.max(maxTime, timeOf(alert));
+        return id;
+    }
+
+    /**
+     * Enregistrer la résolution d'une alerte (et ses occurrences regroupées à ce moment)
+     */
+    synchronized void resolved(Alert alert) {
+        if (!failed) {
+            write(RECORD_RESOLVED, ByteBuffer.allocate(8)
+                    .putInt(alert.getId()).putInt(alert.getOccurrences()).array());
+        }
+        note(alert);
+    }
+
+    /**
+     * Les count dernières alertes du journal, dans l'ordre, résolutions appliquées
+     */
+    synchronized List<Alert> recent(int count) throws IOException {
+        int lastId = nextId - 1;
+        int start = Math.max(1, lastId - count + 1);
+        Alert[] window = new Alert[Math.max(0, lastId - start + 1)];
+        if (window.length == 0) {
+            return new ArrayList<>();
+        }
+
+        Integer first = segments.floorKey(start);
+        if (first == null) {
+            first = segments.firstKey();
+        }
+        int position = readIndex(first).seekId(start);
+        for (Map.Entry<Integer, File> segment : segments.tailMap(first, true).entrySet()) {
+            scan(view(segment.getKey(), segment.getValue()), position, (kind, body, at) -> {
+                if (kind == RECORD_ALERT) {
+                    Alert alert = WireCodec.decodeAlert(body);
+                    if (alert.getId() >= start && alert.getId() <= lastId) {
+                        window[alert.getId() - start] = alert;
+                    }
+                } else if (kind == RECORD_RESOLVED) {
+                    int id = body.getInt();
+                    if (id >= start && id <= lastId && window[id - start] != null) {
+                        window[id - start].setResolved(true);
+                        window[id - start].setOccurrences(body.getInt());
+                    }
+                }
+                return true;
+            });
+            position = 0;
+        }
+
+        List<Alert> alerts = new ArrayList<>(window.length);
+        for (Alert alert : window) {
+            if (alert != null) {
+                alerts.add(alert);
+            }
+        }
+        return alerts;
+    }
+
+    /**
+     * Au plus max alertes datées de fromTime ou après, dans l'ordre du journal
+     * Les résolutions lues avant la fin du parcours sont appliquées.
+     */
+    synchronized List<Alert> readSince(long fromTime, int max) throws IOException {
+        // Dernier segment dont tout ce qui précède est plus ancien que fromTime
+        Integer first = segments.firstKey();
+        for (Integer firstId : segments.descendingKeySet()) {
+            Index index = readIndex(firstId);
+            if (index.count > 0 && index.maxTimes[0] < fromTime) {
+                first = firstId;
+                break;
+            }
+        }
+
+        List<Alert> alerts = new ArrayList<>();
+        Map<Integer, Alert> byId = new HashMap<>();
+        int position = readIndex(first).seekTime(fromTime);
+        for (Map.Entry<Integer, File> segment : segments.tailMap(first, true).entrySet()) {
+            if (alerts.size() >= max) {
+                break;
+            }
+            scan(view(segment.getKey(), segment.getValue()), position, (kind, body, at) -> {
+                if (kind == RECORD_ALERT && alerts.size() < max) {
+                    Alert alert = WireCodec.decodeAlert(body);
+                    if (timeOf(alert) >= fromTime) {
+                        alerts.add(alert);
+                        byId.put(alert.getId(), alert);
+                    }
+                } else if (kind == RECORD_RESOLVED) {
+                    Alert alert = byId.get(body.getInt());
+                    if (alert != null) {
+                        alert.setResolved(true);
+                        alert.setOccurrences(body.getInt());
+                    }
+                }
+                return alerts.size() < max;
+            });
+            position = 0;
+        }
+        return alerts;
+    }
+
+    /**
+     * Au plus count alertes d'identifiant inférieur à beforeId (sorties de la fenêtre en mémoire),
+     * acceptées par accept et les premières dans l'ordre order (date décroissante), résolutions appliquées
+     *
+     * Les blocs d'index sont lus du plus récent au plus ancien. Le parcours s'arrête dès que la date
+     * maximale écrite jusqu'à la fin du bloc est antérieure à minTime, ou ne peut plus battre la
+     * dernière alerte retenue. Un bloc dont le résumé exclut la source, le type ou la priorité de la
+     * requête, ou dont la date minimale dépasse maxTime, n'est pas lu: il ne contient ni alerte
+     * recherchée ni résolution de l'une d'elles. Le journal reste ouvert aux écrivains pendant la lecture.
+     */
+    List<Alert> search(int beforeId, long minTime, long maxTime, AlertQuery query, Predicate<Alert> accept,
+            Comparator<Alert> order, int count) throws IOException {
+        // Segment en cours relevé sous le verrou; les segments pleins et leurs index ne changent plus
+        NavigableMap<Integer, File> files;
+        int activeId;
+        ByteBuffer activeView;
+        Index activeIndex;
+        Summary activeSummary;
+        long ceiling;  // Date maximale écrite jusqu'à la fin du bloc suivant à lire
+        synchronized (this) {
+            files = new TreeMap<>(segments);
+            activeId = segmentFirstId;
+            activeView = view(activeId, null);
+            activeIndex = readIndex(activeId);
+            activeSummary = readSummary(activeId, activeIndex.count);
+            activeSummary.set(activeIndex.count - 1, blockSources, blockTypes, blockPriorities, blockMinTime);
+            ceiling = this.maxTime;
+        }
+
+        PriorityQueue<Alert> best = new PriorityQueue<>(count + 1, order.reversed());  // Tête: la dernière retenue
+        Map<Integer, Integer> resolutions = new HashMap<>();  // Identifiant -> occurrences à la résolution
+        search:
+        for (Map.Entry<Integer, File> segment : files.descendingMap().entrySet()) {
+            int firstId = segment.getKey();
+            boolean active = firstId == activeId;
+            Index index = active ? activeIndex : readIndex(firstId);
+            Summary summary = active ? activeSummary : readSummary(firstId, index.count);
+            ByteBuffer data = null;
+            for (int i = index.count - 1; i >= 0; i--) {
+                boolean older = index.nextIds[i] < beforeId;  // Bloc plus récent: résolutions seulement
+                if (older && (ceiling < minTime || best.size() == count && timeOf(best.peek()) >= ceiling)) {
+                    break search;
+                }
+                ceiling = index.maxTimes[i];
+                if (summary.excludes(i, query, maxTime)) {
+                    continue;
+                }
+                if (data == null) {
+                    data = active ? activeView : view(firstId, segment.getValue());
+                }
+                int end = i + 1 < index.count ? index.offsets[i + 1] : Integer.MAX_VALUE;
+                List<Alert> found = new ArrayList<>();
+                scan(data, index.offsets[i], (kind, body, at) -> {
+                    if (at >= end) {
+                        return false;
+                    }
+                    if (kind == RECORD_ALERT && older) {
+                        if (query.getSourceId() != 0 && WireCodec.peekAlertSource(body) != query.getSourceId()) {
+                            return true;
+                        }
+                        Alert alert = WireCodec.decodeAlert(body);
+                        if (alert.getId() < beforeId && timeOf(alert) >= minTime) {
+                            found.add(alert);
+                        }
+                    } else if (kind == RECORD_RESOLVED) {
+                        int id = body.getInt();
+                        if (id < beforeId) {
+                            resolutions.putIfAbsent(id, body.getInt());  // Lue la première: la dernière écrite
+                        }
+                    }
+                    return true;
+                });
+                for (Alert alert : found) {
+                    Integer occurrences = resolutions.remove(alert.getId());
+                    if (occurrences != null) {
+                        alert.setResolved(true);
+                        alert.setOccurrences(occurrences);
+                    }
+                    if (accept.test(alert)) {
+                        best.offer(alert);
+                        if (best.size() > count) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Alert> alerts = new ArrayList<>(best);
+        alerts.sort(order);
+        return alerts;
+    }
+
+    /**
+     * Date maximale des alertes d'identifiant inférieur à id (Long.MIN_VALUE s'il n'y en a pas)
+     */
+    synchronized long maxTimeBefore(int id) throws IOException {
+        Integer first = segments.floorKey(id - 1);
+        if (first == null) {
+            return Long.MIN_VALUE;
+        }
+        Index index = readIndex(first);
+        if (index.count == 0) {
+            return maxTime;
+        }
+        int entry = index.entryForId(id);
+        long[] max = { index.maxTimes[entry] };
+        scan(view(first, segments.get(first)), index.offsets[entry], (kind, body, at) -> {
+            if (kind != RECORD_ALERT) {
+                return true;
+            }
+            Alert alert = WireCodec.decodeAlert(body);
+            if (alert.getId() >= id) {
+                return false;
+            }
+            max[0] = Math.max(max[0], timeOf(alert));
+            return true;
+        });
+        return max[0];
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        map.force();
+        indexChannel.close();
+        summaryChannel.close();
+    }
+
+    // ------------------------------------------------------------------
+    // Écriture
+    // ------------------------------------------------------------------
+
+    private void write(byte kind, byte[] body) {
+        int length = 1 + body.length;
+        try {
+            if (map.position() + HEADER_BYTES + length > map.limit()) {
+                if (HEADER_BYTES + length > segmentBytes) {
+                    System.err.println("[ERREUR] Enregistrement de " + length + " octets plus grand qu'un segment, non journalisé");
+                    return;
+                }
+                writeSummary();
+                map.force();
+                indexChannel.close();
+                summaryChannel.close();
+                openSegment(nextId);
+            }
+            int position = map.position();
+            if (records > 0 && records % INDEX_INTERVAL == 0) {
+                writeSummary();
+                writeIndexEntry(position);
+            }
+            crc.reset();
+            crc.update(kind);
+            crc.update(body);
+            map.putInt(position + 4, (int) crc.getValue());
+            map.put(position + HEADER_BYTES, kind);
+            ByteBuffer out = map.duplicate();
+            out.position(position + HEADER_BYTES + 1);
+            out.put(body);
+            map.putInt(position, length); // En dernier: l'enregistrement devient lisible
+            map.position(position + HEADER_BYTES + length);
+            records++;
+        } catch (IOException e) {
+            failed = true;
+            System.err.println("[ERREUR] Journal des alertes désactivé: " + e.getMessage());
+        }
+    }
+
+    private void openSegment(int firstId) throws IOException {
+        // Index créé avant le segment: un segment présent a toujours sa première entrée
+        indexChannel = FileChannel.open(indexFile(firstId).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        summaryChannel = FileChannel.open(summaryFile(firstId).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentFirstId = firstId;
+        records = 0;
+        resetBlock();
+        writeIndexEntry(0);
+        File file = new File(dir, String.format("alerts-%010d.log", firstId));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segments.put(firstId, file);
+    }
+
+    /**
+     * Reprendre l'écriture après le dernier enregistrement valide du dernier segment
+     * Le parcours part de la dernière entrée d'index qui désigne un enregistrement valide;
+     * les entrées suivantes (perdues ou au-delà d'un enregistrement interrompu) sont réécrites.
+     */
+    private void reopenLastSegment() throws IOException {
+        segmentFirstId = segments.lastKey();
+        File file = segments.get(segmentFirstId);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes));
+        }
+
+        Index index = readIndex(segmentFirstId);
+        int entry = index.count - 1;
+        while (entry > 0 && scan(map.duplicate(), index.offsets[entry], (kind, body, at) -> false) == index.offsets[entry]) {
+            entry--;
+        }
+        indexChannel = FileChannel.open(indexFile(segmentFirstId).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        summaryChannel = FileChannel.open(summaryFile(segmentFirstId).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        int position = 0;
+        if (entry >= 0) {
+            position = index.offsets[entry];
+            nextId = index.nextIds[entry];
+            maxTime = index.maxTimes[entry];
+            records = entry * INDEX_INTERVAL;
+            indexChannel.truncate((long) (entry + 1) * INDEX_ENTRY_BYTES);
+            indexChannel.position((long) (entry + 1) * INDEX_ENTRY_BYTES);
+            // Un résumé par bloc terminé; ceux perdus par un arrêt brutal n'excluent rien
+            long kept = Math.min(summaryChannel.size() / SUMMARY_BYTES, entry);
+            summaryChannel.truncate(kept * SUMMARY_BYTES);
+            summaryChannel.position(kept * SUMMARY_BYTES);
+            for (long i = kept; i < entry; i++) {
+                writeSummaryEntry(-1L, -1, -1, Long.MIN_VALUE);
+            }
+        } else {
+            nextId = segmentFirstId;
+            maxTime = maxTimeAtEnd(segments.lowerKey(segmentFirstId));
+            records = 0;
+            indexChannel.truncate(0);
+            summaryChannel.truncate(0);
+            writeIndexEntry(0);
+        }
+
+        resetBlock();
+        int from = position; // Entrée déjà présente pour l'enregistrement à from
+        int end = scan(map.duplicate(), from, (kind, body, at) -> {
+            if (records > 0 && records % INDEX_INTERVAL == 0 && at > from) {
+                writeSummary();
+                writeIndexEntry(at);
+            }
+            records++;
+            if (kind == RECORD_ALERT) {
+                Alert alert = WireCodec.decodeAlert(body);
+                nextId = Math.max(nextId, alert.getId() + 1);
+                maxTime = Math.max(maxTime, timeOf(alert));
+                note(alert);
+            } else {
+                // Résolution: l'alerte concernée n'est pas relue, le bloc n'exclut plus rien
+                blockSources = -1L;
+                blockTypes = -1;
+                blockPriorities = -1;
+                blockMinTime = Long.MIN_VALUE;
+            }
+            return true;
+        });
+        map.position(end);
+    }
+
+    /**
+     * Date maximale écrite jusqu'à la fin du segment firstId (segment sans index: aucune borne)
+     */
+    private long maxTimeAtEnd(Integer firstId) throws IOException {
+        if (firstId == null) {
+            return Long.MIN_VALUE;
+        }
+        Index index = readIndex(firstId);
+        if (index.count == 0) {
+            return Long.MAX_VALUE;
+        }
+        long[] max = { index.maxTimes[index.count - 1] };
+        scan(view(firstId, segments.get(firstId)), index.offsets[index.count - 1], (kind, body, at) -> {
+            if (kind == RECORD_ALERT) {
+                max[0] = Math.max(max[0], timeOf(WireCodec.decodeAlert(body)));
+            }
+            return true;
+        });
+        return max[0];
+    }
+
+    /**
+     * Ajouter au résumé du bloc en cours une alerte écrite ou résolue
+     */
+    private void note(Alert alert) {
+        blockSources |= 1L << (alert.getSourceId() & 63);
+        if (alert.getType() != null) {
+            blockTypes |= 1 << alert.getType().ordinal();
+        }
+        if (alert.getPriority() != null) {
+            blockPriorities |= 1 << alert.getPriority().ordinal();
+        }
+        blockMinTime = Math.min(blockMinTime, timeOf(alert));
+    }
+
+    private void resetBlock() {
+        blockSources = 0;
+        blockTypes = 0;
+        blockPriorities = 0;
+        blockMinTime = Long.MAX_VALUE;
+    }
+
+    private void writeSummary() throws IOException {
+        writeSummaryEntry(blockSources, blockTypes, blockPriorities, blockMinTime);
+        resetBlock();
+    }
+
+    private void writeSummaryEntry(long sources, int types, int priorities, long minTime) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(SUMMARY_BYTES);
+        entry.putLong(sources).putInt(types).putInt(priorities).putLong(minTime);
+        entry.flip();
+        while (entry.hasRemaining()) {
+            summaryChannel.write(entry);
+        }
+    }
+
+    private void writeIndexEntry(int position) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        entry.putInt(position).putInt(nextId).putLong(maxTime);
+        entry.flip();
+        while (entry.hasRemaining()) {
+            indexChannel.write(entry);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Lecture
+    // ------------------------------------------------------------------
+
+    private interface RecordHandler {
+        /**
+         * @return false pour arrêter le parcours
+         */
+        boolean record(byte kind, ByteBuffer body, int position) throws IOException;
+    }
+
+    /**
+     * Parcourir les enregistrements valides à partir de position
+     * @return position qui suit le dernier enregistrement valide (fin, ou arrêt demandé)
+     */
+    private static int scan(ByteBuffer segment, int position, RecordHandler handler) throws IOException {
+        CRC32 check = new CRC32();
+        while (position + HEADER_BYTES < segment.limit()) {
+            int length = segment.getInt(position);
+            if (length <= 0 || length > segment.limit() - position - HEADER_BYTES) {
+                break; // Fin du segment, ou enregistrement interrompu
+            }
+            ByteBuffer body = segment.duplicate();
+            body.limit(position + HEADER_BYTES + length);
+            body.position(position + HEADER_BYTES);
+            check.reset();
+            check.update(body.duplicate());
+            if ((int) check.getValue() != segment.getInt(position + 4)) {
+                break;
+            }
+            byte kind = body.get();
+            int next = position + HEADER_BYTES + length;
+            if (!handler.record(kind, body.slice(), position)) {
+                return next;
+            }
+            position = next;
+        }
+        return position;
+    }
+
+    /**
+     * Contenu lisible d'un segment: segment en cours jusqu'à la position d'écriture, sinon projection
+     */
+    private ByteBuffer view(int firstId, File file) throws IOException {
+        if (firstId == segmentFirstId) {
+            ByteBuffer active = map.duplicate();
+            active.limit(map.position());
+            active.position(0);
+            return active;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private File indexFile(int firstId) {
+        return new File(dir, String.format("alerts-%010d.idx", firstId));
+    }
+
+    private File summaryFile(int firstId) {
+        return new File(dir, String.format("alerts-%010d.sum", firstId));
+    }
+
+    /**
+     * Résumés des blocs d'un segment (blocks blocs; ceux sans résumé écrit n'excluent rien)
+     */
+    private Summary readSummary(int firstId, int blocks) throws IOException {
+        Summary summary = new Summary(blocks);
+        File file = summaryFile(firstId);
+        if (!file.isFile()) {
+            return summary;
+        }
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        for (int i = 0; i < blocks && data.remaining() >= SUMMARY_BYTES; i++) {
+            summary.set(i, data.getLong(), data.getInt(), data.getInt(), data.getLong());
+        }
+        return summary;
+    }
+
+    private Index readIndex(int firstId) throws IOException {
+        File file = indexFile(firstId);
+        if (!file.isFile()) {
+            return new Index(0);
+        }
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Index index = new Index(data.remaining() / INDEX_ENTRY_BYTES);
+        for (int i = 0; i < index.count; i++) {
+            index.offsets[i] = data.getInt();
+            index.nextIds[i] = data.getInt();
+            index.maxTimes[i] = data.getLong();
+        }
+        return index;
+    }
+
+    private static long timeOf(Alert alert) {
+        return alert.getTimestamp() != null ? alert.getTimestamp().getTime() : Long.MIN_VALUE;
+    }
+
+    /**
+     * Entrées d'index d'un segment (identifiants et dates maximales croissants)
+     */
+    private static final class Index {
+        final int count;
+        final int[] offsets;
+        final int[] nextIds;
+        final long[] maxTimes;
+
+        Index(int count) {
+            this.count = count;
+            this.offsets = new int[count];
+            this.nextIds = new int[count];
+            this.maxTimes = new long[count];
+        }
+
+        /**
+         * Position de la dernière entrée avant laquelle tous les identifiants sont inférieurs à id
+         */
+        int seekId(int id) {
+            return count > 0 ? offsets[entryForId(id)] : 0;
+        }
+
+        /**
+         * Dernière entrée avant laquelle tous les identifiants sont inférieurs à id (0 par défaut)
+         */
+        int entryForId(int id) {
+            int found = 0;
+            for (int low = 0, high = count - 1; low <= high; ) {
+                int mid = (low + high) >>> 1;
+                if (nextIds[mid] <= id) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Position de la dernière entrée avant laquelle toutes les dates sont antérieures à time
+         */
+        int seekTime(long time) {
+            int found = 0;
+            for (int low = 0, high = count - 1; low <= high; ) {
+                int mid = (low + high) >>> 1;
+                if (maxTimes[mid] < time) {
+                    found = offsets[mid];
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Résumés des blocs d'un segment; par défaut, un bloc n'exclut rien
+     */
+    private static final class Summary {
+        final long[] sources;
+        final int[] types;
+        final int[] priorities;
+        final long[] minTimes;
+
+        Summary(int count) {
+            sources = new long[count];
+            types = new int[count];
+            priorities = new int[count];
+            minTimes = new long[count];
+            Arrays.fill(sources, -1L);
+            Arrays.fill(types, -1);
+            Arrays.fill(priorities, -1);
+            Arrays.fill(minTimes, Long.MIN_VALUE);
+        }
+
+        void set(int block, long sources, int types, int priorities, long minTime) {
+            if (block < 0) {
+                return;
+            }
+            this.sources[block] = sources;
+            this.types[block] = types;
+            this.priorities[block] = priorities;
+            this.minTimes[block] = minTime;
+        }
+
+        /**
+         * Le bloc ne contient aucune alerte de la requête datée de maxTime ou avant
+         */
+        boolean excludes(int block, AlertQuery query, long maxTime) {
+            return query.getSourceId() != 0 && (sources[block] & 1L << (query.getSourceId() & 63)) == 0
+                    || query.getType() != null && (types[block] & 1 << query.getType().ordinal()) == 0
+                    || query.getPriority() != null && (priorities[block] & 1 << query.getPriority().ordinal()) == 0
+                    || minTimes[block] > maxTime;
+        }
+    }
+}
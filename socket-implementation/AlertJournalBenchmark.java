@@ -0,0 +1,80 @@
+package socket.server;
+
+import common.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Outil de mesure: écriture et relecture du journal des alertes (AlertJournal)
+ * Écrit N alertes (une résolution pour deux), rouvre le journal comme au redémarrage du serveur,
+ * puis relit la fenêtre récente et lit à partir d'une date située au milieu du journal.
+ *
+ * Usage: java -cp bin socket.server.AlertJournalBenchmark [alertes] [répertoire]
+ * Sans répertoire, un répertoire temporaire supprimé à la fin.
+ */
+public class AlertJournalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        boolean temporary = args.length < 2;
+        File dir = temporary ? Files.createTempDirectory("alert-journal").toFile() : new File(args[1]);
+
+        Alert.AlertType[] types = Alert.AlertType.values();
+        long base = System.currentTimeMillis() - count;
+        AlertJournal journal = new AlertJournal(dir, 64 * 1024 * 1024);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Alert alert = new Alert(types[i % types.length], 1 + i % 500, "Machine-M" + (1 + i % 500),
+                    "Alerte de mesure " + i);
+            alert.setTimestamp(new Date(base + i));
+            journal.append(alert);
+            if (i % 2 == 0) {
+                alert.setResolved(true);
+                journal.resolved(alert);
+            }
+        }
+        journal.close();
+        long writeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        journal = new AlertJournal(dir, 64 * 1024 * 1024);
+        long reopenNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Alert> window = journal.recent(1000);
+        long recentNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Alert> large = journal.recent(1_000_000);
+        long recentLargeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Alert> since = journal.readSince(base + count / 2, 1000);
+        long sinceNanos = System.nanoTime() - start;
+        int segments = journal.getSegmentCount();
+        journal.close();
+
+        long bytes = 0;
+        for (File file : dir.listFiles()) {
+            bytes += file.length();
+        }
+        System.out.println("=== Journal: " + count + " alertes, " + segments + " segment(s), "
+                + bytes / (1024 * 1024) + " Mo ===");
+        System.out.printf("Écriture:                  %8.1f ms (%.0f ns/alerte)%n", writeNanos / 1e6, (double) writeNanos / count);
+        System.out.printf("Réouverture:               %8.1f ms%n", reopenNanos / 1e6);
+        System.out.printf("Relecture 1 000 récentes:  %8.1f ms (%d, dernière: %s)%n", recentNanos / 1e6,
+                window.size(), window.isEmpty() ? "-" : window.get(window.size() - 1).getId());
+        System.out.printf("Relecture 1 000 000:       %8.1f ms (%d)%n", recentLargeNanos / 1e6, large.size());
+        System.out.printf("Lecture depuis une date:   %8.1f ms (%d, première: %s)%n", sinceNanos / 1e6,
+                since.size(), since.isEmpty() ? "-" : since.get(0).getId());
+
+        if (temporary) {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package socket.server;
+
+import common.Alert;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Journal des alertes récentes: tampon circulaire de capacité fixe
+ *
+ * L'identifiant est attribué par compteur atomique; l'alerte d'identifiant id occupe la case
+ * (id - 1) % capacité et y remplace l'alerte de id - capacité. L'alerte remplacée est confiée
+ * à evicted (persistance, ou simple abandon compté). La mémoire ne dépend que de la capacité.
+ * Avec un journal (AlertJournal), l'identifiant est attribué par le journal au moment de l'écriture.
+ */
+class AlertLog {
+    private final int capacity;
+    private final AtomicReferenceArray<Alert> ring;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final Consumer<Alert> evicted;
+    private final AlertJournal journal;  // null: alertes en mémoire seulement
+
+    AlertLog(int capacity, AlertJournal journal, Consumer<Alert> evicted) {
+        this.capacity = capacity;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.journal = journal;
+        this.evicted = evicted;
+    }
+
+    /**
+     * Attribuer un identifiant à l'alerte et l'enregistrer
+     */
+    int append(Alert alert) {
+        int id = journal != null ? journal.append(alert) : nextId.getAndIncrement();
+        alert.setId(id);
+        lastId.accumulateAndGet(id, Math::max);
+        int slot = slotOf(id);
+        while (true) {
+            Alert current = ring.get(slot);
+            if (current != null && current.getId() > id) {
+                // Une alerte plus récente a déjà pris la case (écrivain plus rapide): celle-ci sort aussitôt
+                evict(alert);
+                return id;
+            }
+            if (ring.compareAndSet(slot, current, alert)) {
+                if (current != null) {
+                    evict(current);
+                }
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Remettre dans la fenêtre une alerte relue du journal au démarrage (identifiant conservé)
+     */
+    void restore(Alert alert) {
+        ring.set(slotOf(alert.getId()), alert);
+        nextId.accumulateAndGet(alert.getId() + 1, Math::max);
+        lastId.accumulateAndGet(alert.getId(), Math::max);
+    }
+
+    /**
+     * Alerte d'identifiant id si elle est encore dans la fenêtre, sinon null
+     */
+    Alert get(int id) {
+        if (id < 1) {
+            return null;
+        }
+        Alert alert = ring.get(slotOf(id));
+        return alert != null && alert.getId() == id ? alert : null;
+    }
+
+    /**
+     * Plus petit identifiant que la fenêtre peut encore contenir: les précédents en sont sortis
+     */
+    int oldestId() {
+        return Math.max(1, lastId.get() - capacity + 1);
+    }
+
+    int slotOf(int id) {
+        return (id - 1) % capacity;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    private void evict(Alert alert) {
+        evictedCount.incrementAndGet();
+        evicted.accept(alert);
+    }
+}
@@ -0,0 +1,144 @@
+package socket.server;
+
+import common.Alert;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Résolution asynchrone des alertes, par ordre de priorité
+ *
+ * Le client est acquitté dès l'enregistrement de l'alerte; des threads dédiés prennent ensuite
+ * la plus prioritaire en attente (CRITICAL d'abord, puis par ordre d'arrivée). Une panne machine
+ * passe donc devant une rafale d'alertes PRODUCTION_CHANGE au lieu d'attendre derrière elles.
+ *
+ * File bornée (--alert-queue=N): pendant une tempête d'alertes, la mémoire ne grossit pas. File pleine,
+ * une alerte évince la plus récente des alertes en attente de priorité inférieure, sinon elle n'est pas
+ * mise en file. Une alerte écartée reste enregistrée (journal, ALERT_QUERY) mais n'est pas résolue
+ * automatiquement; les doublons, eux, sont déjà regroupés en amont (AlertCoalescer).
+ */
+class AlertPipeline {
+    private static final int LEVELS = Alert.AlertPriority.values().length;
+
+    // Une file par priorité, dans l'ordre d'arrivée; un seul verrou (rien de long n'est fait dessous)
+    private final ArrayDeque<Alert>[] pending;
+    private final int capacity;
+    private int size;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final AtomicInteger resolved = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+    private final Consumer<Alert> resolver;
+
+    /**
+     * @param starter démarre un thread de résolution (thread virtuel avec --virtual)
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})  // Tableau de files génériques
+    AlertPipeline(int workers, int capacity, BiFunction<Runnable, String, Thread> starter,
+            Consumer<Alert> resolver) {
+        this.capacity = capacity;
+        this.resolver = resolver;
+        pending = new ArrayDeque[LEVELS];
+        for (int i = 0; i < LEVELS; i++) {
+            pending[i] = new ArrayDeque<>();
+        }
+        for (int i = 0; i < workers; i++) {
+            starter.apply(this::drain, "alertes-" + i);
+        }
+    }
+
+    /**
+     * Mettre une alerte enregistrée (identifiant attribué) en attente de résolution
+     * @return false si la file est pleine d'alertes au moins aussi prioritaires: alerte écartée
+     */
+    boolean submit(Alert alert) {
+        int level = level(alert);
+        lock.lock();
+        try {
+            if (size >= capacity) {
+                int lowest = 0;
+                while (lowest < level && pending[lowest].isEmpty()) {
+                    lowest++;
+                }
+                if (lowest >= level) {
+                    shed.increment();
+                    return false;
+                }
+                pending[lowest].pollLast();  // Évincée: la plus récente des moins prioritaires
+                size--;
+                shed.increment();
+            }
+            pending[level].addLast(alert);
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getPending() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getResolved() {
+        return resolved.get();
+    }
+
+    /**
+     * Alertes écartées ou évincées faute de place depuis le démarrage
+     */
+    long getShed() {
+        return shed.sum();
+    }
+
+    private static int level(Alert alert) {
+        return alert.getPriority() != null ? alert.getPriority().ordinal() : 0;
+    }
+
+    private Alert take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            for (int level = LEVELS - 1; ; level--) {
+                Alert alert = pending[level].pollFirst();
+                if (alert != null) {
+                    size--;
+                    return alert;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Alert alert;
+            try {
+                alert = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                resolver.accept(alert);
+            } catch (RuntimeException e) {
+                // Une résolution en échec ne doit pas arrêter le thread
+                System.err.println("Erreur de résolution de l'alerte " + alert.getId() + ": " + e);
+            }
+            resolved.incrementAndGet();
+        }
+    }
+}
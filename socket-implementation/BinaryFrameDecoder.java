@@ -0,0 +1,55 @@
+package socket.server;
+
+import common.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Décodeur des trames WireCodec: [longueur int32][corps]
+ */
+class BinaryFrameDecoder implements FrameDecoder {
+    private byte[] buffer = new byte[256];
+    private int start;   // Début des octets non consommés
+    private int end;     // Fin des octets reçus
+
+    @Override
+    public void feed(ByteBuffer src) throws IOException {
+        int n = src.remaining();
+        if (end + n > buffer.length) {
+            // Compacter avant d'agrandir
+            int pending = end - start;
+            byte[] target = pending + n > buffer.length
+                    ? new byte[Math.max(pending + n, buffer.length * 2)]
+                    : buffer;
+            System.arraycopy(buffer, start, target, 0, pending);
+            buffer = target;
+            start = 0;
+            end = pending;
+        }
+        src.get(buffer, end, n);
+        end += n;
+    }
+
+    @Override
+    public ProductionMessage next() throws IOException {
+        int available = end - start;
+        if (available < 4) {
+            return null;
+        }
+        int length = ((buffer[start] & 0xFF) << 24) | ((buffer[start + 1] & 0xFF) << 16)
+                | ((buffer[start + 2] & 0xFF) << 8) | (buffer[start + 3] & 0xFF);
+        if (length < 0 || length > WireCodec.MAX_FRAME_BYTES) {
+            throw new StreamCorruptedException("Longueur de trame invalide: " + length);
+        }
+        if (available < 4 + length) {
+            return null;
+        }
+        ProductionMessage message = WireCodec.decode(ByteBuffer.wrap(buffer, start + 4, length));
+        start += 4 + length;
+        if (start == end) {
+            start = 0;
+            end = 0;
+        }
+        return message;
+    }
+}
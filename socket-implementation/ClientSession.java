@@ -0,0 +1,22 @@
+package socket.server;
+
+import common.*;
+import java.net.InetAddress;
+
+/**
+ * Connexion cliente capable de recevoir des messages poussés par le serveur
+ * Implémentée par ClientHandler (thread par connexion) et par les connexions NIO.
+ */
+interface ClientSession {
+    /**
+     * Mettre un message en file d'envoi sans bloquer l'appelant
+     */
+    void push(ProductionMessage message);
+
+    /**
+     * File d'envoi bornée de la connexion (profondeur et compteurs de pertes)
+     */
+    OutboundQueue getOutboundQueue();
+
+    InetAddress getRemoteAddress();
+}
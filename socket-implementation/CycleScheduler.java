@@ -0,0 +1,195 @@
+package socket.server;
+
+import common.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Cycles de production de chaque machine et cycles d'assemblage de chaque station, sur un ordonnanceur partagé
+ *
+ * Chaque machine en marche a sa propre tâche, reprogrammée à la fin de chaque cycle selon sa durée
+ * de cycle (déclarée pour la machine ou son type, sinon celle du serveur): des machines rapides et
+ * lentes coexistent, et un cycle ne parcourt ni ne verrouille rien d'autre que sa machine et sa zone.
+ * Une machine arrêtée n'est plus reprogrammée; redémarrée, elle repart avec un nouveau cycle.
+ * Comme l'ancien simulateur par station, les cycles d'une station commencent à son premier assemblage.
+ * Toutes les tâches partagent quelques threads (--cycle-threads), quel que soit le nombre de machines.
+ */
+class CycleScheduler {
+    private final ScheduledThreadPoolExecutor executor;
+    private final long defaultMinMs;
+    private final long defaultMaxMs;
+    private final long assemblyMinMs;
+    private final long assemblyMaxMs;
+    private final BiConsumer<Machine, StationShard> machineCycle;
+    private final Consumer<StationShard> assemblyCycle;
+
+    // Cycle de chaque machine démarrée au moins une fois, ou déclarée dans la topologie
+    private final Map<Integer, MachineCycle> cycles = new ConcurrentHashMap<>();
+
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private final AtomicLong machineTicks = new AtomicLong();
+    private final AtomicLong assemblyTicks = new AtomicLong();
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+
+    CycleScheduler(int threads, long defaultMinMs, long defaultMaxMs, long assemblyMinMs, long assemblyMaxMs,
+            BiConsumer<Machine, StationShard> machineCycle, Consumer<StationShard> assemblyCycle) {
+        this.defaultMinMs = defaultMinMs;
+        this.defaultMaxMs = defaultMaxMs;
+        this.assemblyMinMs = assemblyMinMs;
+        this.assemblyMaxMs = assemblyMaxMs;
+        this.machineCycle = machineCycle;
+        this.assemblyCycle = assemblyCycle;
+        AtomicInteger next = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(threads, task -> {
+            Thread thread = new Thread(task, "cycles-" + next.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Durée de cycle propre à une machine (topologie)
+     */
+    void configure(Machine m, StationShard shard, long minMs, long maxMs) {
+        cycles.put(m.getId(), new MachineCycle(m, shard, minMs, maxMs));
+    }
+
+    /**
+     * Machine passée en marche: premier cycle programmé, sauf si son cycle tourne déjà
+     * ou si les cycles de sa station n'ont pas commencé
+     */
+    void machineStarted(Machine m, StationShard shard) {
+        if (shard.cyclesStarted) {
+            schedule(m, shard, 0);
+        }
+    }
+
+    /**
+     * Lancer les cycles d'une station après delayMs: assemblage, et machines déjà en marche
+     * (appelé une fois par station; une machine démarrée ensuite passe par machineStarted)
+     */
+    void startStation(StationShard shard, long delayMs) {
+        // Drapeau levé avant le parcours: une machine démarrée pendant est vue ici ou par machineStarted
+        shard.cyclesStarted = true;
+        for (Machine m : shard.machines) {
+            if (m.getState() == Machine.MachineState.RUNNING) {
+                schedule(m, shard, delayMs);
+            }
+        }
+        executor.schedule(new AssemblyCycle(shard), delayMs + draw(assemblyMinMs, assemblyMaxMs),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void schedule(Machine m, StationShard shard, long delayMs) {
+        MachineCycle cycle = cycles.get(m.getId());
+        if (cycle == null) {
+            cycle = cycles.computeIfAbsent(m.getId(), id -> new MachineCycle(m, shard, defaultMinMs, defaultMaxMs));
+        }
+        if (cycle.scheduled.compareAndSet(false, true)) {
+            scheduled.incrementAndGet();
+            cycle.schedule(delayMs);
+        }
+    }
+
+    int getScheduledMachines() {
+        return scheduled.get();
+    }
+
+    long getMachineTicks() {
+        return machineTicks.get();
+    }
+
+    long getAssemblyTicks() {
+        return assemblyTicks.get();
+    }
+
+    /**
+     * Plus grand retard d'un cycle sur sa date prévue depuis la lecture précédente (ms)
+     */
+    long takeMaxLagMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.getThenReset());
+    }
+
+    private static long draw(long minMs, long maxMs) {
+        return maxMs > minMs ? minMs + ThreadLocalRandom.current().nextLong(maxMs - minMs) : minMs;
+    }
+
+    /**
+     * Cycle d'une machine: une pièce par cycle tant qu'elle est en marche
+     */
+    private final class MachineCycle implements Runnable {
+        final Machine machine;
+        final StationShard shard;
+        final long minMs;
+        final long maxMs;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        long due;  // System.nanoTime() prévu du prochain cycle (écrit avant la programmation)
+
+        MachineCycle(Machine machine, StationShard shard, long minMs, long maxMs) {
+            this.machine = machine;
+            this.shard = shard;
+            this.minMs = minMs;
+            this.maxMs = maxMs;
+        }
+
+        void schedule(long extraMs) {
+            long delay = extraMs + draw(minMs, maxMs);
+            due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            maxLagNanos.accumulate(System.nanoTime() - due);
+            if (machine.getState() == Machine.MachineState.RUNNING) {
+                try {
+                    machineCycle.accept(machine, shard);
+                } catch (RuntimeException e) {
+                    // Un cycle en échec ne doit pas arrêter la machine
+                    System.err.println("Erreur de cycle de " + machine.getName() + ": " + e);
+                }
+                machineTicks.incrementAndGet();
+                schedule(0);
+                return;
+            }
+            // Arrêtée: plus de cycle, sauf redémarrage entre la lecture de l'état et cette ligne
+            scheduled.set(false);
+            CycleScheduler.this.scheduled.decrementAndGet();
+            if (machine.getState() == Machine.MachineState.RUNNING && scheduled.compareAndSet(false, true)) {
+                CycleScheduler.this.scheduled.incrementAndGet();
+                schedule(0);
+            }
+        }
+    }
+
+    /**
+     * Cycle d'assemblage d'une station
+     */
+    private final class AssemblyCycle implements Runnable {
+        final StationShard shard;
+
+        AssemblyCycle(StationShard shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void run() {
+            try {
+                assemblyCycle.accept(shard);
+            } catch (RuntimeException e) {
+                System.err.println("Erreur de cycle d'assemblage de " + shard.station.getName() + ": " + e);
+            }
+            assemblyTicks.incrementAndGet();
+            executor.schedule(this, draw(assemblyMinMs, assemblyMaxMs), TimeUnit.MILLISECONDS);
+        }
+    }
+}
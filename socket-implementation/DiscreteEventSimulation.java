@@ -0,0 +1,541 @@
+package socket.server;
+
+import common.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Simulation à événements discrets de la ligne, en temps virtuel (planification de capacité hors ligne)
+ *
+ * Mêmes règles que les cycles du serveur (CycleScheduler), sans horloge murale: chaque machine en
+ * marche produit une pièce par cycle (durée déclarée dans la topologie pour la machine ou son type,
+ * sinon celle du scénario) et la dépose dans la zone de sa station (pièce perdue si la zone est pleine),
+ * chaque station assemble un produit par cycle si toutes ses zones ont une pièce. Les cycles sont
+ * des événements datés dans une file de priorité (EventQueue); l'horloge saute d'un événement au
+ * suivant, une équipe de 8 h se simule en quelques millisecondes.
+ *
+ * Pannes en option (durée de fonctionnement et de réparation exponentielles). Les machines de secours
+ * (--standby, comme M2 pour M1) restent à l'arrêt; à la panne d'une machine, un secours libre de même
+ * station et même type la remplace jusqu'à sa réparation, comme le remplacement du serveur.
+ *
+ * Durées tirées d'un générateur à graine (SplittableRandom, algorithme spécifié par le JDK; StrictMath
+ * pour les lois exponentielles) dans l'ordre des événements: même topologie, même scénario et même
+ * graine donnent le même déroulement, à l'événement près (empreinte identique), sur toute JVM.
+ *
+ * Usage: java -cp bin socket.server.DiscreteEventSimulation [--topology=F] [--verify] [options du scénario]
+ * Options du scénario: voir Scenario.parse.
+ */
+public class DiscreteEventSimulation {
+    static final byte MACHINE_CYCLE = 0;
+    static final byte ASSEMBLY = 1;
+    static final byte FAILURE = 2;
+    static final byte REPAIR = 3;
+
+    private static final byte RUNNING = 0;
+    private static final byte STANDBY = 1;
+    private static final byte FAILED = 2;
+
+    static final int PARTS = Machine.PartType.values().length;
+    private static final Machine.PartType[] PART_TYPES = Machine.PartType.values();
+
+    /**
+     * Paramètres d'une exécution; défauts repris du simulateur du serveur
+     */
+    static final class Scenario implements Cloneable {
+        long seed = 1;
+        long durationMs = 8 * 3600_000L;        // Une équipe
+        long startDelayMs = 5000;               // Attente avant le premier cycle
+        long cycleMinMs = 3000;                 // Cycle machine sans cycle dans la topologie: [cycleMinMs, cycleMaxMs[
+        long cycleMaxMs = 7000;
+        long assemblyMinMs = 3000;              // Cycle d'assemblage: [assemblyMinMs, assemblyMaxMs[
+        long assemblyMaxMs = 7000;
+        long mtbfMs = 0;                        // Durée moyenne de fonctionnement avant panne (0 = jamais)
+        long repairMs = 15 * 60_000L;           // Durée moyenne de réparation
+        Set<Integer> standbyIds = new HashSet<>();  // Machines de secours (à l'arrêt au départ)
+        boolean useStandby = true;              // false: secours jamais démarrés (ligne sans redondance)
+
+        Scenario withSeed(long seed) {
+            Scenario copy = copy();
+            copy.seed = seed;
+            return copy;
+        }
+
+        Scenario withoutStandby() {
+            Scenario copy = copy();
+            copy.useStandby = false;
+            return copy;
+        }
+
+        private Scenario copy() {
+            try {
+                return (Scenario) clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        /**
+         * Option de scénario: --seed=N, --hours=H, --cycle-ms=MIN-MAX, --assembly-ms=MIN-MAX,
+         * --mtbf-min=M, --repair-min=M, --standby=ID,ID
+         * @return false si l'option n'est pas une option de scénario
+         */
+        boolean parse(String arg) {
+            if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--hours=")) {
+                durationMs = (long) (Double.parseDouble(arg.substring("--hours=".length())) * 3600_000);
+            } else if (arg.startsWith("--cycle-ms=")) {
+                long[] range = parseRange(arg.substring("--cycle-ms=".length()));
+                cycleMinMs = range[0];
+                cycleMaxMs = range[1];
+            } else if (arg.startsWith("--assembly-ms=")) {
+                long[] range = parseRange(arg.substring("--assembly-ms=".length()));
+                assemblyMinMs = range[0];
+                assemblyMaxMs = range[1];
+            } else if (arg.startsWith("--mtbf-min=")) {
+                mtbfMs = (long) (Double.parseDouble(arg.substring("--mtbf-min=".length())) * 60_000);
+            } else if (arg.startsWith("--repair-min=")) {
+                repairMs = (long) (Double.parseDouble(arg.substring("--repair-min=".length())) * 60_000);
+            } else if (arg.startsWith("--standby=")) {
+                standbyIds = new HashSet<>();
+                for (String id : arg.substring("--standby=".length()).split(",")) {
+                    standbyIds.add(Integer.parseInt(id.trim()));
+                }
+            } else {
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Compteurs en fin d'exécution (machines dans l'ordre de la topologie, zones [station * PARTS + pièce])
+     */
+    static final class Result {
+        long seed;
+        long events;
+        long durationMs;
+        long fingerprint;             // Empreinte de la suite (date, type, cible) des événements traités
+        long failures;
+        long[] produced;              // Pièces produites, par machine
+        long[] runningMs;             // Temps en marche, par machine
+        long[] assembled;             // Produits assemblés, par station
+        long[] blocked;               // Pièces perdues (zone pleine), par station
+        long[] starved;               // Cycles d'assemblage sans pièce dans une zone, par station
+        long[] emptyMs;               // Temps zone vide (assemblage bloqué), par zone
+        long[] fullMs;                // Temps zone pleine (production perdue), par zone
+
+        long totalAssembled() {
+            long total = 0;
+            for (long count : assembled) {
+                total += count;
+            }
+            return total;
+        }
+
+        long totalProduced() {
+            long total = 0;
+            for (long count : produced) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    // Ligne en tableaux: station de chaque machine, pièce qu'elle produit, capacité par zone
+    private final int[] machineIds;
+    private final int[] machineStation;
+    private final int[] machinePart;
+    private final int[][] machineCycle;  // {min, max} de la topologie, null: cycle du scénario
+    private final int[] stationIds;
+    private final String[] stationNames;
+    private final int[] capacity;  // [station * PARTS + pièce]
+
+    DiscreteEventSimulation(PlantTopology topology) {
+        List<PlantTopology.Station> stations = topology.getStations();
+        stationIds = new int[stations.size()];
+        stationNames = new String[stations.size()];
+        capacity = new int[stations.size() * PARTS];
+        Map<Integer, Integer> slots = new HashMap<>();
+        for (int slot = 0; slot < stations.size(); slot++) {
+            PlantTopology.Station station = stations.get(slot);
+            stationIds[slot] = station.getId();
+            stationNames[slot] = station.getName();
+            slots.put(station.getId(), slot);
+            for (Machine.PartType part : PART_TYPES) {
+                capacity[slot * PARTS + part.ordinal()] = station.getCapacity(part);
+            }
+        }
+        int count = topology.getMachineCount();
+        if (count > EventQueue.MAX_TARGETS) {
+            throw new IllegalArgumentException("Trop de machines pour la simulation: " + count);
+        }
+        machineIds = new int[count];
+        machineStation = new int[count];
+        machinePart = new int[count];
+        machineCycle = new int[count][];
+        for (int i = 0; i < count; i++) {
+            machineCycle[i] = topology.getMachineCycle(i);
+            machineIds[i] = topology.getMachineId(i);
+            machineStation[i] = slots.get(topology.getMachineStation(i).getId());
+            machinePart[i] = Machine.PartType.of(topology.getMachineType(i)).ordinal();
+        }
+    }
+
+    /**
+     * Exécuter un scénario: machines en marche (secours à l'arrêt), stations en assemblage
+     * Sans état partagé entre exécutions: plusieurs exécutions peuvent tourner en parallèle.
+     */
+    Result run(Scenario scenario) {
+        return new Run(scenario).execute();
+    }
+
+    int getMachineCount() {
+        return machineIds.length;
+    }
+
+    int getStationCount() {
+        return stationIds.length;
+    }
+
+    int machineId(int index) {
+        return machineIds[index];
+    }
+
+    int machineStation(int index) {
+        return machineStation[index];
+    }
+
+    int machinePart(int index) {
+        return machinePart[index];
+    }
+
+    String stationName(int slot) {
+        return stationNames[slot];
+    }
+
+    int zoneCapacity(int zone) {
+        return capacity[zone];
+    }
+
+    /**
+     * État d'une exécution
+     */
+    private final class Run {
+        final Scenario scenario;
+        final SplittableRandom random;
+        final EventQueue queue;
+        final Result result = new Result();
+
+        final byte[] state;
+        final long[] cycleDue;        // Date du prochain cycle valide (-1: aucun; événement périmé sinon)
+        final long[] failureDue;
+        final long[] runningSince;
+        final boolean[] spare;
+        final int[] covering;         // Secours: machine remplacée (-1: aucune)
+        final int[] coveredBy;        // Machine principale: secours qui la remplace (-1: aucun)
+        final int[][] sparesByZone;
+        final int[] stock;
+        final long[] emptySince;
+        final long[] fullSince;
+
+        Run(Scenario scenario) {
+            this.scenario = scenario;
+            random = new SplittableRandom(scenario.seed);
+            int machines = machineIds.length;
+            int zones = capacity.length;
+            queue = new EventQueue(machines * (scenario.mtbfMs > 0 ? 2 : 1) + stationIds.length);
+            state = new byte[machines];
+            cycleDue = new long[machines];
+            failureDue = new long[machines];
+            runningSince = new long[machines];
+            spare = new boolean[machines];
+            covering = new int[machines];
+            coveredBy = new int[machines];
+            stock = new int[zones];
+            emptySince = new long[zones];
+            fullSince = new long[zones];
+
+            List<List<Integer>> spares = new ArrayList<>(zones);
+            for (int zone = 0; zone < zones; zone++) {
+                spares.add(new ArrayList<>());
+            }
+            for (int i = 0; i < machines; i++) {
+                spare[i] = scenario.standbyIds.contains(machineIds[i]);
+                if (spare[i]) {
+                    spares.get(zoneOf(i)).add(i);
+                }
+            }
+            sparesByZone = new int[zones][];
+            for (int zone = 0; zone < zones; zone++) {
+                sparesByZone[zone] = spares.get(zone).stream().mapToInt(Integer::intValue).toArray();
+            }
+
+            result.seed = scenario.seed;
+            result.durationMs = scenario.durationMs;
+            result.produced = new long[machines];
+            result.runningMs = new long[machines];
+            result.assembled = new long[stationIds.length];
+            result.blocked = new long[stationIds.length];
+            result.starved = new long[stationIds.length];
+            result.emptyMs = new long[zones];
+            result.fullMs = new long[zones];
+        }
+
+        Result execute() {
+            for (int i = 0; i < state.length; i++) {
+                covering[i] = -1;
+                coveredBy[i] = -1;
+                state[i] = STANDBY;
+                cycleDue[i] = -1;
+                failureDue[i] = -1;
+                if (!spare[i]) {
+                    start(i, 0, scenario.startDelayMs);
+                }
+            }
+            for (int slot = 0; slot < stationIds.length; slot++) {
+                queue.add(scenario.startDelayMs + draw(scenario.assemblyMinMs, scenario.assemblyMaxMs), ASSEMBLY, slot);
+            }
+
+            long fingerprint = scenario.seed;
+            while (!queue.isEmpty() && queue.peekTime() <= scenario.durationMs) {
+                long now = queue.peekTime();
+                byte kind = queue.peekKind();
+                int target = queue.peekTarget();
+                // Cycle ou panne d'une machine arrêtée depuis: événement périmé, retiré sans effet
+                if ((kind == MACHINE_CYCLE && cycleDue[target] != now) || (kind == FAILURE && failureDue[target] != now)) {
+                    queue.removeTop();
+                    continue;
+                }
+                fingerprint = mix(fingerprint, now, kind, target);
+                result.events++;
+
+                switch (kind) {
+                    case MACHINE_CYCLE:
+                        produce(target, now);
+                        cycleDue[target] = now + cycle(target);
+                        queue.replaceTop(cycleDue[target]);
+                        break;
+                    case ASSEMBLY:
+                        assemble(target, now);
+                        queue.replaceTop(now + draw(scenario.assemblyMinMs, scenario.assemblyMaxMs));
+                        break;
+                    case FAILURE:
+                        queue.removeTop();
+                        fail(target, now);
+                        break;
+                    default:
+                        queue.removeTop();
+                        repair(target, now);
+                        break;
+                }
+            }
+
+            // Temps en cours à la fin de l'exécution
+            long end = scenario.durationMs;
+            for (int i = 0; i < state.length; i++) {
+                if (state[i] == RUNNING) {
+                    result.runningMs[i] += end - runningSince[i];
+                }
+            }
+            for (int zone = 0; zone < stock.length; zone++) {
+                if (capacity[zone] > 0) {
+                    if (stock[zone] == 0) {
+                        result.emptyMs[zone] += end - emptySince[zone];
+                    }
+                    if (stock[zone] == capacity[zone]) {
+                        result.fullMs[zone] += end - fullSince[zone];
+                    }
+                }
+            }
+            result.fingerprint = fingerprint;
+            return result;
+        }
+
+        void produce(int machine, long now) {
+            int station = machineStation[machine];
+            int zone = zoneOf(machine);
+            result.produced[machine]++;
+            if (stock[zone] < capacity[zone]) {
+                if (stock[zone] == 0) {
+                    result.emptyMs[zone] += now - emptySince[zone];
+                }
+                if (++stock[zone] == capacity[zone]) {
+                    fullSince[zone] = now;
+                }
+            } else {
+                result.blocked[station]++;
+            }
+        }
+
+        void assemble(int station, long now) {
+            int first = station * PARTS;
+            for (int part = 0; part < PARTS; part++) {
+                if (stock[first + part] == 0) {
+                    result.starved[station]++;
+                    return;
+                }
+            }
+            for (int zone = first; zone < first + PARTS; zone++) {
+                if (stock[zone] == capacity[zone]) {
+                    result.fullMs[zone] += now - fullSince[zone];
+                }
+                if (--stock[zone] == 0) {
+                    emptySince[zone] = now;
+                }
+            }
+            result.assembled[station]++;
+        }
+
+        void start(int machine, long now, long delay) {
+            state[machine] = RUNNING;
+            runningSince[machine] = now;
+            cycleDue[machine] = now + delay + cycle(machine);
+            queue.add(cycleDue[machine], MACHINE_CYCLE, machine);
+            if (scenario.mtbfMs > 0) {
+                failureDue[machine] = now + exponential(scenario.mtbfMs);
+                queue.add(failureDue[machine], FAILURE, machine);
+            }
+        }
+
+        void stop(int machine, long now, byte newState) {
+            result.runningMs[machine] += now - runningSince[machine];
+            state[machine] = newState;
+            cycleDue[machine] = -1;
+            failureDue[machine] = -1;
+        }
+
+        void fail(int machine, long now) {
+            stop(machine, now, FAILED);
+            result.failures++;
+            queue.add(now + exponential(scenario.repairMs), REPAIR, machine);
+            // Machine principale remplacée par un secours libre; secours en panne: un autre prend le relais
+            int replaced = spare[machine] ? covering[machine] : machine;
+            if (spare[machine]) {
+                covering[machine] = -1;
+            }
+            if (replaced >= 0) {
+                coveredBy[replaced] = -1;
+                if (scenario.useStandby) {
+                    cover(replaced, now);
+                }
+            }
+        }
+
+        void cover(int machine, long now) {
+            for (int candidate : sparesByZone[zoneOf(machine)]) {
+                if (state[candidate] == STANDBY) {
+                    start(candidate, now, 0);
+                    covering[candidate] = machine;
+                    coveredBy[machine] = candidate;
+                    return;
+                }
+            }
+        }
+
+        void repair(int machine, long now) {
+            if (spare[machine]) {
+                state[machine] = STANDBY;
+                return;
+            }
+            // Machine principale réparée: elle reprend, son secours retourne à l'arrêt
+            int replacement = coveredBy[machine];
+            if (replacement >= 0) {
+                stop(replacement, now, STANDBY);
+                covering[replacement] = -1;
+                coveredBy[machine] = -1;
+            }
+            start(machine, now, 0);
+        }
+
+        int zoneOf(int machine) {
+            return machineStation[machine] * PARTS + machinePart[machine];
+        }
+
+        long cycle(int machine) {
+            int[] range = machineCycle[machine];
+            return range != null ? draw(range[0], range[1]) : draw(scenario.cycleMinMs, scenario.cycleMaxMs);
+        }
+
+        long draw(long min, long max) {
+            return max > min ? min + random.nextLong(max - min) : min;
+        }
+
+        long exponential(long mean) {
+            return 1 + (long) (-mean * StrictMath.log(1 - random.nextDouble()));
+        }
+    }
+
+    private static long mix(long hash, long time, byte kind, int target) {
+        hash = (hash ^ time) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (((long) kind << 32) | (target & 0xFFFFFFFFL))) * 0xC2B2AE3D27D4EB4FL;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static long[] parseRange(String value) {
+        int dash = value.indexOf('-');
+        long min = Long.parseLong(dash < 0 ? value : value.substring(0, dash));
+        long max = dash < 0 ? min : Long.parseLong(value.substring(dash + 1));
+        if (max < min) {
+            throw new IllegalArgumentException("Intervalle invalide: " + value);
+        }
+        return new long[] { min, max };
+    }
+
+    // ------------------------------------------------------------------
+    // Outil en ligne de commande
+    // ------------------------------------------------------------------
+
+    public static void main(String[] args) throws Exception {
+        String topologyFile = null;
+        boolean verify = false;
+        Scenario scenario = new Scenario();
+        for (String arg : args) {
+            if (arg.startsWith("--topology=")) {
+                topologyFile = arg.substring("--topology=".length());
+            } else if (arg.equals("--verify")) {
+                verify = true;
+            } else if (!scenario.parse(arg)) {
+                System.err.println("[AVERTISSEMENT] Option inconnue ignorée: " + arg);
+            }
+        }
+        PlantTopology topology = topologyFile != null
+                ? PlantTopology.load(new File(topologyFile)) : PlantTopology.defaultTopology();
+        DiscreteEventSimulation simulation = new DiscreteEventSimulation(topology);
+
+        long start = System.nanoTime();
+        Result result = simulation.run(scenario);
+        long nanos = System.nanoTime() - start;
+
+        double hours = result.durationMs / 3600_000.0;
+        System.out.println("=== Simulation: " + simulation.getMachineCount() + " machines, "
+                + simulation.getStationCount() + " station(s), " + String.format("%.1f", hours) + " h virtuelles, graine "
+                + scenario.seed + " ===");
+        for (int slot = 0; slot < simulation.getStationCount(); slot++) {
+            System.out.printf("  %-24s %10d assemblés (%.1f/h), %d pièces perdues (zone pleine), %d cycles sans pièce%n",
+                    simulation.stationName(slot), result.assembled[slot], hours > 0 ? result.assembled[slot] / hours : 0.0,
+                    result.blocked[slot], result.starved[slot]);
+        }
+        System.out.printf("Pièces produites:  %d (%d pannes)%n", result.totalProduced(), result.failures);
+        System.out.printf("Événements:        %d en %.1f ms (%.1f millions/s)%n",
+                result.events, nanos / 1e6, result.events / (nanos / 1e3));
+        System.out.printf("Empreinte:         %016x%n", result.fingerprint);
+
+        if (verify) {
+            Result replay = simulation.run(scenario);
+            boolean same = replay.fingerprint == result.fingerprint && replay.events == result.events
+                    && replay.totalAssembled() == result.totalAssembled();
+            System.out.println(same ? "[OK] Rejeu identique" : "[ERREUR] Rejeu différent: "
+                    + String.format("%016x", replay.fingerprint));
+            if (!same) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package socket.server;
+
+import common.*;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Diffusion des changements d'état aux sessions abonnées (SUBSCRIBE)
+ * publish() ne bloque jamais: chaque session met le message dans sa propre file.
+ */
+class EventBroadcaster {
+    private final Set<ClientSession> subscribers = new CopyOnWriteArraySet<>();
+
+    void subscribe(ClientSession session) {
+        subscribers.add(session);
+    }
+
+    void unsubscribe(ClientSession session) {
+        subscribers.remove(session);
+    }
+
+    boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    void publish(StateEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        ProductionMessage message = new ProductionMessage(ProductionMessage.MessageType.STATE_EVENT, event);
+        for (ClientSession session : subscribers) {
+            session.push(message);
+        }
+    }
+}
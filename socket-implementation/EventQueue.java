@@ -0,0 +1,116 @@
+package socket.server;
+
+import java.util.Arrays;
+
+/**
+ * File d'événements de la simulation à événements discrets, par date virtuelle croissante
+ *
+ * Un événement tient dans un long: date (ms, 40 bits), type (2 bits) et cible (22 bits). Le tas est
+ * un seul tableau de long, quaternaire (quatre enfants contigus: moitié moins de niveaux qu'un tas
+ * binaire, une ligne de cache par niveau): ni objet ni boxing par événement. À date égale, le type
+ * puis la cible départagent: l'ordre ne dépend que des dates tirées, une même graine rejoue les mêmes
+ * événements. Un événement périodique (cycle machine, assemblage) est reprogrammé sur place par
+ * replaceTop: une seule descente dans le tas au lieu d'un retrait puis d'un ajout.
+ */
+class EventQueue {
+    static final int MAX_KINDS = 4;
+    static final int MAX_TARGETS = 1 << 22;
+    static final long MAX_TIME = (1L << 40) - 1;  // ~35 ans de temps virtuel
+
+    private static final int PAYLOAD_BITS = 24;
+    private static final int TARGET_BITS = 22;
+    private static final int TARGET_MASK = MAX_TARGETS - 1;
+
+    private long[] keys;
+    private int size;
+
+    EventQueue(int capacity) {
+        keys = new long[Math.max(capacity, 16)];
+    }
+
+    void add(long time, byte kind, int target) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        siftUp(size++, key(time, kind, target));
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Événement suivant (en tête), sans le retirer
+    long peekTime() {
+        return keys[0] >>> PAYLOAD_BITS;
+    }
+
+    byte peekKind() {
+        return (byte) ((keys[0] >>> TARGET_BITS) & (MAX_KINDS - 1));
+    }
+
+    int peekTarget() {
+        return (int) keys[0] & TARGET_MASK;
+    }
+
+    /**
+     * Retirer l'événement en tête
+     */
+    void removeTop() {
+        size--;
+        if (size > 0) {
+            siftDown(0, keys[size]);
+        }
+    }
+
+    /**
+     * Remplacer l'événement en tête par sa prochaine occurrence (même type, même cible)
+     */
+    void replaceTop(long time) {
+        siftDown(0, key(time, peekKind(), peekTarget()));
+    }
+
+    private static long key(long time, byte kind, int target) {
+        if (time < 0 || time > MAX_TIME || target < 0 || target >= MAX_TARGETS || kind < 0 || kind >= MAX_KINDS) {
+            throw new IllegalArgumentException("Événement hors limites: " + time + "/" + kind + "/" + target);
+        }
+        return time << PAYLOAD_BITS | (long) kind << TARGET_BITS | target;
+    }
+
+    private void siftUp(int i, long key) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 2;
+            if (keys[parent] <= key) {
+                break;
+            }
+            keys[i] = keys[parent];
+            i = parent;
+        }
+        keys[i] = key;
+    }
+
+    private void siftDown(int i, long key) {
+        while (true) {
+            int first = 4 * i + 1;
+            if (first >= size) {
+                break;
+            }
+            int child = first;
+            int last = Math.min(first + 4, size);
+            for (int c = first + 1; c < last; c++) {
+                if (keys[c] < keys[child]) {
+                    child = c;
+                }
+            }
+            if (keys[child] >= key) {
+                break;
+            }
+            keys[i] = keys[child];
+            i = child;
+        }
+        keys[i] = key;
+    }
+}
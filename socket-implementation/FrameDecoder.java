@@ -0,0 +1,20 @@
+package socket.server;
+
+import common.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Décodage incrémental des messages reçus par une connexion NIO
+ */
+interface FrameDecoder {
+    /**
+     * Ajouter les octets lus sur le canal
+     */
+    void feed(ByteBuffer src) throws IOException;
+
+    /**
+     * Prochain message complet, ou null s'il manque des octets
+     */
+    ProductionMessage next() throws IOException, ClassNotFoundException;
+}
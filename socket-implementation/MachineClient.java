@@ -3,6 +3,7 @@ package socket.client;
 import common.*;
 import java.io.*;
 import java.net.*;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
@@ -13,9 +14,8 @@ public class MachineClient {
     private static final String SERVER = "localhost";
     private static final int PORT = 9000;
     
-    private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private MessageChannel channel;
+    private RequestPipeline pipeline;
     private Scanner scanner;
     
     // ID de la machine gérée par ce client
@@ -24,15 +24,16 @@ public class MachineClient {
     
     public MachineClient(int machineId) throws IOException {
         this.myMachineId = machineId;
-        this.socket = new Socket(SERVER, PORT);
-        this.out = new ObjectOutputStream(socket.getOutputStream());
-        this.in = new ObjectInputStream(socket.getInputStream());
+        // Codec binaire compact si le serveur le supporte, sinon sérialisation Java
+        this.channel = MessageChannel.connect(SERVER, PORT, true);
+        this.pipeline = new RequestPipeline(channel);
         this.scanner = new Scanner(System.in);
         
         System.out.println("========================================");
         System.out.println("  CLIENT MACHINE M" + machineId);
         System.out.println("========================================");
-        System.out.println("Connecte au serveur " + SERVER + ":" + PORT);
+        System.out.println("Connecte au serveur " + SERVER + ":" + PORT
+                + " (codec: " + (channel.isBinary() ? "binaire" : "serialisation Java") + ")");
         
         // Récupérer les infos de ma machine
         try {
@@ -76,6 +77,18 @@ public class MachineClient {
                     case 7:
                         viewProductionStatus();
                         break;
+                    case 8:
+                        watchLiveEvents();
+                        break;
+                    case 9:
+                        viewSessionStats();
+                        break;
+                    case 10:
+                        viewMyAlerts();
+                        break;
+                    case 11:
+                        viewMyProductionRate();
+                        break;
                     case 0:
                         running = false;
                         break;
@@ -109,6 +122,10 @@ public class MachineClient {
         System.out.println("|  ------------------------------------------------   |");
         System.out.println("|  6. Voir toutes les machines (lecture seule)       |");
         System.out.println("|  7. Voir l'etat global de production               |");
+        System.out.println("|  8. Suivre les changements en direct               |");
+        System.out.println("|  9. Statistiques des sessions (clients lents)      |");
+        System.out.println("| 10. Historique des alertes de ma machine           |");
+        System.out.println("| 11. Production par minute (derniere heure)         |");
         System.out.println("|  0. Quitter                                         |");
         System.out.println("+======================================================+");
     }
@@ -116,10 +133,7 @@ public class MachineClient {
     private void getMachineInfo() throws IOException, ClassNotFoundException {
         ProductionMessage request = new ProductionMessage(
             ProductionMessage.MessageType.PRODUCTION_DATA, null);
-        out.writeObject(request);
-        out.flush();
-        
-        ProductionMessage response = (ProductionMessage) in.readObject();
+        ProductionMessage response = sendMessage(request);
         if (response.isSuccess()) {
             @SuppressWarnings("unchecked")
             Map<String, Object> data = (Map<String, Object>) response.getPayload();
@@ -143,10 +157,7 @@ public class MachineClient {
         
         ProductionMessage request = new ProductionMessage(
             ProductionMessage.MessageType.PRODUCTION_DATA, null);
-        out.writeObject(request);
-        out.flush();
-        
-        ProductionMessage response = (ProductionMessage) in.readObject();
+        ProductionMessage response = sendMessage(request);
         if (response.isSuccess()) {
             @SuppressWarnings("unchecked")
             Map<String, Object> data = (Map<String, Object>) response.getPayload();
@@ -193,10 +204,7 @@ public class MachineClient {
         
         ProductionMessage request = new ProductionMessage(
             ProductionMessage.MessageType.COMMAND, command);
-        out.writeObject(request);
-        out.flush();
-        
-        ProductionMessage response = (ProductionMessage) in.readObject();
+        ProductionMessage response = sendMessage(request);
         if (response.isSuccess()) {
             System.out.println("[OK] " + response.getResponseMessage());
             System.out.println("[OK] Machine M" + myMachineId + " est maintenant EN MARCHE!");
@@ -213,10 +221,7 @@ public class MachineClient {
         
         ProductionMessage request = new ProductionMessage(
             ProductionMessage.MessageType.COMMAND, command);
-        out.writeObject(request);
-        out.flush();
-        
-        ProductionMessage response = (ProductionMessage) in.readObject();
+        ProductionMessage response = sendMessage(request);
         if (response.isSuccess()) {
             System.out.println("[OK] " + response.getResponseMessage());
             System.out.println("[OK] Machine M" + myMachineId + " est maintenant ARRETEE");
@@ -239,10 +244,7 @@ public class MachineClient {
         
         ProductionMessage request = new ProductionMessage(
             ProductionMessage.MessageType.ALERT, alert);
-        out.writeObject(request);
-        out.flush();
-        
-        ProductionMessage response = (ProductionMessage) in.readObject();
+        ProductionMessage response = sendMessage(request);
         if (response.isSuccess()) {
             System.out.println("[OK] Panne signalee au serveur");
             System.out.println("[OK] " + response.getResponseMessage());
@@ -259,10 +261,7 @@ public class MachineClient {
         
         ProductionMessage request = new ProductionMessage(
             ProductionMessage.MessageType.COMMAND, command);
-        out.writeObject(request);
-        out.flush();
-        
-        ProductionMessage response = (ProductionMessage) in.readObject();
+        ProductionMessage response = sendMessage(request);
         if (response.isSuccess()) {
             System.out.println("[OK] " + response.getResponseMessage());
             System.out.println("[OK] Machine M" + myMachineId + " en mode MAINTENANCE");
@@ -278,10 +277,7 @@ public class MachineClient {
         
         ProductionMessage request = new ProductionMessage(
             ProductionMessage.MessageType.PRODUCTION_DATA, null);
-        out.writeObject(request);
-        out.flush();
-        
-        ProductionMessage response = (ProductionMessage) in.readObject();
+        ProductionMessage response = sendMessage(request);
         if (response.isSuccess()) {
             @SuppressWarnings("unchecked")
             Map<String, Object> data = (Map<String, Object>) response.getPayload();
@@ -310,16 +306,17 @@ public class MachineClient {
         
         ProductionMessage request = new ProductionMessage(
             ProductionMessage.MessageType.PRODUCTION_DATA, null);
-        out.writeObject(request);
-        out.flush();
-        
-        ProductionMessage response = (ProductionMessage) in.readObject();
+        ProductionMessage response = sendMessage(request);
         if (response.isSuccess()) {
             @SuppressWarnings("unchecked")
             Map<String, Object> data = (Map<String, Object>) response.getPayload();
             @SuppressWarnings("unchecked")
             List<Machine> machines = (List<Machine>) data.get("machines");
-            AssemblyStation station = (AssemblyStation) data.get("assemblyStation");
+            @SuppressWarnings("unchecked")
+            List<AssemblyStation> stations = (List<AssemblyStation>) data.get("assemblyStations");
+            if (stations == null) {
+                stations = Collections.singletonList((AssemblyStation) data.get("assemblyStation"));
+            }
             
             long running = machines.stream().filter(m -> m.getState() == Machine.MachineState.RUNNING).count();
             long stopped = machines.stream().filter(m -> m.getState() == Machine.MachineState.STOPPED).count();
@@ -329,20 +326,131 @@ public class MachineClient {
             System.out.println("  - Machines actives: " + running + "/" + machines.size());
             System.out.println("  - Machines arretees: " + stopped);
             System.out.println("  - Machines en panne: " + failed);
-            System.out.println("  - Produits assembles: " + station.getAssembledProducts());
-            System.out.println("  - Etat assemblage: " + station.getState());
             
-            System.out.println("\n>>> ZONES DE STOCKAGE:");
-            for (StorageZone zone : station.getStorageZones().values()) {
-                String status = zone.isEmpty() ? "[VIDE]" : zone.isFull() ? "[PLEIN]" : zone.isLow() ? "[BAS]" : "[OK]";
-                double pct = (zone.getCurrentQuantity() * 100.0) / zone.getMaxCapacity();
-                System.out.println(String.format("  %s %-15s %2d/%-2d (%.0f%%)",
-                    status, zone.getPartType(), zone.getCurrentQuantity(), 
-                    zone.getMaxCapacity(), pct));
+            for (AssemblyStation station : stations) {
+                System.out.println("\n>>> " + station.getName() + ":");
+                System.out.println("  - Produits assembles: " + station.getAssembledProducts());
+                System.out.println("  - Etat assemblage: " + station.getState());
+                
+                System.out.println("  ZONES DE STOCKAGE:");
+                for (StorageZone zone : station.getStorageZones().values()) {
+                    String status = zone.isEmpty() ? "[VIDE]" : zone.isFull() ? "[PLEIN]" : zone.isLow() ? "[BAS]" : "[OK]";
+                    double pct = (zone.getCurrentQuantity() * 100.0) / zone.getMaxCapacity();
+                    System.out.println(String.format("  %s %-15s %2d/%-2d (%.0f%%)",
+                        status, zone.getPartType(), zone.getCurrentQuantity(), 
+                        zone.getMaxCapacity(), pct));
+                }
             }
         }
     }
     
+    private void watchLiveEvents() throws IOException, ClassNotFoundException {
+        System.out.println("\n=== CHANGEMENTS EN DIRECT (Entree pour arreter) ===");
+        
+        pipeline.setEventListener(event -> System.out.println("  [" + event.getType() + "] " + event.getPayload()));
+        ProductionMessage response = sendMessage(new ProductionMessage(
+            ProductionMessage.MessageType.SUBSCRIBE, null));
+        if (!response.isSuccess()) {
+            System.out.println("[ERREUR] " + response.getResponseMessage());
+            pipeline.setEventListener(null);
+            return;
+        }
+        System.out.println("[OK] " + response.getResponseMessage());
+        
+        scanner.nextLine();
+        sendMessage(new ProductionMessage(ProductionMessage.MessageType.UNSUBSCRIBE, null));
+        pipeline.setEventListener(null);
+        System.out.println("[OK] Suivi arrete");
+    }
+    
+    private void viewSessionStats() throws IOException, ClassNotFoundException {
+        System.out.println("\n=== STATISTIQUES DES SESSIONS ===");
+        
+        ProductionMessage response = sendMessage(new ProductionMessage(
+            ProductionMessage.MessageType.SERVER_STATS, null));
+        if (!response.isSuccess()) {
+            System.out.println("[ERREUR] " + response.getResponseMessage());
+            return;
+        }
+        
+        Map<?, ?> stats = (Map<?, ?>) response.getPayload();
+        System.out.println("  - Sessions actives: " + stats.get("activeSessions") + " (pic: " + stats.get("peakSessions") + ")");
+        System.out.println("  - Abonnes: " + stats.get("subscribers"));
+        System.out.println("  - Politique clients lents: " + stats.get("overflowPolicy"));
+        System.out.println("  - File d'envoi la plus longue: " + stats.get("maxDepth"));
+        System.out.println("  - Evenements supprimes: " + stats.get("totalDropped"));
+        System.out.println("  - Evenements fusionnes: " + stats.get("totalCoalesced"));
+        System.out.println("  - Clients deconnectes: " + stats.get("totalEvicted"));
+        for (Object session : (List<?>) stats.get("laggingSessions")) {
+            System.out.println("    " + session);
+        }
+    }
+    
+    private void viewMyAlerts() throws IOException, ClassNotFoundException {
+        System.out.println("\n=== ALERTES - MACHINE M" + myMachineId + " ===");
+        
+        AlertQuery query = new AlertQuery();
+        query.setSourceId(myMachineId);
+        query.setLimit(10);
+        while (true) {
+            ProductionMessage response = sendMessage(new ProductionMessage(
+                ProductionMessage.MessageType.ALERT_QUERY, query));
+            if (!response.isSuccess()) {
+                System.out.println("[ERREUR] " + response.getResponseMessage());
+                return;
+            }
+            
+            Map<?, ?> data = (Map<?, ?>) response.getPayload();
+            @SuppressWarnings("unchecked")
+            List<Alert> alerts = (List<Alert>) data.get("alerts");
+            for (Alert a : alerts) {
+                System.out.println("  " + a);
+            }
+            if (alerts.isEmpty() || !Boolean.TRUE.equals(data.get("hasMore"))) {
+                System.out.println("[OK] " + response.getResponseMessage());
+                return;
+            }
+            System.out.print("Entree: page suivante, q: arreter ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
+            }
+            query = query.nextPage(alerts.get(alerts.size() - 1));
+        }
+    }
+    
+    private void viewMyProductionRate() throws IOException, ClassNotFoundException {
+        System.out.println("\n=== PRODUCTION PAR MINUTE - MACHINE M" + myMachineId + " ===");
+        
+        long now = System.currentTimeMillis();
+        TimeSeriesQuery query = new TimeSeriesQuery(TimeSeriesQuery.machineSeries(myMachineId),
+                now - 3600_000, now, 60_000, TimeSeriesQuery.Aggregation.DELTA);
+        ProductionMessage response = sendMessage(new ProductionMessage(
+            ProductionMessage.MessageType.TIME_SERIES, query));
+        if (!response.isSuccess()) {
+            System.out.println("[ERREUR] " + response.getResponseMessage());
+            return;
+        }
+        
+        Map<?, ?> data = (Map<?, ?>) response.getPayload();
+        List<?> timestamps = (List<?>) data.get("timestamps");
+        List<?> values = (List<?>) data.get("values");
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm");
+        for (int i = 0; i < timestamps.size(); i++) {
+            long parts = ((Number) values.get(i)).longValue();
+            System.out.printf("  %s  %4d pieces %s%n", format.format(new Date(((Number) timestamps.get(i)).longValue())),
+                    parts, repeat('#', (int) Math.min(parts, 50)));
+        }
+        System.out.println("[OK] " + response.getResponseMessage());
+    }
+    
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+    
     private String getStateIcon(Machine.MachineState state) {
         switch (state) {
             case RUNNING: return "[RUN]";
@@ -354,16 +462,12 @@ public class MachineClient {
     }
     
     private ProductionMessage sendMessage(ProductionMessage message) throws IOException, ClassNotFoundException {
-        out.writeObject(message);
-        out.flush();
-        return (ProductionMessage) in.readObject();
+        return pipeline.call(message);
     }
     
     public void close() {
         try {
-            if (out != null) out.close();
-            if (in != null) in.close();
-            if (socket != null) socket.close();
+            if (pipeline != null) pipeline.close();
             if (scanner != null) scanner.close();
         } catch (IOException e) {
             e.printStackTrace();
@@ -388,8 +492,9 @@ public class MachineClient {
         
         try {
             int machineId = Integer.parseInt(args[0]);
-            if (machineId < 1 || machineId > 5) {
-                System.err.println("[ERREUR] ID machine doit etre entre 1 et 5");
+            // Les identifiants valides dépendent de la topologie du serveur: c'est lui qui vérifie
+            if (machineId < 1) {
+                System.err.println("[ERREUR] ID machine doit etre positif");
                 System.exit(1);
             }
             
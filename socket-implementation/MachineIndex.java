@@ -0,0 +1,106 @@
+package socket.server;
+
+import common.Machine;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Index des machines par type et par état, tenu à jour à chaque transition
+ *
+ * - nombre de machines RUNNING par type: disponibilité de l'assemblage en temps constant
+ * - file des machines STOPPED par type: choix d'un remplaçant sans parcourir la ligne
+ * - machines par pièce produite: une alerte de stockage ne touche que les producteurs concernés
+ * Une machine figure au plus une fois dans les files. Une entrée peut être périmée
+ * (machine redémarrée depuis): elle est écartée au moment de la réservation,
+ * qui se fait par compare-and-set STOPPED → RUNNING.
+ */
+class MachineIndex {
+    private static final Machine.MachineType[] TYPES = Machine.MachineType.values();
+    private static final Machine.PartType[] PARTS = Machine.PartType.values();
+
+    private final AtomicIntegerArray running = new AtomicIntegerArray(TYPES.length);
+    private final Queue<Machine>[] stopped;
+    private final Set<Machine> queued = ConcurrentHashMap.newKeySet();
+    private final Queue<Machine>[] producers;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})  // Tableaux de files génériques
+    MachineIndex() {
+        stopped = new Queue[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            stopped[i] = new ConcurrentLinkedQueue<>();
+        }
+        producers = new Queue[PARTS.length];
+        for (int i = 0; i < PARTS.length; i++) {
+            producers[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Indexer une machine ajoutée à la ligne
+     */
+    void add(Machine m) {
+        if (m.getCurrentPart() != null) {
+            producers[m.getCurrentPart().ordinal()].offer(m);
+        }
+        transitioned(m, null, m.getState());
+    }
+
+    /**
+     * Machines qui produisent la pièce (tous états confondus)
+     */
+    Iterable<Machine> producersOf(Machine.PartType part) {
+        return producers[part.ordinal()];
+    }
+
+    /**
+     * Prendre en compte une transition effectuée par getAndSetState ou compareAndSetState
+     */
+    void transitioned(Machine m, Machine.MachineState from, Machine.MachineState to) {
+        if (from == to) {
+            return;
+        }
+        int type = m.getType().ordinal();
+        if (from == Machine.MachineState.RUNNING) {
+            running.decrementAndGet(type);
+        }
+        if (to == Machine.MachineState.RUNNING) {
+            running.incrementAndGet(type);
+        } else if (to == Machine.MachineState.STOPPED && queued.add(m)) {
+            stopped[type].offer(m);
+        }
+    }
+
+    /**
+     * Au moins une machine en marche pour chaque type de pièce
+     */
+    boolean allTypesRunning() {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (running.get(i) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Réserver une machine arrêtée du type demandé et la démarrer (STOPPED → RUNNING)
+     * @return la machine démarrée, ou null si aucune n'est disponible
+     */
+    Machine claimStopped(Machine.MachineType type) {
+        Queue<Machine> free = stopped[type.ordinal()];
+        Machine m;
+        while ((m = free.poll()) != null) {
+            // Retirée avant le CAS: un arrêt concurrent la remet en file ou voit le CAS réussir
+            queued.remove(m);
+            if (m.compareAndSetState(Machine.MachineState.STOPPED, Machine.MachineState.RUNNING)) {
+                running.incrementAndGet(type.ordinal());
+                return m;
+            }
+            // Entrée périmée: la machine a changé d'état depuis son arrêt
+        }
+        return null;
+    }
+}
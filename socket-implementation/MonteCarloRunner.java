@@ -0,0 +1,186 @@
+package socket.server;
+
+import common.*;
+import java.io.File;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Étude de capacité: milliers d'exécutions indépendantes de DiscreteEventSimulation, en parallèle
+ *
+ * Chaque exécution a sa graine (graine de base + numéro d'exécution) et son propre état: elles sont
+ * réparties sur tous les cœurs par un flux parallèle (pool fork/join commun) et agrégées sans verrou
+ * (un accumulateur par tâche, fusionnés à la fin). Compteurs entiers (ms, pièces): le rapport ne
+ * dépend ni du nombre de cœurs ni de l'ordre de fusion, une même graine de base redonne le même rapport.
+ *
+ * Rapport: produits finis par heure (moyenne et centiles sur les exécutions), temps où chaque zone
+ * est vide (assemblage bloqué) ou pleine (pièces perdues), taux de marche de chaque machine. Avec
+ * --standby, les mêmes graines sont rejouées sans secours: l'écart est ce que la redondance apporte.
+ *
+ * Usage: java -cp bin socket.server.MonteCarloRunner [--topology=F] [--runs=N] [options du scénario]
+ * Exemple: --runs=2000 --hours=8 --mtbf-min=120 --repair-min=20 --standby=2
+ */
+public class MonteCarloRunner {
+    private static final int DETAIL_LIMIT = 50;  // Au-delà: taux de marche par station et type de pièce
+
+    /**
+     * Agrégat d'un lot d'exécutions
+     */
+    static final class Report {
+        final long[] assembledPerRun;    // Produits assemblés, par exécution (indexé par numéro)
+        final long[] runningMs;          // Somme des temps en marche, par machine
+        final long[] emptyMs;            // Somme des temps zone vide, par zone
+        final long[] fullMs;
+        long events;
+        long failures;
+
+        Report(int runs, int machines, int zones) {
+            assembledPerRun = new long[runs];
+            runningMs = new long[machines];
+            emptyMs = new long[zones];
+            fullMs = new long[zones];
+        }
+
+        void add(int run, DiscreteEventSimulation.Result result) {
+            assembledPerRun[run] = result.totalAssembled();
+            add(runningMs, result.runningMs);
+            add(emptyMs, result.emptyMs);
+            add(fullMs, result.fullMs);
+            events += result.events;
+            failures += result.failures;
+        }
+
+        void merge(Report other) {
+            for (int i = 0; i < assembledPerRun.length; i++) {
+                assembledPerRun[i] += other.assembledPerRun[i];
+            }
+            add(runningMs, other.runningMs);
+            add(emptyMs, other.emptyMs);
+            add(fullMs, other.fullMs);
+            events += other.events;
+            failures += other.failures;
+        }
+
+        private static void add(long[] into, long[] values) {
+            for (int i = 0; i < into.length; i++) {
+                into[i] += values[i];
+            }
+        }
+    }
+
+    /**
+     * Exécuter runs simulations du scénario (graines scenario.seed + 0 .. runs - 1) sur tous les cœurs
+     */
+    static Report run(DiscreteEventSimulation simulation, DiscreteEventSimulation.Scenario scenario, int runs) {
+        int zones = simulation.getStationCount() * DiscreteEventSimulation.PARTS;
+        return IntStream.range(0, runs).parallel().collect(
+                () -> new Report(runs, simulation.getMachineCount(), zones),
+                (report, run) -> report.add(run, simulation.run(scenario.withSeed(scenario.seed + run))),
+                Report::merge);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String topologyFile = null;
+        int runs = 1000;
+        DiscreteEventSimulation.Scenario scenario = new DiscreteEventSimulation.Scenario();
+        for (String arg : args) {
+            if (arg.startsWith("--topology=")) {
+                topologyFile = arg.substring("--topology=".length());
+            } else if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            } else if (!scenario.parse(arg)) {
+                System.err.println("[AVERTISSEMENT] Option inconnue ignorée: " + arg);
+            }
+        }
+        PlantTopology topology = topologyFile != null
+                ? PlantTopology.load(new File(topologyFile)) : PlantTopology.defaultTopology();
+        DiscreteEventSimulation simulation = new DiscreteEventSimulation(topology);
+        double hours = scenario.durationMs / 3600_000.0;
+
+        long start = System.nanoTime();
+        Report report = run(simulation, scenario, runs);
+        long nanos = System.nanoTime() - start;
+
+        System.out.println("=== Étude de capacité: " + runs + " exécutions de " + String.format("%.1f", hours)
+                + " h, " + simulation.getMachineCount() + " machines, " + simulation.getStationCount() + " station(s) ===");
+        System.out.printf("Scénario: cycle %d-%d ms, assemblage %d-%d ms, %s, secours %s, graines %d..%d%n",
+                scenario.cycleMinMs, scenario.cycleMaxMs, scenario.assemblyMinMs, scenario.assemblyMaxMs,
+                scenario.mtbfMs > 0 ? String.format("panne toutes les %.0f min (réparation %.0f min)",
+                        scenario.mtbfMs / 60_000.0, scenario.repairMs / 60_000.0) : "sans panne",
+                scenario.standbyIds.isEmpty() ? "aucun" : scenario.standbyIds, scenario.seed, scenario.seed + runs - 1);
+        System.out.printf("Calcul: %.1f s sur %d cœurs, %d événements (%.1f millions/s), %.1f pannes par exécution%n",
+                nanos / 1e9, Runtime.getRuntime().availableProcessors(), report.events,
+                report.events / (nanos / 1e3), (double) report.failures / runs);
+
+        System.out.println("\nProduits finis par heure:");
+        printThroughput("  ", report, hours);
+        if (!scenario.standbyIds.isEmpty()) {
+            Report without = run(simulation, scenario.withoutStandby(), runs);
+            System.out.println("Sans secours (mêmes graines):");
+            printThroughput("  ", without, hours);
+            System.out.printf("Apport des secours: %+.1f produits/h en moyenne%n",
+                    (mean(report.assembledPerRun) - mean(without.assembledPerRun)) / hours);
+        }
+
+        long total = scenario.durationMs * runs;
+        System.out.println("\nZones de stockage (part du temps):");
+        for (int slot = 0; slot < simulation.getStationCount(); slot++) {
+            for (int part = 0; part < DiscreteEventSimulation.PARTS; part++) {
+                int zone = slot * DiscreteEventSimulation.PARTS + part;
+                if (simulation.zoneCapacity(zone) > 0) {
+                    System.out.printf("  %-24s %-12s vide %5.1f %%  pleine %5.1f %%%n", simulation.stationName(slot),
+                            Machine.PartType.values()[part].zoneName(),
+                            100.0 * report.emptyMs[zone] / total, 100.0 * report.fullMs[zone] / total);
+                }
+            }
+        }
+
+        System.out.println("\nTaux de marche des machines:");
+        if (simulation.getMachineCount() <= DETAIL_LIMIT) {
+            for (int i = 0; i < simulation.getMachineCount(); i++) {
+                System.out.printf("  M%-6d %-12s %5.1f %%%s%n", simulation.machineId(i),
+                        Machine.PartType.values()[simulation.machinePart(i)], 100.0 * report.runningMs[i] / total,
+                        scenario.standbyIds.contains(simulation.machineId(i)) ? "  (secours)" : "");
+            }
+        } else {
+            int zones = simulation.getStationCount() * DiscreteEventSimulation.PARTS;
+            long[] sum = new long[zones];
+            int[] count = new int[zones];
+            for (int i = 0; i < simulation.getMachineCount(); i++) {
+                int zone = simulation.machineStation(i) * DiscreteEventSimulation.PARTS + simulation.machinePart(i);
+                sum[zone] += report.runningMs[i];
+                count[zone]++;
+            }
+            for (int zone = 0; zone < zones; zone++) {
+                if (count[zone] > 0) {
+                    System.out.printf("  %-24s %-12s %6d machines  %5.1f %% en moyenne%n",
+                            simulation.stationName(zone / DiscreteEventSimulation.PARTS),
+                            Machine.PartType.values()[zone % DiscreteEventSimulation.PARTS], count[zone],
+                            100.0 * sum[zone] / ((double) total * count[zone]));
+                }
+            }
+        }
+    }
+
+    private static void printThroughput(String indent, Report report, double hours) {
+        long[] sorted = report.assembledPerRun.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%smoyenne %.1f  min %.1f  p5 %.1f  p50 %.1f  p95 %.1f  max %.1f%n", indent,
+                mean(sorted) / hours, sorted[0] / hours, percentile(sorted, 5) / hours,
+                percentile(sorted, 50) / hours, percentile(sorted, 95) / hours, sorted[sorted.length - 1] / hours);
+    }
+
+    private static double mean(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return (double) sum / values.length;
+    }
+
+    // Centile au rang le plus proche
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,424 @@
+package socket.server;
+
+import common.*;
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mode serveur NIO: une boucle d'acceptation et un petit nombre fixe de threads I/O
+ * Chaque thread I/O possède son Selector et gère des milliers de connexions.
+ * Les messages sont décodés sans blocage puis passés à ClientHandler.processMessage.
+ * Le codec (binaire ou sérialisation Java) est choisi d'après les 4 premiers octets du client.
+ * Les requêtes pipelinées (requestId != 0) sont exécutées sur requestExecutor et leurs
+ * réponses repassent par le thread I/O de la connexion. Une requête synchrone dont la réponse
+ * est remise plus tard (WAL, SUBSCRIBE: voir repliesLater) suspend la lecture de sa connexion
+ * jusqu'à sa réponse, sans bloquer le thread I/O.
+ */
+class NioProductionServer {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_MESSAGE_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_GATHER = 64;
+    private static final byte[] STREAM_HEADER = { (byte) 0xAC, (byte) 0xED, 0x00, 0x05 };
+
+    private final int port;
+    private final int backlog;
+    private final IoLoop[] loops;
+
+    NioProductionServer(int port, int ioThreads, int backlog) {
+        this.port = port;
+        this.backlog = backlog;
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+    }
+
+    /**
+     * Démarrer les threads I/O puis accepter les connexions (bloquant)
+     */
+    void run() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop();
+            Thread t = new Thread(loops[i], "nio-io-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+             Selector acceptSelector = Selector.open()) {
+            server.socket().setReuseAddress(true);
+            server.bind(new InetSocketAddress(port), backlog);
+            server.configureBlocking(false);
+            server.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+            System.out.println("[NIO] " + loops.length + " thread(s) I/O, backlog " + backlog);
+
+            int next = 0;
+            while (true) {
+                acceptSelector.select();
+                acceptSelector.selectedKeys().clear();
+
+                SocketChannel client;
+                while ((client = server.accept()) != null) {
+                    client.configureBlocking(false);
+                    client.socket().setTcpNoDelay(true);
+                    loops[next].register(client);
+                    next = (next + 1) % loops.length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Boucle I/O: lecture, décodage, traitement et écriture non bloquante
+     */
+    private class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> completed = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        IoLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Appelé par un thread de travail quand une réponse est prête
+         */
+        void responseReady(Connection conn) {
+            completed.add(conn);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    registerPending();
+                    writeCompleted();
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Connection conn = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                conn.onReadable(readBuffer);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                conn.flush();
+                            }
+                        } catch (EOFException | ClosedChannelException e) {
+                            conn.close(null);
+                        } catch (Exception e) {
+                            conn.close(e);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Erreur boucle NIO: " + e.getMessage());
+                }
+            }
+        }
+
+        private void writeCompleted() {
+            Connection conn;
+            while ((conn = completed.poll()) != null) {
+                try {
+                    conn.sendCompleted();
+                } catch (IOException e) {
+                    conn.close(e);
+                }
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    Connection conn = new Connection(channel, this);
+                    conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+                    ProductionControlServer.sessionOpened(conn, channel.socket().getInetAddress());
+                } catch (IOException e) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * État d'une connexion, manipulé uniquement par son thread I/O
+     */
+    private class Connection implements ClientSession {
+        private final SocketChannel channel;
+        private final IoLoop loop;
+        private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+        private SelectionKey key;
+
+        // Réponses pipelinées (threads de travail) et événements poussés, encodés au fil de l'écriture
+        private final OutboundQueue queue = ProductionControlServer.newOutboundQueue();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private boolean readPaused;
+
+        // Requête synchrone à réponse différée: messages suivants retenus dans le décodeur jusqu'à sa réponse
+        private boolean awaitingReply;
+        private volatile ProductionMessage deferredReply;
+
+        // Négociation du codec: null tant que les 4 premiers octets ne sont pas reçus
+        private FrameDecoder decoder;
+        private boolean binary;
+        private final byte[] hello = new byte[4];
+        private int helloLength;
+
+        // Créés au premier envoi pour qu'une connexion inactive reste légère
+        private ByteArrayOutputStream bytes;
+        private ObjectOutputStream out;
+
+        Connection(SocketChannel channel, IoLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        void onReadable(ByteBuffer readBuffer) throws IOException, ClassNotFoundException {
+            while (!readPaused) {
+                readBuffer.clear();
+                int n = channel.read(readBuffer);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                if (n == 0) {
+                    break;
+                }
+                readBuffer.flip();
+                if (decoder == null && !negotiate(readBuffer)) {
+                    continue;
+                }
+                decoder.feed(readBuffer);
+                processDecoded();
+                if (outbound.size() >= MAX_GATHER) {
+                    // Le client envoie sans lire ses réponses: on attend qu'il les consomme
+                    pauseReads();
+                }
+            }
+            flush();
+        }
+
+        /**
+         * Traiter les messages décodés dans l'ordre, jusqu'à une requête synchrone à réponse différée
+         */
+        private void processDecoded() throws IOException, ClassNotFoundException {
+            ProductionMessage message;
+            while (!awaitingReply && (message = decoder.next()) != null) {
+                if (message.getRequestId() != 0 && !ProductionControlServer.isUrgent(message)) {
+                    submit(message);
+                } else if (ProductionControlServer.repliesLater(message)) {
+                    awaitReply(message);
+                } else {
+                    // Requête synchrone, ou alerte critique qui ne doit pas attendre derrière les autres
+                    send(ProductionControlServer.ClientHandler.processMessage(message, this));
+                }
+            }
+        }
+
+        /**
+         * Requête synchrone à réponse différée: réponse remise par le thread d'écriture du WAL ou par le
+         * publieur du snapshot, lecture suspendue d'ici là pour garder l'ordre des réponses
+         */
+        private void awaitReply(ProductionMessage request) {
+            awaitingReply = true;
+            pauseReads();
+            ProductionControlServer.ClientHandler.processMessage(request, this, response -> {
+                deferredReply = response;
+                loop.responseReady(this);
+            });
+        }
+
+        /**
+         * Exécuter une requête pipelinée hors du thread I/O
+         */
+        private void submit(ProductionMessage request) {
+            if (inFlight.incrementAndGet() >= ProductionControlServer.MAX_IN_FLIGHT_PER_CONNECTION) {
+                // Trop de requêtes en cours: on cesse de lire jusqu'à ce que les réponses partent
+                pauseReads();
+            }
+            ProductionControlServer.requestExecutor.execute(() ->
+                    ProductionControlServer.ClientHandler.processMessage(request, this, response -> {
+                        queue.offerResponse(response);
+                        loop.responseReady(this);
+                    }));
+        }
+
+        private void pauseReads() {
+            readPaused = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+
+        @Override
+        public void push(ProductionMessage message) {
+            if (!queue.offerEvent(message)) {
+                ProductionControlServer.events.unsubscribe(this);
+            }
+            loop.responseReady(this);
+        }
+
+        @Override
+        public OutboundQueue getOutboundQueue() {
+            return queue;
+        }
+
+        @Override
+        public InetAddress getRemoteAddress() {
+            return channel.socket().getInetAddress();
+        }
+
+        /**
+         * Envoyer les réponses pipelinées et les événements en attente (thread I/O uniquement)
+         */
+        void sendCompleted() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            if (queue.isEvicted()) {
+                close(new IOException("client trop lent, déconnecté"));
+                return;
+            }
+            ProductionMessage reply = deferredReply;
+            if (reply != null) {
+                // Réponse différée prête: envoyée avant celles des messages retenus
+                deferredReply = null;
+                awaitingReply = false;
+                send(reply);
+                try {
+                    processDecoded();
+                } catch (ClassNotFoundException e) {
+                    throw new InvalidClassException(e.getMessage());
+                }
+            }
+            flush();
+        }
+
+        /**
+         * Encoder les messages de la file tant que le socket accepte les écritures:
+         * un client qui ne lit plus laisse les messages dans la file bornée, pas en mémoire tampon
+         */
+        private void fillOutbound() throws IOException {
+            ProductionMessage message;
+            while (outbound.size() < MAX_GATHER && (message = queue.poll()) != null) {
+                if (message.getRequestId() != 0) {
+                    inFlight.decrementAndGet();
+                }
+                send(message);
+            }
+            if (readPaused && !awaitingReply && inFlight.get() < ProductionControlServer.MAX_IN_FLIGHT_PER_CONNECTION / 2
+                    && outbound.size() < MAX_GATHER) {
+                readPaused = false;
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Choisir le codec d'après l'en-tête du client et lui répondre
+         */
+        private boolean negotiate(ByteBuffer data) throws IOException {
+            int n = Math.min(hello.length - helloLength, data.remaining());
+            data.get(hello, helloLength, n);
+            helloLength += n;
+            if (helloLength < hello.length) {
+                return false;
+            }
+
+            if (Arrays.equals(hello, WireCodec.MAGIC)) {
+                binary = true;
+                decoder = new BinaryFrameDecoder();
+                enqueue(ByteBuffer.wrap(WireCodec.MAGIC));
+            } else if (Arrays.equals(hello, STREAM_HEADER)) {
+                decoder = new ObjectStreamDecoder(MAX_MESSAGE_BYTES);
+                decoder.feed(ByteBuffer.wrap(hello));
+                enqueue(ByteBuffer.wrap(STREAM_HEADER));
+            } else {
+                throw new StreamCorruptedException("Protocole client inconnu");
+            }
+            return true;
+        }
+
+        private void send(ProductionMessage response) throws IOException {
+            if (binary) {
+                if (response.getPayload() instanceof WireCodec.PreEncoded) {
+                    // Payload partagé (état complet): en-tête propre à la requête + vue sur le buffer commun
+                    enqueue(WireCodec.encodeHeader(response));
+                    enqueue(((WireCodec.PreEncoded) response.getPayload()).buffer());
+                    return;
+                }
+                enqueue(ByteBuffer.wrap(WireCodec.encode(response)));
+                return;
+            }
+            if (out == null) {
+                bytes = new ByteArrayOutputStream(512);
+                out = new ObjectOutputStream(bytes);
+                out.flush();
+                bytes.reset(); // L'en-tête a déjà été envoyé à la connexion
+            }
+            out.writeObject(response);
+            out.reset();
+            out.flush();
+            enqueue(ByteBuffer.wrap(bytes.toByteArray()));
+            bytes.reset();
+        }
+
+        void enqueue(ByteBuffer data) {
+            outbound.add(data);
+        }
+
+        void flush() throws IOException {
+            fillOutbound();
+            while (!outbound.isEmpty()) {
+                // Écriture groupée (gathering): plusieurs réponses en un seul appel système
+                int count = Math.min(outbound.size(), MAX_GATHER);
+                ByteBuffer[] batch = new ByteBuffer[count];
+                Iterator<ByteBuffer> it = outbound.iterator();
+                for (int i = 0; i < count; i++) {
+                    batch[i] = it.next();
+                }
+                channel.write(batch);
+                while (!outbound.isEmpty() && !outbound.peek().hasRemaining()) {
+                    outbound.poll();
+                }
+                if (batch[count - 1].hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                fillOutbound();
+            }
+            if (key.isValid() && (key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        }
+
+        void close(Exception cause) {
+            if (!channel.isOpen()) {
+                return;
+            }
+            if (cause != null) {
+                System.err.println("Erreur client: " + cause.getMessage());
+            }
+            ProductionControlServer.events.unsubscribe(this);
+            ProductionControlServer.sessionClosed(this, channel.socket().getInetAddress());
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
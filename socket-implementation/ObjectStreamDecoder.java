@@ -0,0 +1,625 @@
+package socket.server;
+
+import common.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Décodeur non bloquant d'un flux ObjectOutputStream (mode NIO)
+ * Accumule les octets reçus et ne rend un ProductionMessage que lorsqu'il est complet.
+ *
+ * Un seul ObjectInputStream par connexion, comme côté client: sa table des références
+ * (descripteurs de classe, chaînes déjà envoyées) vit aussi longtemps que le flux, qu'il
+ * appelle reset() ou non. Il ne lit jamais un objet incomplet: un balayage de la grammaire
+ * du flux (Object Serialization Stream Protocol) trouve d'abord la fin de l'objet suivant,
+ * en tenant sa propre table des descripteurs. Le balayage garde sa pile d'éléments ouverts
+ * d'une lecture à l'autre et reprend là où les octets ont manqué: chaque octet est balayé
+ * une fois et décodé une fois, quel que soit le découpage de l'objet en segments.
+ */
+class ObjectStreamDecoder implements FrameDecoder {
+    private static final byte[] STREAM_HEADER = { (byte) 0xAC, (byte) 0xED, 0x00, 0x05 };
+    private static final int HANDLE_BASE = ObjectStreamConstants.baseWireHandle;
+
+    // Éléments de la grammaire en cours de balayage (Frame.kind)
+    private static final int CONTENT = 0;
+    private static final int CLASS_DESC = 1;
+    private static final int OBJECT = 2;
+    private static final int ARRAY = 3;
+    private static final int ANNOTATION = 4;
+    private static final int CLASS = 5;
+    private static final int ENUM = 6;
+
+    private final int maxBufferedBytes;
+
+    private byte[] buffer = new byte[256];
+    private int start;    // Début de l'objet suivant (octets précédents déjà lus par objectIn)
+    private int length;   // Fin des octets reçus
+    private int pos;      // Position du balayage
+    private int limit;    // objectIn ne lit pas au-delà (fin de l'objet balayé)
+    private ObjectInputStream objectIn;
+
+    // Descripteur de classe de chaque référence du flux (null: autre objet), remis à zéro par TC_RESET
+    private List<ClassDesc> handles = new ArrayList<>();
+
+    // Balayage de l'objet suivant: éléments ouverts (pile vide entre deux objets), gardés d'une lecture à l'autre
+    private Frame[] stack = new Frame[16];
+    private int depth;
+    private ClassDesc result;  // Descripteur rendu par le dernier CLASS_DESC terminé
+
+    /**
+     * Octets manquants: l'étape en cours sera reprise entière à la prochaine lecture
+     */
+    private static final class Incomplete extends Exception {
+        private static final long serialVersionUID = 1L;
+        static final Incomplete INSTANCE = new Incomplete();
+
+        private Incomplete() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Descripteur de classe: indicateurs, types des champs sérialisés, classe mère
+     */
+    private static final class ClassDesc {
+        final String name;
+        final byte flags;
+        final char[] fieldTypes;
+        ClassDesc superDesc;
+
+        ClassDesc(String name, byte flags, char[] fieldTypes) {
+            this.name = name;
+            this.flags = flags;
+            this.fieldTypes = fieldTypes;
+        }
+    }
+
+    /**
+     * Élément ouvert: étape atteinte et données de l'étape (objets réutilisés d'un élément à l'autre)
+     */
+    private static final class Frame {
+        int kind;
+        int step;
+        ClassDesc desc;
+        int handle;        // CLASS_DESC: référence réservée au descripteur
+        int index;         // CLASS_DESC: champ suivant; OBJECT: classe courante de la hiérarchie
+        int field;         // OBJECT: champ suivant de la classe courante
+        boolean annotated; // OBJECT: données de writeObject de la classe courante ouvertes
+        long remaining;    // ARRAY: éléments ou octets restants
+        final List<ClassDesc> hierarchy = new ArrayList<>();  // OBJECT: classe de l'objet, puis ses mères
+
+        void reset(int kind) {
+            this.kind = kind;
+            this.step = 0;
+            this.desc = null;
+        }
+    }
+
+    ObjectStreamDecoder(int maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    @Override
+    public void feed(ByteBuffer src) throws IOException {
+        int n = src.remaining();
+        if (length - start + n > maxBufferedBytes) {
+            throw new StreamCorruptedException("Message trop volumineux (> " + maxBufferedBytes + " octets)");
+        }
+        if (length + n > buffer.length) {
+            // Octets déjà lus par objectIn abandonnés avant d'agrandir
+            int pending = length - start;
+            byte[] target = pending + n > buffer.length
+                    ? new byte[Math.max(pending + n, buffer.length * 2)]
+                    : buffer;
+            System.arraycopy(buffer, start, target, 0, pending);
+            buffer = target;
+            pos -= start;
+            limit -= start;
+            length = pending;
+            start = 0;
+        }
+        src.get(buffer, length, n);
+        length += n;
+    }
+
+    @Override
+    public ProductionMessage next() throws IOException, ClassNotFoundException {
+        if (objectIn == null) {
+            if (length < STREAM_HEADER.length) {
+                return null;
+            }
+            limit = STREAM_HEADER.length;
+            objectIn = new ObjectInputStream(new BufferStream());  // Lit et vérifie l'en-tête
+        }
+        if (start == length) {
+            return null;
+        }
+
+        if (depth == 0) {
+            // Nouvel objet (TC_RESET en tête: lus par objectIn avec l'objet qui suit)
+            pos = start;
+            push(CONTENT);
+        }
+        if (!scan()) {
+            return null;
+        }
+
+        limit = pos;
+        Object obj = objectIn.readObject();
+        if (start != limit) {
+            throw new StreamCorruptedException("Objet mal délimité: " + (limit - start) + " octets non lus");
+        }
+        if (start == length) {
+            start = 0;
+            length = 0;
+            limit = 0;
+            if (buffer.length > 4096) {
+                buffer = new byte[256];
+            }
+        }
+        if (!(obj instanceof ProductionMessage)) {
+            throw new StreamCorruptedException("Message inattendu: " + (obj == null ? "null" : obj.getClass().getName()));
+        }
+        return (ProductionMessage) obj;
+    }
+
+    /**
+     * Octets balayés, lus par objectIn (jamais au-delà de limit)
+     */
+    private final class BufferStream extends InputStream {
+        @Override
+        public int read() {
+            return start < limit ? buffer[start++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int n = Math.min(len, limit - start);
+            if (n <= 0) {
+                return -1;
+            }
+            System.arraycopy(buffer, start, b, off, n);
+            start += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - start;
+        }
+    }
+
+    // --- Balayage de la grammaire du flux ---
+
+    /**
+     * Poursuivre le balayage de l'objet suivant, une étape à la fois. Une étape lit ses octets avant de
+     * modifier l'état: s'ils manquent, pos revient au début de l'étape et rien d'autre n'a changé
+     * @return true si l'objet est complet (fin en pos), false s'il manque des octets
+     */
+    private boolean scan() throws StreamCorruptedException {
+        while (depth > 0) {
+            int mark = pos;
+            try {
+                Frame frame = stack[depth - 1];
+                switch (frame.kind) {
+                    case CONTENT:
+                        content(frame);
+                        break;
+                    case CLASS_DESC:
+                        classDesc(frame);
+                        break;
+                    case OBJECT:
+                        objectData(frame);
+                        break;
+                    case ARRAY:
+                        array(frame);
+                        break;
+                    case ANNOTATION:
+                        annotation();
+                        break;
+                    case CLASS:
+                    case ENUM:
+                        classOrEnum(frame);
+                        break;
+                    default:
+                        throw new IllegalStateException("Élément inconnu: " + frame.kind);
+                }
+            } catch (Incomplete e) {
+                pos = mark;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void push(int kind) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        Frame frame = stack[depth];
+        if (frame == null) {
+            frame = new Frame();
+            stack[depth] = frame;
+        }
+        frame.reset(kind);
+        depth++;
+    }
+
+    private void pop() {
+        depth--;
+    }
+
+    /**
+     * Élément quelconque: code de type, puis l'élément lui-même à la place de celui-ci
+     */
+    private void content(Frame frame) throws Incomplete, StreamCorruptedException {
+        byte tc = readByte();
+        switch (tc) {
+            case ObjectStreamConstants.TC_NULL:
+                pop();
+                return;
+            case ObjectStreamConstants.TC_REFERENCE:
+                handle(readInt());
+                pop();
+                return;
+            case ObjectStreamConstants.TC_CLASSDESC:
+            case ObjectStreamConstants.TC_PROXYCLASSDESC:
+                pos--;
+                frame.reset(CLASS_DESC);
+                return;
+            case ObjectStreamConstants.TC_CLASS:
+                frame.reset(CLASS);
+                return;
+            case ObjectStreamConstants.TC_STRING:
+                skip(readUnsignedShort());
+                handles.add(null);
+                pop();
+                return;
+            case ObjectStreamConstants.TC_LONGSTRING:
+                skip(readLong());
+                handles.add(null);
+                pop();
+                return;
+            case ObjectStreamConstants.TC_ENUM:
+                frame.reset(ENUM);
+                return;
+            case ObjectStreamConstants.TC_ARRAY:
+                frame.reset(ARRAY);
+                return;
+            case ObjectStreamConstants.TC_OBJECT:
+                frame.reset(OBJECT);
+                return;
+            case ObjectStreamConstants.TC_RESET:
+                // L'élément attendu suit
+                handles = new ArrayList<>();
+                return;
+            default:
+                throw new StreamCorruptedException("Code de type inattendu: " + String.format("0x%02X", tc));
+        }
+    }
+
+    /**
+     * Descripteur de classe (ou null, ou référence), rendu dans result
+     * Étapes: en-tête, champs un par un, annotation, classe mère
+     */
+    private void classDesc(Frame frame) throws Incomplete, StreamCorruptedException {
+        switch (frame.step) {
+            case 0: {
+                byte tc = readByte();
+                switch (tc) {
+                    case ObjectStreamConstants.TC_NULL:
+                        result = null;
+                        pop();
+                        return;
+                    case ObjectStreamConstants.TC_REFERENCE: {
+                        Object desc = handle(readInt());
+                        if (!(desc instanceof ClassDesc)) {
+                            throw new StreamCorruptedException("Référence à un descripteur de classe invalide");
+                        }
+                        result = (ClassDesc) desc;
+                        pop();
+                        return;
+                    }
+                    case ObjectStreamConstants.TC_CLASSDESC: {
+                        String name = readUtf();
+                        skip(8);  // serialVersionUID
+                        byte flags = readByte();
+                        int count = readUnsignedShort();
+                        frame.handle = handles.size();
+                        handles.add(null);
+                        frame.desc = new ClassDesc(name, flags, new char[count]);
+                        frame.index = 0;
+                        frame.step = 1;
+                        return;
+                    }
+                    case ObjectStreamConstants.TC_PROXYCLASSDESC: {
+                        int interfaces = readInt();
+                        for (int i = 0; i < interfaces; i++) {
+                            skip(readUnsignedShort());
+                        }
+                        frame.handle = handles.size();
+                        handles.add(null);
+                        frame.desc = new ClassDesc("$Proxy", ObjectStreamConstants.SC_SERIALIZABLE, new char[0]);
+                        frame.step = 2;
+                        return;
+                    }
+                    default:
+                        throw new StreamCorruptedException("Descripteur de classe attendu: " + String.format("0x%02X", tc));
+                }
+            }
+            case 1: {
+                char[] fieldTypes = frame.desc.fieldTypes;
+                if (frame.index == fieldTypes.length) {
+                    frame.step = 2;
+                    return;
+                }
+                char type = (char) readByte();
+                skip(readUnsignedShort());  // Nom du champ
+                fieldTypes[frame.index++] = type;
+                if (type == 'L' || type == '[') {
+                    push(CONTENT);  // Type de l'objet (chaîne)
+                }
+                return;
+            }
+            case 2:
+                handles.set(frame.handle, frame.desc);
+                frame.step = 3;
+                push(ANNOTATION);
+                return;
+            case 3:
+                frame.step = 4;
+                push(CLASS_DESC);
+                return;
+            default:
+                frame.desc.superDesc = result;
+                result = frame.desc;
+                pop();
+        }
+    }
+
+    /**
+     * TC_CLASS (descripteur) ou TC_ENUM (descripteur, puis nom de la constante)
+     */
+    private void classOrEnum(Frame frame) {
+        switch (frame.step) {
+            case 0:
+                frame.step = 1;
+                push(CLASS_DESC);
+                return;
+            case 1:
+                handles.add(null);
+                if (frame.kind == ENUM) {
+                    frame.step = 2;
+                    push(CONTENT);  // Nom de la constante
+                    return;
+                }
+                pop();
+                return;
+            default:
+                pop();
+        }
+    }
+
+    /**
+     * Objet: descripteur, puis données de chaque classe, de la plus haute classe sérialisable
+     * à la classe de l'objet, un champ par étape
+     */
+    private void objectData(Frame frame) throws Incomplete, StreamCorruptedException {
+        switch (frame.step) {
+            case 0:
+                frame.step = 1;
+                push(CLASS_DESC);
+                return;
+            case 1: {
+                ClassDesc desc = result;
+                if (desc == null) {
+                    throw new StreamCorruptedException("Objet sans descripteur de classe");
+                }
+                handles.add(null);
+                if ((desc.flags & ObjectStreamConstants.SC_EXTERNALIZABLE) != 0) {
+                    if ((desc.flags & ObjectStreamConstants.SC_BLOCK_DATA) == 0) {
+                        throw new StreamCorruptedException("Externalizable en protocole 1 non supporté: " + desc.name);
+                    }
+                    frame.step = 3;
+                    push(ANNOTATION);
+                    return;
+                }
+                frame.hierarchy.clear();
+                for (ClassDesc d = desc; d != null; d = d.superDesc) {
+                    frame.hierarchy.add(d);
+                }
+                frame.index = frame.hierarchy.size() - 1;
+                frame.field = 0;
+                frame.annotated = false;
+                frame.step = 2;
+                return;
+            }
+            case 2: {
+                if (frame.index < 0) {
+                    pop();
+                    return;
+                }
+                ClassDesc d = frame.hierarchy.get(frame.index);
+                if ((d.flags & ObjectStreamConstants.SC_SERIALIZABLE) != 0) {
+                    if (frame.field < d.fieldTypes.length) {
+                        char type = d.fieldTypes[frame.field];
+                        int width = primitiveWidth(type);
+                        if (width > 0) {
+                            skip(width);
+                        } else if (type == 'L' || type == '[') {
+                            push(CONTENT);
+                        } else {
+                            throw new StreamCorruptedException("Type de champ inconnu: " + type);
+                        }
+                        frame.field++;
+                        return;
+                    }
+                    if ((d.flags & ObjectStreamConstants.SC_WRITE_METHOD) != 0 && !frame.annotated) {
+                        frame.annotated = true;
+                        push(ANNOTATION);  // Données écrites par writeObject après les champs
+                        return;
+                    }
+                }
+                frame.index--;
+                frame.field = 0;
+                frame.annotated = false;
+                return;
+            }
+            default:
+                pop();
+        }
+    }
+
+    /**
+     * Tableau: descripteur, taille, puis octets des primitives ou éléments un par étape
+     */
+    private void array(Frame frame) throws Incomplete, StreamCorruptedException {
+        switch (frame.step) {
+            case 0:
+                frame.step = 1;
+                push(CLASS_DESC);
+                return;
+            case 1: {
+                ClassDesc desc = result;
+                if (desc == null || desc.name.length() < 2 || desc.name.charAt(0) != '[') {
+                    throw new StreamCorruptedException("Descripteur de tableau invalide");
+                }
+                frame.desc = desc;
+                frame.step = 2;
+                return;
+            }
+            case 2: {
+                int size = readInt();
+                if (size < 0) {
+                    throw new StreamCorruptedException("Taille de tableau invalide: " + size);
+                }
+                handles.add(null);
+                int width = primitiveWidth(frame.desc.name.charAt(1));
+                frame.remaining = width > 0 ? (long) size * width : size;
+                frame.step = width > 0 ? 3 : 4;
+                return;
+            }
+            case 3:
+                skip(frame.remaining);
+                pop();
+                return;
+            default:
+                if (frame.remaining == 0) {
+                    pop();
+                    return;
+                }
+                frame.remaining--;
+                push(CONTENT);
+        }
+    }
+
+    /**
+     * Données libres (blocs) et objets jusqu'à TC_ENDBLOCKDATA, un bloc ou un objet par étape
+     */
+    private void annotation() throws Incomplete, StreamCorruptedException {
+        byte tc = peekByte();
+        if (tc == ObjectStreamConstants.TC_ENDBLOCKDATA) {
+            pos++;
+            pop();
+        } else if (tc == ObjectStreamConstants.TC_BLOCKDATA) {
+            pos++;
+            skip(readByte() & 0xFF);
+        } else if (tc == ObjectStreamConstants.TC_BLOCKDATALONG) {
+            pos++;
+            int size = readInt();
+            if (size < 0) {
+                throw new StreamCorruptedException("Taille de bloc invalide: " + size);
+            }
+            skip(size);
+        } else {
+            push(CONTENT);
+        }
+    }
+
+    private static int primitiveWidth(char type) {
+        switch (type) {
+            case 'B': case 'Z':
+                return 1;
+            case 'C': case 'S':
+                return 2;
+            case 'I': case 'F':
+                return 4;
+            case 'J': case 'D':
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    private Object handle(int wireHandle) throws StreamCorruptedException {
+        int index = wireHandle - HANDLE_BASE;
+        if (index < 0 || index >= handles.size()) {
+            throw new StreamCorruptedException("Référence invalide: " + Integer.toHexString(wireHandle));
+        }
+        ClassDesc desc = handles.get(index);
+        return desc != null ? desc : Boolean.TRUE;  // Objet déjà vu (seuls les descripteurs servent)
+    }
+
+    private byte peekByte() throws Incomplete {
+        if (pos >= length) {
+            throw Incomplete.INSTANCE;
+        }
+        return buffer[pos];
+    }
+
+    private byte readByte() throws Incomplete {
+        if (pos >= length) {
+            throw Incomplete.INSTANCE;
+        }
+        return buffer[pos++];
+    }
+
+    private int readUnsignedShort() throws Incomplete {
+        require(2);
+        int value = ((buffer[pos] & 0xFF) << 8) | (buffer[pos + 1] & 0xFF);
+        pos += 2;
+        return value;
+    }
+
+    private int readInt() throws Incomplete {
+        require(4);
+        int value = ((buffer[pos] & 0xFF) << 24) | ((buffer[pos + 1] & 0xFF) << 16)
+                | ((buffer[pos + 2] & 0xFF) << 8) | (buffer[pos + 3] & 0xFF);
+        pos += 4;
+        return value;
+    }
+
+    private long readLong() throws Incomplete {
+        long high = readInt() & 0xFFFFFFFFL;
+        return high << 32 | (readInt() & 0xFFFFFFFFL);
+    }
+
+    private String readUtf() throws Incomplete {
+        int size = readUnsignedShort();
+        require(size);
+        // Noms de classe: ASCII en pratique, le nom exact ne sert qu'aux tableaux ('[' en tête)
+        String value = new String(buffer, pos, size, java.nio.charset.StandardCharsets.ISO_8859_1);
+        pos += size;
+        return value;
+    }
+
+    private void skip(long count) throws Incomplete, StreamCorruptedException {
+        if (count < 0) {
+            throw new StreamCorruptedException("Longueur invalide: " + count);
+        }
+        require(count);
+        pos += (int) count;
+    }
+
+    private void require(long count) throws Incomplete {
+        if (length - pos < count) {
+            throw Incomplete.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package socket.server;
+
+import common.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * File d'envoi bornée d'une connexion
+ *
+ * Les réponses ne sont jamais perdues: leur nombre est déjà borné par MAX_IN_FLIGHT_PER_CONNECTION.
+ * Les événements poussés sont limités à capacity; au-delà, la politique s'applique:
+ * - DROP_OLDEST: l'événement le plus ancien est supprimé
+ * - COALESCE: les événements en attente sont remplacés par un seul état complet (RESYNC)
+ * - DISCONNECT: la connexion est fermée
+ * Un client qui ne lit plus rien depuis stallTimeoutMs est déconnecté quelle que soit la politique:
+ * le délai court depuis le plus ancien message en attente (file devenue non vide, ou dernier envoi),
+ * pas depuis la dernière vidange: une connexion restée inactive n'est pas pénalisée à la rafale suivante.
+ */
+class OutboundQueue {
+    enum OverflowPolicy {
+        DROP_OLDEST,
+        COALESCE,
+        DISCONNECT
+    }
+
+    // Totaux du serveur, connexions fermées comprises
+    static final LongAdder totalDropped = new LongAdder();
+    static final LongAdder totalCoalesced = new LongAdder();
+    static final LongAdder totalEvicted = new LongAdder();
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final long stallTimeoutMs;
+    private final Supplier<ProductionMessage> resync;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<ProductionMessage> queue = new ArrayDeque<>();
+    private int queuedEvents;
+    private boolean resyncPending;
+    private boolean evicted;
+    private long lastProgress = System.currentTimeMillis();  // Dernier envoi, ou file devenue non vide
+    private long dropped;
+    private long coalesced;
+
+    OutboundQueue(int capacity, OverflowPolicy policy, long stallTimeoutMs, Supplier<ProductionMessage> resync) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.stallTimeoutMs = stallTimeoutMs;
+        this.resync = resync;
+    }
+
+    /**
+     * Ajouter une réponse (jamais supprimée)
+     * @return false si la connexion doit être fermée
+     */
+    boolean offerResponse(ProductionMessage response) {
+        lock.lock();
+        try {
+            if (evicted || isStalled()) {
+                return evict();
+            }
+            markPending();
+            queue.add(response);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ajouter un événement poussé en appliquant la politique de débordement
+     * @return false si la connexion doit être fermée
+     */
+    boolean offerEvent(ProductionMessage event) {
+        lock.lock();
+        try {
+            if (evicted || isStalled()) {
+                return evict();
+            }
+            if (resyncPending) {
+                // L'état complet sera lu à l'envoi: il contient déjà ce changement
+                coalesced++;
+                totalCoalesced.increment();
+                return true;
+            }
+            if (queuedEvents >= capacity) {
+                switch (policy) {
+                    case DROP_OLDEST:
+                        removeOldestEvent();
+                        break;
+                    case COALESCE:
+                        coalesceEvents();
+                        return true;
+                    default:
+                        return evict();
+                }
+            }
+            markPending();
+            queue.add(event);
+            queuedEvents++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Prochain message à envoyer, ou null si la file est vide
+     */
+    ProductionMessage poll() {
+        boolean sendResync;
+        lock.lock();
+        try {
+            lastProgress = System.currentTimeMillis();
+            ProductionMessage message = queue.poll();
+            if (message != null) {
+                if (message.getRequestId() == 0) {
+                    queuedEvents--;
+                }
+                return message;
+            }
+            sendResync = resyncPending;
+            resyncPending = false;
+        } finally {
+            lock.unlock();
+        }
+        // Construit hors verrou, au moment de l'envoi: l'état le plus récent
+        return sendResync ? resync.get() : null;
+    }
+
+    boolean isEvicted() {
+        lock.lock();
+        try {
+            return evicted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getDepth() {
+        lock.lock();
+        try {
+            return queue.size() + (resyncPending ? 1 : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getCoalesced() {
+        lock.lock();
+        try {
+            return coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isStalled() {
+        return (!queue.isEmpty() || resyncPending) && System.currentTimeMillis() - lastProgress > stallTimeoutMs;
+    }
+
+    /**
+     * Avant un ajout: file vide jusque-là, le délai sans lecture part de maintenant
+     */
+    private void markPending() {
+        if (queue.isEmpty() && !resyncPending) {
+            lastProgress = System.currentTimeMillis();
+        }
+    }
+
+    private boolean evict() {
+        if (!evicted) {
+            evicted = true;
+            totalEvicted.increment();
+        }
+        queue.clear();
+        queuedEvents = 0;
+        resyncPending = false;
+        return false;
+    }
+
+    private void removeOldestEvent() {
+        Iterator<ProductionMessage> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().getRequestId() == 0) {
+                it.remove();
+                queuedEvents--;
+                dropped++;
+                totalDropped.increment();
+                return;
+            }
+        }
+    }
+
+    private void coalesceEvents() {
+        Iterator<ProductionMessage> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().getRequestId() == 0) {
+                it.remove();
+            }
+        }
+        // Les événements retirés et celui qui déborde
+        coalesced += queuedEvents + 1;
+        totalCoalesced.add(queuedEvents + 1);
+        queuedEvents = 0;
+        resyncPending = true;
+    }
+}
@@ -0,0 +1,65 @@
+package socket.server;
+
+import common.*;
+
+/**
+ * Outil de vérification: délai sans lecture de la file d'envoi (OutboundQueue)
+ * Une connexion restée inactive plus longtemps que le délai reçoit une rafale d'événements:
+ * elle ne doit pas être déconnectée avant d'avoir pu envoyer. Une connexion qui ne lit plus
+ * rien pendant le délai, elle, doit l'être.
+ *
+ * Usage: java -cp bin socket.server.OutboundQueueCheck
+ * Code de sortie 1 si une vérification échoue.
+ */
+public class OutboundQueueCheck {
+    private static final long STALL_MS = 50;
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        // Inactive depuis l'ouverture, puis une rafale
+        OutboundQueue queue = newQueue();
+        Thread.sleep(STALL_MS * 2);
+        check("rafale après inactivité acceptée", offerBurst(queue, 10));
+        check("connexion gardée", !queue.isEvicted());
+
+        // Vidée par l'envoi, inactive, puis une nouvelle rafale
+        while (queue.poll() != null) {
+            // Tout est envoyé
+        }
+        Thread.sleep(STALL_MS * 2);
+        check("rafale après vidange et inactivité acceptée", offerBurst(queue, 10));
+        check("réponse acceptée", queue.offerResponse(new ProductionMessage(ProductionMessage.MessageType.ACK, null)));
+
+        // Rien n'est lu pendant le délai: déconnexion
+        Thread.sleep(STALL_MS * 2);
+        check("client bloqué déconnecté", !queue.offerEvent(event()));
+        check("file marquée évincée", queue.isEvicted());
+
+        System.out.println(failures == 0 ? "OK" : failures + " vérification(s) en échec");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static OutboundQueue newQueue() {
+        return new OutboundQueue(100, OutboundQueue.OverflowPolicy.DISCONNECT, STALL_MS, () -> event());
+    }
+
+    private static boolean offerBurst(OutboundQueue queue, int events) {
+        for (int i = 0; i < events; i++) {
+            if (!queue.offerEvent(event())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ProductionMessage event() {
+        return new ProductionMessage(ProductionMessage.MessageType.STATE_EVENT, null);
+    }
+
+    private static void check(String what, boolean ok) {
+        System.out.println((ok ? "  [OK]     " : "  [ÉCHEC]  ") + what);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package socket.server;
+
+import common.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stock de pièces de la station d'assemblage, indexé par ordinal de type de pièce
+ *
+ * Une machine dépose dans la zone d'ordinal currentPart.ordinal() (PART_TYPE_X, produite par TYPE_X):
+ * ni hachage de chaîne ni verrou, chaque quantité est un compteur modifié par compare-and-set
+ * dans les limites [0, capacité]. Les StorageZone ne servent plus qu'aux copies envoyées aux clients.
+ * Un stock par station; un seul assembleur le consomme (cycle d'assemblage de la station).
+ */
+class PartInventory {
+    private static final Machine.MachineType[] TYPES = Machine.MachineType.values();
+
+    private final String[] partNames = new String[TYPES.length];
+    private final int[] maxCapacity = new int[TYPES.length];
+    private final int[] minThreshold = new int[TYPES.length];
+    private final AtomicIntegerArray quantities = new AtomicIntegerArray(TYPES.length);
+    private final int stationId;
+
+    /**
+     * Capacités et seuils repris des zones définies par la station
+     */
+    PartInventory(AssemblyStation station) {
+        stationId = station.getId();
+        for (Machine.MachineType type : TYPES) {
+            int part = type.ordinal();
+            partNames[part] = Machine.PartType.of(type).zoneName();
+            StorageZone zone = station.getStorageZone(partNames[part]);
+            maxCapacity[part] = zone != null ? zone.getMaxCapacity() : 0;
+            minThreshold[part] = zone != null ? zone.getMinThreshold() : 0;
+            quantities.set(part, zone != null ? zone.getCurrentQuantity() : 0);
+        }
+    }
+
+    int size() {
+        return TYPES.length;
+    }
+
+    /**
+     * Ajouter une pièce si la zone n'est pas pleine
+     */
+    boolean tryAdd(int part) {
+        while (true) {
+            int quantity = quantities.get(part);
+            if (quantity >= maxCapacity[part]) {
+                return false;
+            }
+            if (quantities.compareAndSet(part, quantity, quantity + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retirer une pièce si la zone n'est pas vide
+     */
+    boolean tryRemove(int part) {
+        while (true) {
+            int quantity = quantities.get(part);
+            if (quantity == 0) {
+                return false;
+            }
+            if (quantities.compareAndSet(part, quantity, quantity - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retirer une pièce de chaque zone, ou aucune si une zone est vide
+     * Les producteurs ne font qu'ajouter: pour l'unique assembleur, une zone non vide le reste.
+     */
+    boolean tryRemoveOneOfEach() {
+        for (int part = 0; part < TYPES.length; part++) {
+            if (quantities.get(part) == 0) {
+                return false;
+            }
+        }
+        for (int part = 0; part < TYPES.length; part++) {
+            tryRemove(part);
+        }
+        return true;
+    }
+
+    /**
+     * Quantité rétablie au démarrage (WAL), bornée par la capacité actuelle de la zone
+     */
+    void restore(int part, int quantity) {
+        quantities.set(part, Math.max(0, Math.min(quantity, maxCapacity[part])));
+    }
+
+    int quantity(int part) {
+        return quantities.get(part);
+    }
+
+    int capacity(int part) {
+        return maxCapacity[part];
+    }
+
+    String partName(int part) {
+        return partNames[part];
+    }
+
+    /**
+     * Copie détachée d'une zone pour les clients
+     */
+    StorageZone toZone(int part) {
+        StorageZone zone = new StorageZone(partNames[part], maxCapacity[part]);
+        zone.setMinThreshold(minThreshold[part]);
+        zone.setCurrentQuantity(quantities.get(part));
+        zone.setStationId(stationId);
+        return zone;
+    }
+}
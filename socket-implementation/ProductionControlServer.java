@@ -2,9 +2,15 @@ package socket.server;
 
 import common.*;
 import java.io.*;
+import java.lang.reflect.Method;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Serveur de contrôle multi-thread pour la chaîne de production
@@ -12,44 +18,194 @@ import java.util.concurrent.*;
  */
 public class ProductionControlServer {
     private static final int PORT = 9000;
+    private static final long PRODUCTION_START_DELAY_MS = 5000;  // Premier cycle d'une station qui démarre
+    // Alertes dont la source peut être une station (identifiant de station)
+    private static final Set<Alert.AlertType> STORAGE_ALERTS = EnumSet.of(
+            Alert.AlertType.STORAGE_FULL, Alert.AlertType.STORAGE_EMPTY, Alert.AlertType.STORAGE_LOW);
     
     // Base de données partagée (accès synchronisé)
+    // Dimensionnée d'après la topologie chargée au démarrage (--topology=fichier)
     private static Map<Integer, Machine> machines = new ConcurrentHashMap<>();
-    private static AssemblyStation assemblyStation;
-    private static List<Alert> alerts = Collections.synchronizedList(new ArrayList<>());
-    private static int alertIdCounter = 1;
+    // Alertes récentes: tampon circulaire borné (--alert-capacity=N), identifiants atomiques
+    private static int alertCapacity = 1000;
+    private static AlertLog alertLog;
+    
+    // Alertes répétées (même type, source et pièce) regroupées pendant --alert-window=MS
+    private static long alertWindowMs = 1000;
+    private static AlertCoalescer alertCoalescer;
+    
+    // Journal des alertes sur disque (--journal=DIR), relu au démarrage; null = mémoire seulement
+    private static String journalDir = null;
+    private static int journalSegmentMb = 64;
+    private static AlertJournal alertJournal;
+    
+    // WAL de l'état de la ligne (--wal=DIR): machines, zones et stations rétablies au redémarrage
+    private static String walDir = null;
+    private static long walCommitMs = 10;
+    private static long checkpointSeconds = 60;
+    private static StateWal stateWal;
+    // Acquittement après le fsync du lot, sauf --wal-async (au plus --wal-commit ms de changements perdus)
+    private static boolean walAsync = false;
+    
+    // Séries temporelles (--timeseries=DIR): production, assemblage et stocks relevés toutes les --ts-interval=MS
+    private static String timeSeriesDir = null;
+    private static long timeSeriesIntervalMs = 1000;
+    private static long timeSeriesRetentionHours = 24;
+    private static TimeSeriesStore timeSeries;
+    
+    // Cycles de production (par machine) et d'assemblage (par station) sur --cycle-threads threads partagés
+    // Durée par défaut --cycle-ms=MIN-MAX, remplacée par celle de la topologie (machine ou type)
+    private static long cycleMinMs = 3000;
+    private static long cycleMaxMs = 7000;
+    private static long assemblyMinMs = 3000;
+    private static long assemblyMaxMs = 7000;
+    private static int cycleThreads = Runtime.getRuntime().availableProcessors();
+    private static boolean verboseCycles = true;  // Une ligne par pièce: petites lignes seulement
+    private static CycleScheduler cycleScheduler;
+    
+    // Index secondaires du journal (ALERT_QUERY): source, type, priorité, non résolues, date
+    private static AlertIndex alertIndex;
+    
+    // Résolution des alertes hors du thread client, par priorité (--alert-workers=N, --alert-queue=N)
+    private static int alertWorkers = 2;
+    private static int alertQueueCapacity = 10000;
+    private static AlertPipeline alertPipeline;
+    
+    // Stations d'assemblage: stock, index des machines et verrou propres à chacune
+    // (tableau et table fixés au démarrage, lus sans synchronisation ensuite)
+    private static StationShard[] stationShards = new StationShard[0];
+    private static Map<Integer, StationShard> shardsById = Collections.emptyMap();
     
     // Verrous pour la synchronisation
-    private static final Object machinesLock = new Object();
-    private static final Object assemblyLock = new Object();
+    // Les machines n'en ont pas: leurs transitions d'état sont atomiques (Machine.compareAndSetState)
+    // ReentrantLock plutôt que synchronized: un thread virtuel en attente n'épingle pas son carrier
+    
+    // Abonnés aux changements d'état (SUBSCRIBE)
+    static final EventBroadcaster events = new EventBroadcaster();
+    
+    // Version d'état croissante et entités modifiées par version (PRODUCTION_DATA delta)
+    static final StateVersions versions = new StateVersions();
+    
+    // Dernière copie de chaque objet, rangée par son écrivain dans sa case; état complet immuable
+    // construit à partir de ces copies par un seul publieur (publishWorld), pris sans verrou par les lecteurs
+    private static final WorldSnapshot.Slots<Machine> latestMachines = new WorldSnapshot.Slots<>();
+    private static final WorldSnapshot.Slots<AssemblyStation> latestStations = new WorldSnapshot.Slots<>();
+    private static final WorldSnapshot.Slots<Alert> latestAlerts = new WorldSnapshot.Slots<>();
+    private static volatile WorldSnapshot world = WorldSnapshot.empty();
+    private static final AtomicBoolean worldChanged = new AtomicBoolean();
+    private static volatile Thread worldPublisher;
+    private static final Queue<WorldWaiter> worldWaiters = new ConcurrentLinkedQueue<>();
+    // Intervalle minimal entre deux snapshots: une rafale de changements n'en coûte qu'un
+    private static final long WORLD_PUBLISH_INTERVAL_NANOS = 10_000_000;
+    private static final Map<Integer, Integer> machineSlots = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextMachineSlot = new AtomicInteger();
+    
+    // Options de démarrage
+    private static boolean nioMode = false;
+    private static int ioThreads = Runtime.getRuntime().availableProcessors();
+    private static int backlog = 1024;
+    private static int workerThreads = Runtime.getRuntime().availableProcessors() * 2;
+    private static boolean virtualThreads = false;
+    private static Method virtualBuilderName;
+    private static Method virtualBuilderStart;
+    
+    // Exécution des requêtes pipelinées (requestId != 0), hors du thread de lecture
+    static final int MAX_IN_FLIGHT_PER_CONNECTION = 256;
+    static Executor requestExecutor;
+    
+    // Sessions clientes ouvertes (tous modes confondus)
+    private static final AtomicInteger activeSessions = new AtomicInteger();
+    private static final AtomicInteger peakSessions = new AtomicInteger();
+    private static final Set<ClientSession> sessions = ConcurrentHashMap.newKeySet();
     
-    // Simulateur de production
-    private static Thread productionSimulatorThread = null;
-    private static volatile boolean simulatorRunning = false;
+    // Files d'envoi par connexion: événements en attente max, politique de débordement, client bloqué
+    private static int outboundLimit = 1024;
+    private static OutboundQueue.OverflowPolicy overflowPolicy = OutboundQueue.OverflowPolicy.COALESCE;
+    private static long writeTimeoutMs = 30_000;
+    
+    // Topologie de l'usine (ligne d'origine M1 à M5 si aucun fichier)
+    private static String topologyFile = null;
     
     public static void main(String[] args) {
-        initializeProductionLine();
-        
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("╔════════════════════════════════════════════════════╗");
-            System.out.println("║  Serveur de Contrôle de Production - SOCKET       ║");
-            System.out.println("╚════════════════════════════════════════════════════╝");
-            System.out.println("Port: " + PORT);
-            System.out.println("État: EN LIGNE");
-            System.out.println("\nEn attente de connexions...\n");
-            
-            // Thread pour simuler la production automatique
-            // DESACTIVE PAR DEFAUT - Décommentez pour activer la simulation automatique
-            // new Thread(new ProductionSimulator()).start();
-            System.out.println("[INFO] Simulateur automatique DESACTIVE - Controle manuel uniquement");
-            System.out.println("[INFO] Utilisez le client pour demarrer les machines (option 4)\n");
+        parseArguments(args);
+        if (journalDir != null) {
+            try {
+                alertJournal = new AlertJournal(new File(journalDir), journalSegmentMb * 1024 * 1024);
+            } catch (IOException e) {
+                System.err.println("Journal des alertes illisible: " + e.getMessage());
+                System.exit(1);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    alertJournal.close();
+                } catch (IOException e) {
+                    System.err.println("Erreur de fermeture du journal: " + e.getMessage());
+                }
+            }));
+        }
+        try {
+            initializeProductionLine(topologyFile != null 
+                    ? PlantTopology.load(new File(topologyFile)) : PlantTopology.defaultTopology());
+        } catch (IOException e) {
+            System.err.println("Topologie invalide: " + e.getMessage());
+            System.exit(1);
+        }
+        if (stateWal != null) {
+            try {
+                stateWal.start();
+            } catch (IOException e) {
+                System.err.println("WAL impossible à écrire: " + e.getMessage());
+                System.exit(1);
+            }
+            resumeRecoveredStations();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    stateWal.close();
+                } catch (IOException e) {
+                    System.err.println("Erreur de fermeture du WAL: " + e.getMessage());
+                }
+            }));
+        }
+        if (timeSeriesDir != null) {
+            try {
+                timeSeries = new TimeSeriesStore(new File(timeSeriesDir), machines, stationShards,
+                        timeSeriesIntervalMs, timeSeriesRetentionHours * 3600 * 1000, 600);
+            } catch (IOException e) {
+                System.err.println("Séries temporelles impossibles à ouvrir: " + e.getMessage());
+                System.exit(1);
+            }
+            timeSeries.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    timeSeries.close();
+                } catch (IOException e) {
+                    System.err.println("Erreur de fermeture des séries temporelles: " + e.getMessage());
+                }
+            }));
+        }
+        requestExecutor = createRequestExecutor();
+        alertPipeline = new AlertPipeline(alertWorkers, alertQueueCapacity,
+                ProductionControlServer::startDaemonThread, ClientHandler::resolveQueuedAlert);
+        
+        if (nioMode) {
+            printBanner();
+            try {
+                new NioProductionServer(PORT, ioThreads, backlog).run();
+            } catch (IOException e) {
+                System.err.println("Erreur serveur: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+        
+        try (ServerSocket serverSocket = new ServerSocket(PORT, backlog)) {
+            printBanner();
             
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                System.out.println("✓ Nouvelle connexion: " + clientSocket.getInetAddress());
                 
                 // Gérer chaque client dans un thread séparé
-                new Thread(new ClientHandler(clientSocket)).start();
+                startThread(new ClientHandler(clientSocket), "client-" + clientSocket.getPort());
             }
         } catch (IOException e) {
             System.err.println("Erreur serveur: " + e.getMessage());
@@ -58,18 +214,476 @@ public class ProductionControlServer {
     }
     
     /**
-     * Initialisation de la chaîne de production
+     * Lecture des options: --nio, --io-threads=N, --backlog=N, --virtual, --workers=N,
+     * --outbound-limit=N, --slow-client=drop-oldest|coalesce|disconnect, --write-timeout=S,
+     * --topology=fichier, --alert-capacity=N, --alert-workers=N, --alert-queue=N, --alert-window=MS,
+     * --journal=répertoire, --journal-segment-mb=N, --wal=répertoire, --wal-commit=MS, --wal-async, --checkpoint=S,
+     * --timeseries=répertoire, --ts-interval=MS, --ts-retention=H,
+     * --cycle-ms=MIN-MAX, --assembly-ms=MIN-MAX, --cycle-threads=N
+     */
+    private static void parseArguments(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--nio")) {
+                nioMode = true;
+            } else if (arg.startsWith("--io-threads=")) {
+                ioThreads = Integer.parseInt(arg.substring("--io-threads=".length()));
+            } else if (arg.startsWith("--backlog=")) {
+                backlog = Integer.parseInt(arg.substring("--backlog=".length()));
+            } else if (arg.startsWith("--workers=")) {
+                workerThreads = Integer.parseInt(arg.substring("--workers=".length()));
+            } else if (arg.startsWith("--outbound-limit=")) {
+                outboundLimit = Integer.parseInt(arg.substring("--outbound-limit=".length()));
+            } else if (arg.startsWith("--slow-client=")) {
+                overflowPolicy = OutboundQueue.OverflowPolicy.valueOf(
+                        arg.substring("--slow-client=".length()).toUpperCase().replace('-', '_'));
+            } else if (arg.startsWith("--write-timeout=")) {
+                writeTimeoutMs = Long.parseLong(arg.substring("--write-timeout=".length())) * 1000;
+            } else if (arg.startsWith("--alert-capacity=")) {
+                alertCapacity = Integer.parseInt(arg.substring("--alert-capacity=".length()));
+            } else if (arg.startsWith("--alert-window=")) {
+                alertWindowMs = Long.parseLong(arg.substring("--alert-window=".length()));
+            } else if (arg.startsWith("--alert-workers=")) {
+                alertWorkers = Integer.parseInt(arg.substring("--alert-workers=".length()));
+            } else if (arg.startsWith("--alert-queue=")) {
+                alertQueueCapacity = Integer.parseInt(arg.substring("--alert-queue=".length()));
+            } else if (arg.startsWith("--journal=")) {
+                journalDir = arg.substring("--journal=".length());
+            } else if (arg.startsWith("--journal-segment-mb=")) {
+                journalSegmentMb = Integer.parseInt(arg.substring("--journal-segment-mb=".length()));
+            } else if (arg.startsWith("--wal=")) {
+                walDir = arg.substring("--wal=".length());
+            } else if (arg.startsWith("--wal-commit=")) {
+                walCommitMs = Long.parseLong(arg.substring("--wal-commit=".length()));
+            } else if (arg.equals("--wal-async")) {
+                walAsync = true;
+            } else if (arg.startsWith("--checkpoint=")) {
+                checkpointSeconds = Long.parseLong(arg.substring("--checkpoint=".length()));
+            } else if (arg.startsWith("--timeseries=")) {
+                timeSeriesDir = arg.substring("--timeseries=".length());
+            } else if (arg.startsWith("--ts-interval=")) {
+                timeSeriesIntervalMs = Long.parseLong(arg.substring("--ts-interval=".length()));
+            } else if (arg.startsWith("--ts-retention=")) {
+                timeSeriesRetentionHours = Long.parseLong(arg.substring("--ts-retention=".length()));
+            } else if (arg.startsWith("--cycle-ms=")) {
+                long[] range = parseRange(arg.substring("--cycle-ms=".length()));
+                cycleMinMs = range[0];
+                cycleMaxMs = range[1];
+            } else if (arg.startsWith("--assembly-ms=")) {
+                long[] range = parseRange(arg.substring("--assembly-ms=".length()));
+                assemblyMinMs = range[0];
+                assemblyMaxMs = range[1];
+            } else if (arg.startsWith("--cycle-threads=")) {
+                cycleThreads = Integer.parseInt(arg.substring("--cycle-threads=".length()));
+            } else if (arg.startsWith("--topology=")) {
+                topologyFile = arg.substring("--topology=".length());
+            } else if (arg.equals("--virtual")) {
+                virtualThreads = resolveVirtualThreadBuilder();
+            } else {
+                System.err.println("[AVERTISSEMENT] Option inconnue ignorée: " + arg);
+            }
+        }
+    }
+    
+    /**
+     * Durée "MS" ou "MIN-MAX" en ms
+     */
+    private static long[] parseRange(String value) {
+        int dash = value.indexOf('-');
+        long min = Long.parseLong(dash < 0 ? value : value.substring(0, dash));
+        long max = dash < 0 ? min : Long.parseLong(value.substring(dash + 1));
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Durée invalide: " + value);
+        }
+        return new long[] { min, max };
+    }
+    
+    /**
+     * Threads virtuels (Java 21+) obtenus par réflexion pour rester compilable avec un JDK plus ancien
+     */
+    private static boolean resolveVirtualThreadBuilder() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            virtualBuilderName = builderType.getMethod("name", String.class);
+            virtualBuilderStart = builderType.getMethod("start", Runnable.class);
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (ReflectiveOperationException e) {
+            System.err.println("[AVERTISSEMENT] Threads virtuels indisponibles (Java 21+ requis) - threads classiques utilisés");
+            return false;
+        }
+    }
+    
+    /**
+     * Démarrer une tâche sur un thread virtuel (--virtual) ou un thread classique
+     */
+    static Thread startThread(Runnable task, String name) {
+        if (virtualThreads) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = virtualBuilderName.invoke(builder, name);
+                return (Thread) virtualBuilderStart.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Création du thread virtuel impossible", e);
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.start();
+        return thread;
+    }
+    
+    /**
+     * Thread de service qui n'empêche pas l'arrêt du serveur (un thread virtuel ne le fait jamais)
+     */
+    static Thread startDaemonThread(Runnable task, String name) {
+        if (virtualThreads) {
+            return startThread(task, name);
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+    
+    /**
+     * Un thread virtuel par requête en mode --virtual, sinon un pool fixe
+     */
+    private static Executor createRequestExecutor() {
+        if (virtualThreads) {
+            return task -> startThread(task, "requete");
+        }
+        return Executors.newFixedThreadPool(workerThreads, task -> {
+            Thread t = new Thread(task, "requete");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    /**
+     * Comptage des sessions pour mesurer la capacité de chaque mode
+     */
+    static void sessionOpened(ClientSession session, InetAddress address) {
+        sessions.add(session);
+        int active = activeSessions.incrementAndGet();
+        peakSessions.accumulateAndGet(active, Math::max);
+        System.out.println("✓ Nouvelle connexion: " + address + " [sessions: " + active + "]");
+    }
+    
+    static void sessionClosed(ClientSession session, InetAddress address) {
+        if (!sessions.remove(session)) {
+            return;
+        }
+        int active = activeSessions.decrementAndGet();
+        System.out.println("✗ Client déconnecté: " + address
+                + " [sessions: " + active + ", pic: " + peakSessions.get() + "]");
+    }
+    
+    /**
+     * Changer l'état d'une machine en tenant l'index à jour; retourne l'état précédent
+     */
+    static Machine.MachineState transition(Machine m, Machine.MachineState to) {
+        Machine.MachineState from = m.getAndSetState(to);
+        StationShard shard = shardOf(m);
+        shard.index.transitioned(m, from, to);
+        if (to == Machine.MachineState.RUNNING) {
+            cycleScheduler.machineStarted(m, shard);
+        }
+        return from;
+    }
+    
+    /**
+     * Transition conditionnelle (compare-and-set): réussit seulement depuis l'état expected
+     */
+    static boolean tryTransition(Machine m, Machine.MachineState expected, Machine.MachineState to) {
+        if (!m.compareAndSetState(expected, to)) {
+            return false;
+        }
+        StationShard shard = shardOf(m);
+        shard.index.transitioned(m, expected, to);
+        if (to == Machine.MachineState.RUNNING) {
+            cycleScheduler.machineStarted(m, shard);
+        }
+        return true;
+    }
+    
+    /**
+     * Station alimentée par la machine
+     */
+    static StationShard shardOf(Machine m) {
+        return shardsById.get(m.getStationId());
+    }
+    
+    /**
+     * La réponse attend la validation du WAL: requête qui modifie l'état (--wal, sauf --wal-async)
+     */
+    static boolean awaitsWal(ProductionMessage message) {
+        return stateWal != null && !walAsync
+                && (message.getType() == ProductionMessage.MessageType.COMMAND
+                        || message.getType() == ProductionMessage.MessageType.STATUS_UPDATE);
+    }
+    
+    /**
+     * Exécuter then une fois les changements déjà publiés écrits et synchronisés sur disque (lot du WAL
+     * en cours, partagé par toutes les requêtes de l'intervalle), sans occuper de thread pendant l'attente
+     * then reçoit l'erreur d'écriture du WAL, ou null; aussitôt appelé sans WAL ou avec --wal-async.
+     */
+    static void afterWalCommit(Consumer<Throwable> then) {
+        if (stateWal == null || walAsync) {
+            then.accept(null);
+            return;
+        }
+        stateWal.pendingBatch().whenComplete((done, error) -> then.accept(error));
+    }
+    
+    /**
+     * Réponse remise plus tard par processMessage(message, session, reply): après le WAL (awaitsWal),
+     * ou SUBSCRIBE, après la publication d'un snapshot qui contient les changements d'avant l'abonnement
+     */
+    static boolean repliesLater(ProductionMessage message) {
+        return awaitsWal(message) || message.getType() == ProductionMessage.MessageType.SUBSCRIBE;
+    }
+    
+    /**
+     * Exécuter then sur le publieur dès qu'un snapshot de version >= version est publié (aussitôt si
+     * c'est déjà le cas), sans occuper de thread pendant l'attente
+     */
+    static void afterWorldPublished(long version, Runnable then) {
+        WorldWaiter waiter = new WorldWaiter(version, then);
+        worldWaiters.add(waiter);
+        wakeWorldPublisher();
+        // Publication entre l'ajout et ici: le publieur a pu passer sans voir l'attente
+        if (world.version >= version) {
+            waiter.run();
+        }
+    }
+    
+    /**
+     * Suite en attente d'un snapshot, exécutée une seule fois (publieur ou afterWorldPublished)
+     */
+    private static final class WorldWaiter {
+        final long version;
+        private final Runnable then;
+        private final AtomicBoolean done = new AtomicBoolean();
+        
+        WorldWaiter(long version, Runnable then) {
+            this.version = version;
+            this.then = then;
+        }
+        
+        void run() {
+            if (done.compareAndSet(false, true)) {
+                worldWaiters.remove(this);
+                then.run();
+            }
+        }
+    }
+    
+    /**
+     * Réponse d'un changement appliqué en mémoire mais pas sur disque
+     */
+    static ProductionMessage walFailure(ProductionMessage reply, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        ProductionMessage failure = new ProductionMessage(reply.getType(), reply.getPayload(), false,
+                reply.getResponseMessage() + " - non persisté (WAL: " + cause.getMessage() + ")");
+        failure.setRequestId(reply.getRequestId());
+        return failure;
+    }
+    
+    /**
+     * Alerte CRITICAL (panne machine): enregistrée sur le thread de lecture plutôt que
+     * derrière les requêtes pipelinées en attente dans requestExecutor
+     */
+    static boolean isUrgent(ProductionMessage message) {
+        return message.getType() == ProductionMessage.MessageType.ALERT
+                && message.getPayload() instanceof Alert
+                && ((Alert) message.getPayload()).getPriority() == Alert.AlertPriority.CRITICAL;
+    }
+    
+    /**
+     * File d'envoi d'une nouvelle connexion, selon les options de démarrage
+     */
+    static OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(outboundLimit, overflowPolicy, writeTimeoutMs, 
+                ProductionControlServer::resyncMessage);
+    }
+    
+    /**
+     * Événement RESYNC: l'état complet partagé remplace les événements d'un client en retard
+     */
+    private static ProductionMessage resyncMessage() {
+        WorldSnapshot snapshot = world;
+        return new ProductionMessage(ProductionMessage.MessageType.STATE_EVENT, 
+                new StateEvent(StateEvent.EventType.RESYNC, snapshot.payload(), snapshot.version));
+    }
+    
+    /**
+     * Statistiques des sessions: profondeur des files d'envoi et compteurs de pertes
+     */
+    private static Map<String, Object> sessionStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("activeSessions", activeSessions.get());
+        stats.put("peakSessions", peakSessions.get());
+        stats.put("subscribers", events.getSubscriberCount());
+        stats.put("overflowPolicy", overflowPolicy.name());
+        stats.put("totalDropped", OutboundQueue.totalDropped.sum());
+        stats.put("totalCoalesced", OutboundQueue.totalCoalesced.sum());
+        stats.put("totalEvicted", OutboundQueue.totalEvicted.sum());
+        stats.put("alertCapacity", alertLog.getCapacity());
+        stats.put("alertsEvicted", alertLog.getEvictedCount());
+        stats.put("alertsSuppressed", alertCoalescer.getSuppressed());
+        if (stateWal != null) {
+            stats.put("walCommits", stateWal.getCommits());
+            stats.put("walRecords", stateWal.getRecords());
+            stats.put("walCheckpoints", stateWal.getCheckpoints());
+        }
+        if (timeSeries != null) {
+            stats.put("timeSeriesSamples", timeSeries.getSamples());
+            stats.put("timeSeriesChunks", timeSeries.getChunkCount());
+            stats.put("timeSeriesChunksExpired", timeSeries.getChunksExpired());
+        }
+        stats.put("cycleScheduledMachines", cycleScheduler.getScheduledMachines());
+        stats.put("cycleMachineTicks", cycleScheduler.getMachineTicks());
+        stats.put("cycleAssemblyTicks", cycleScheduler.getAssemblyTicks());
+        stats.put("cycleMaxLagMs", cycleScheduler.takeMaxLagMs());
+        stats.put("alertsSuppressedByType", alertCoalescer.getSuppressedByType());
+        stats.put("alertsPending", alertPipeline.getPending());
+        stats.put("alertsResolved", alertPipeline.getResolved());
+        stats.put("alertsShed", alertPipeline.getShed());
+        
+        List<Map<String, Object>> perSession = new ArrayList<>();
+        int maxDepth = 0;
+        for (ClientSession session : sessions) {
+            OutboundQueue queue = session.getOutboundQueue();
+            int depth = queue.getDepth();
+            maxDepth = Math.max(maxDepth, depth);
+            if (depth == 0 && queue.getDropped() == 0 && queue.getCoalesced() == 0) {
+                continue; // Sessions sans retard omises
+            }
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("client", String.valueOf(session.getRemoteAddress()));
+            entry.put("depth", depth);
+            entry.put("dropped", queue.getDropped());
+            entry.put("coalesced", queue.getCoalesced());
+            perSession.add(entry);
+        }
+        stats.put("maxDepth", maxDepth);
+        stats.put("laggingSessions", perSession);
+        return stats;
+    }
+    
+    private static void printBanner() {
+        System.out.println("╔════════════════════════════════════════════════════╗");
+        System.out.println("║  Serveur de Contrôle de Production - SOCKET       ║");
+        System.out.println("╚════════════════════════════════════════════════════╝");
+        System.out.println("Port: " + PORT);
+        System.out.println("Mode: " + (nioMode ? "NIO (Selector)"
+                : virtualThreads ? "Thread virtuel par connexion" : "Thread par connexion"));
+        System.out.println("Clients lents: " + overflowPolicy + " au-delà de " + outboundLimit 
+                + " événements, déconnexion après " + writeTimeoutMs / 1000 + " s sans lecture");
+        System.out.println("Cycles: " + cycleMinMs + "-" + cycleMaxMs + " ms par machine (sauf topologie), assemblage "
+                + assemblyMinMs + "-" + assemblyMaxMs + " ms, " + cycleThreads + " threads");
+        System.out.println("État: EN LIGNE");
+        System.out.println("\nEn attente de connexions...\n");
+        
+        // Cycles de production automatiques: lancés par station au démarrage de son assemblage
+        System.out.println("[INFO] Simulateur automatique DESACTIVE - Controle manuel uniquement");
+        System.out.println("[INFO] Utilisez le client pour demarrer les machines (option 4)\n");
+    }
+    
+    /**
+     * Initialisation de la chaîne de production à partir de la topologie
+     * Machines créées et indexées en un passage, snapshot initial construit d'un bloc
      */
-    private static void initializeProductionLine() {
-        // Machines de production (M1 et M2 pour la même tâche)
-        machines.put(1, new Machine(1, "Machine-M1", Machine.MachineType.TYPE_A));
-        machines.put(2, new Machine(2, "Machine-M2", Machine.MachineType.TYPE_A)); // Backup pour M1
-        machines.put(3, new Machine(3, "Machine-M3", Machine.MachineType.TYPE_B));
-        machines.put(4, new Machine(4, "Machine-M4", Machine.MachineType.TYPE_C));
-        machines.put(5, new Machine(5, "Machine-M5", Machine.MachineType.TYPE_D));
+    static void initializeProductionLine(PlantTopology topology) throws IOException {
+        int count = topology.getMachineCount();
+        machines = new ConcurrentHashMap<>(count * 4 / 3 + 1);
+        alertLog = new AlertLog(alertCapacity, alertJournal, ProductionControlServer::alertEvicted);
+        alertCoalescer = new AlertCoalescer(alertWindowMs, alertLog);
+        alertIndex = new AlertIndex(alertLog, alertJournal);
+        
+        // Alertes récentes relues du journal (historique, sans nouvelle résolution)
+        List<Alert> alertCopies = new ArrayList<>();
+        if (alertJournal != null) {
+            long start = System.nanoTime();
+            List<Alert> recent = alertJournal.recent(alertCapacity);
+            if (!recent.isEmpty()) {
+                // Alertes plus anciennes restées dans le journal seulement (ALERT_QUERY)
+                alertIndex.evictedUpTo(alertJournal.maxTimeBefore(recent.get(0).getId()));
+            }
+            for (Alert alert : recent) {
+                alertLog.restore(alert);
+                alertIndex.add(alert);
+                int slot = alertLog.slotOf(alert.getId());
+                while (alertCopies.size() <= slot) {
+                    alertCopies.add(null);
+                }
+                alertCopies.set(slot, copyOf(alert));
+            }
+            System.out.println("✓ Journal des alertes: " + recent.size() + " alertes relues en " 
+                    + (System.nanoTime() - start) / 1_000_000 + " ms (" + alertJournal.getSegmentCount() + " segments)");
+        }
+        
+        // Stations d'assemblage, dans l'ordre de déclaration
+        List<PlantTopology.Station> stationConfigs = topology.getStations();
+        stationShards = new StationShard[stationConfigs.size()];
+        Map<Integer, StationShard> byId = new HashMap<>();
+        for (int slot = 0; slot < stationShards.length; slot++) {
+            PlantTopology.Station config = stationConfigs.get(slot);
+            stationShards[slot] = new StationShard(slot, new AssemblyStation(config.getId(), config.getName(), 
+                    config.createStorageZones()));
+            byId.put(config.getId(), stationShards[slot]);
+        }
+        shardsById = byId;
+        
+        // Machines rattachées à la station qu'elles alimentent, avec leur cycle de production
+        verboseCycles = count <= 20;
+        cycleScheduler = new CycleScheduler(cycleThreads, cycleMinMs, cycleMaxMs, assemblyMinMs, assemblyMaxMs,
+                ProductionControlServer::machineCycle, ProductionControlServer::assemblyCycle);
+        List<Machine> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Machine m = topology.createMachine(i);
+            machines.put(m.getId(), m);
+            StationShard shard = shardsById.get(m.getStationId());
+            shard.add(m);
+            machineSlots.put(m.getId(), nextMachineSlot.getAndIncrement());
+            created.add(m);
+            int[] cycle = topology.getMachineCycle(i);
+            if (cycle != null) {
+                cycleScheduler.configure(m, shard, cycle[0], cycle[1]);
+            }
+        }
         
-        // Station d'assemblage
-        assemblyStation = new AssemblyStation(100, "Station-Assemblage-Principale");
+        // État d'avant l'arrêt (WAL), rétabli avant le premier snapshot
+        if (walDir != null) {
+            stateWal = new StateWal(new File(walDir), machines, stationShards, shardsById,
+                    walCommitMs, checkpointSeconds * 1000, 64L * 1024 * 1024);
+            long start = System.nanoTime();
+            int applied = stateWal.recover();
+            System.out.println("✓ WAL: " + applied + " enregistrements appliqués en " 
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        List<Machine> machineCopies = new ArrayList<>(count);
+        for (Machine m : created) {
+            machineCopies.add(copyOf(m));
+        }
+        
+        // Premier snapshot publié avant toute connexion
+        List<AssemblyStation> stationCopies = new ArrayList<>(stationShards.length);
+        for (StationShard shard : stationShards) {
+            stationCopies.add(copyOf(shard));
+        }
+        for (int slot = 0; slot < machineCopies.size(); slot++) {
+            latestMachines.set(slot, machineCopies.get(slot));
+        }
+        for (int slot = 0; slot < stationCopies.size(); slot++) {
+            latestStations.set(slot, stationCopies.get(slot));
+        }
+        for (int slot = 0; slot < alertCopies.size(); slot++) {
+            if (alertCopies.get(slot) != null) {
+                latestAlerts.set(slot, alertCopies.get(slot));
+            }
+        }
+        world = WorldSnapshot.of(versions.current(), latestMachines, latestStations, latestAlerts);
+        worldPublisher = startDaemonThread(ProductionControlServer::publishWorld, "snapshot");
         
         // TOUTES LES MACHINES DÉMARRENT EN STOPPED
         // Vous pouvez les démarrer manuellement avec le client (option 4)
@@ -79,25 +693,228 @@ public class ProductionControlServer {
         // machines.get(3).setState(Machine.MachineState.RUNNING);
         // machines.get(4).setState(Machine.MachineState.RUNNING);
         // machines.get(5).setState(Machine.MachineState.RUNNING);
-        // assemblyStation.setState(AssemblyStation.StationState.ASSEMBLING);
+        // stationShards[0].station.setState(AssemblyStation.StationState.ASSEMBLING);
         
-        // Par défaut: tout est arrêté, contrôle manuel
-        assemblyStation.setState(AssemblyStation.StationState.IDLE);
+        // Par défaut: tout est arrêté, contrôle manuel (stations IDLE)
         
         System.out.println("✓ Chaîne de production initialisée:");
-        for (Machine m : machines.values()) {
-            System.out.println("  - " + m);
+        if (count <= 20) {
+            for (Machine m : machines.values()) {
+                System.out.println("  - " + m);
+            }
+        } else {
+            // Grande ligne: un résumé par type plutôt qu'une ligne par machine
+            int[] perType = new int[Machine.MachineType.values().length];
+            for (int i = 0; i < count; i++) {
+                perType[topology.getMachineType(i).ordinal()]++;
+            }
+            for (Machine.MachineType type : Machine.MachineType.values()) {
+                System.out.println("  - " + perType[type.ordinal()] + " machines " + type);
+            }
+        }
+        for (StationShard shard : stationShards) {
+            System.out.println("  - " + shard.station);
+        }
+    }
+    
+    /**
+     * Relancer les cycles des stations qui assemblaient ou attendaient des pièces avant l'arrêt
+     */
+    private static void resumeRecoveredStations() {
+        for (StationShard shard : stationShards) {
+            if (shard.station.getState() == AssemblyStation.StationState.IDLE) {
+                continue;
+            }
+            shard.lock.lock();
+            try {
+                ClientHandler.startProductionCyclesIfNeeded(shard);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Copies détachées des objets partagés (sérialisées hors verrou)
+     */
+    static Machine copyOf(Machine m) {
+        Machine copy = new Machine(m.getId(), m.getName(), m.getType());
+        copy.setState(m.getState());
+        copy.setProductionCount(m.getProductionCount());
+        copy.setCurrentPart(m.getCurrentPart());
+        copy.setStationId(m.getStationId());
+        return copy;
+    }
+    
+    /**
+     * Copie de la station avec les quantités actuelles de son stock (zones configurées seulement)
+     */
+    static AssemblyStation copyOf(StationShard shard) {
+        AssemblyStation station = shard.station;
+        PartInventory inventory = shard.inventory;
+        Map<String, StorageZone> zones = new HashMap<>();
+        for (int part = 0; part < inventory.size(); part++) {
+            if (inventory.capacity(part) > 0) {
+                zones.put(inventory.partName(part), inventory.toZone(part));
+            }
+        }
+        AssemblyStation copy = new AssemblyStation(station.getId(), station.getName(), zones);
+        copy.setState(station.getState());
+        copy.setAssembledProducts(station.getAssembledProducts());
+        return copy;
+    }
+    
+    static Alert copyOf(Alert alert) {
+        Alert copy = new Alert(alert.getType(), alert.getSourceId(), alert.getSourceName(),
+                alert.getPartType(), alert.getMessage());
+        copy.setId(alert.getId());
+        copy.setPriority(alert.getPriority());
+        copy.setTimestamp(alert.getTimestamp());
+        copy.setResolved(alert.isResolved());
+        copy.setOccurrences(alert.getOccurrences());
+        return copy;
+    }
+    
+    /**
+     * Publieur du snapshot (thread "snapshot"): réveillé par le premier changement, il construit le
+     * snapshot suivant en ne réencodant que les blocs modifiés, puis laisse passer au moins
+     * WORLD_PUBLISH_INTERVAL_NANOS. Ni les écrivains ni les lecteurs ne l'attendent: un lecteur
+     * reçoit le dernier snapshot publié, avec sa version (le delta suivant reprend à partir d'elle).
+     */
+    private static void publishWorld() {
+        while (true) {
+            while (!worldChanged.getAndSet(false)) {
+                LockSupport.park();
+            }
+            long start = System.nanoTime();
+            // Version lue avant les copies: un changement a rangé sa copie avant d'obtenir sa version
+            WorldSnapshot snapshot = WorldSnapshot.of(versions.current(), latestMachines, latestStations, latestAlerts);
+            world = snapshot;
+            for (WorldWaiter waiter : worldWaiters) {
+                if (waiter.version <= snapshot.version) {
+                    waiter.run();
+                }
+            }
+            long left;
+            while ((left = start + WORLD_PUBLISH_INTERVAL_NANOS - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(left);
+            }
+        }
+    }
+    
+    /**
+     * Nouvelle version d'un changement déjà rangé (updateWorld*), puis réveil du publieur
+     * (lecture seule du marqueur pendant une rafale: il est déjà posé)
+     */
+    private static <K> long touchWorld(StateVersions.ChangeLog<K> log, K key) {
+        long version = versions.touch(log, key);
+        wakeWorldPublisher();
+        return version;
+    }
+    
+    private static void wakeWorldPublisher() {
+        if (!worldChanged.get() && worldChanged.compareAndSet(false, true)) {
+            Thread publisher = worldPublisher;
+            if (publisher != null) {
+                LockSupport.unpark(publisher);
+            }
+        }
+    }
+    
+    private static void updateWorldMachine(Machine m) {
+        int slot = machineSlots.computeIfAbsent(m.getId(), id -> nextMachineSlot.getAndIncrement());
+        latestMachines.update(slot, current -> copyOf(m));
+    }
+    
+    private static void updateWorldStation(StationShard shard) {
+        latestStations.update(shard.slot, current -> copyOf(shard));
+    }
+    
+    private static void updateWorldAlert(Alert alert) {
+        // Même case que dans le journal: le snapshot ne garde que la fenêtre récente
+        int slot = alertLog.slotOf(alert.getId());
+        latestAlerts.update(slot, existing -> existing != null && existing.getId() > alert.getId()
+                ? existing  // Alerte déjà sortie de la fenêtre
+                : copyOf(alert));
+    }
+    
+    /**
+     * Alerte remplacée dans le journal circulaire: abandonnée, et oubliée des requêtes delta
+     */
+    private static void alertEvicted(Alert alert) {
+        alertIndex.remove(alert);
+        versions.alerts.forget(alert.getId());
+    }
+    
+    /**
+     * Enregistrement des changements d'état: copie rangée pour le snapshot, nouvelle version
+     * (requêtes delta), puis publication aux abonnés (aucune copie sans abonné)
+     */
+    static void publishMachine(Machine m) {
+        if (stateWal != null) {
+            stateWal.machineChanged(m);
+        }
+        updateWorldMachine(m);
+        long version = touchWorld(versions.machines, m.getId());
+        if (events.hasSubscribers()) {
+            events.publish(new StateEvent(StateEvent.EventType.MACHINE_STATE, copyOf(m), version));
+        }
+    }
+    
+    static void publishZone(StationShard shard, int part) {
+        if (stateWal != null) {
+            stateWal.zoneChanged(shard, part);
+        }
+        updateWorldStation(shard);
+        long version = touchWorld(versions.zones, shard.zoneKey(part));
+        if (events.hasSubscribers()) {
+            events.publish(new StateEvent(StateEvent.EventType.STORAGE_LEVEL, shard.inventory.toZone(part), version));
+        }
+    }
+    
+    static void publishStation(StateEvent.EventType type, StationShard shard) {
+        if (stateWal != null) {
+            stateWal.stationChanged(shard);
+        }
+        updateWorldStation(shard);
+        long version = touchWorld(versions.stations, shard.station.getId());
+        if (events.hasSubscribers()) {
+            events.publish(new StateEvent(type, copyOf(shard), version));
+        }
+    }
+    
+    static void publishAlert(StateEvent.EventType type, Alert alert) {
+        updateWorldAlert(alert);
+        long version = touchWorld(versions.alerts, alert.getId());
+        if (events.hasSubscribers()) {
+            events.publish(new StateEvent(type, copyOf(alert), version));
         }
-        System.out.println("  - " + assemblyStation);
+    }
+    
+    /**
+     * Compteur d'occurrences d'une alerte ouverte incrémenté (doublon regroupé): republié dans le
+     * snapshot et le delta, sans événement (l'alerte n'est ni nouvelle ni résolue)
+     */
+    static void publishAlertOccurrences(Alert alert) {
+        if (alertLog.get(alert.getId()) != alert) {
+            return; // Sortie du journal circulaire: plus dans le snapshot ni dans le delta
+        }
+        updateWorldAlert(alert);
+        touchWorld(versions.alerts, alert.getId());
     }
     
     /**
      * Gestionnaire de connexion client (Thread)
      */
-    static class ClientHandler implements Runnable {
+    static class ClientHandler implements Runnable, ClientSession {
         private Socket socket;
-        private ObjectOutputStream out;
-        private ObjectInputStream in;
+        private MessageChannel channel;
+        
+        // Réponses pipelinées et événements, envoyés dans l'ordre par une tâche à la fois:
+        // un client bloqué n'immobilise qu'un seul thread de travail
+        private final OutboundQueue outbound = newOutboundQueue();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_PER_CONNECTION);
         
         public ClientHandler(Socket socket) {
             this.socket = socket;
@@ -105,21 +922,51 @@ public class ProductionControlServer {
         
         @Override
         public void run() {
+            sessionOpened(this, socket.getInetAddress());
             try {
-                out = new ObjectOutputStream(socket.getOutputStream());
-                in = new ObjectInputStream(socket.getInputStream());
+                // Sans TCP_NODELAY, Nagle retient la réponse derrière l'en-tête du flux (~40 ms)
+                socket.setTcpNoDelay(true);
+                // Codec binaire ou sérialisation Java selon ce que propose le client
+                channel = MessageChannel.accept(socket);
                 
                 while (true) {
-                    ProductionMessage message = (ProductionMessage) in.readObject();
-                    ProductionMessage response = processMessage(message);
-                    out.writeObject(response);
-                    out.flush();
+                    ProductionMessage message = channel.receive();
+                    if (message.getRequestId() == 0) {
+                        // Client synchrone: réponse dans l'ordre des requêtes (après le WAL si besoin)
+                        CompletableFuture<ProductionMessage> response = new CompletableFuture<>();
+                        processMessage(message, this, response::complete);
+                        channel.send(response.get());
+                        continue;
+                    }
+                    
+                    // Client pipeliné: les réponses partent dès qu'elles sont prêtes
+                    inFlight.acquire();
+                    if (isUrgent(message)) {
+                        // Alerte critique: traitée tout de suite, sans attendre derrière les requêtes en file
+                        if (outbound.offerResponse(processMessage(message, this))) {
+                            scheduleDrain();
+                        } else {
+                            evict();
+                        }
+                        continue;
+                    }
+                    requestExecutor.execute(() -> processMessage(message, this, response -> {
+                        if (outbound.offerResponse(response)) {
+                            scheduleDrain();
+                        } else {
+                            evict();
+                        }
+                    }));
                 }
             } catch (EOFException e) {
-                System.out.println("✗ Client déconnecté: " + socket.getInetAddress());
+                // Déconnexion normale
             } catch (Exception e) {
-                System.err.println("Erreur client: " + e.getMessage());
+                if (!outbound.isEvicted()) {
+                    System.err.println("Erreur client: " + e.getMessage());
+                }
             } finally {
+                events.unsubscribe(this);
+                sessionClosed(this, socket.getInetAddress());
                 try {
                     socket.close();
                 } catch (IOException e) {
@@ -128,10 +975,99 @@ public class ProductionControlServer {
             }
         }
         
+        @Override
+        public void push(ProductionMessage message) {
+            if (outbound.offerEvent(message)) {
+                scheduleDrain();
+            } else {
+                evict();
+            }
+        }
+        
+        @Override
+        public OutboundQueue getOutboundQueue() {
+            return outbound;
+        }
+        
+        @Override
+        public InetAddress getRemoteAddress() {
+            return socket.getInetAddress();
+        }
+        
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                requestExecutor.execute(this::drainOutbound);
+            }
+        }
+        
+        private void drainOutbound() {
+            do {
+                ProductionMessage message;
+                while ((message = outbound.poll()) != null) {
+                    try {
+                        channel.send(message);
+                    } catch (IOException e) {
+                        // Connexion perdue: le thread de lecture termine la session
+                        events.unsubscribe(this);
+                    } finally {
+                        if (message.getRequestId() != 0) {
+                            inFlight.release();
+                        }
+                    }
+                }
+                draining.set(false);
+            } while (outbound.getDepth() > 0 && draining.compareAndSet(false, true));
+        }
+        
+        /**
+         * Client trop lent ou connexion perdue: la fermeture débloque aussi un envoi en cours
+         */
+        private void evict() {
+            events.unsubscribe(this);
+            if (socket.isClosed()) {
+                return;
+            }
+            System.err.println("Client lent déconnecté: " + socket.getInetAddress());
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+        
         /**
          * Traitement des messages avec synchronisation
+         * La réponse reprend le requestId de la requête
+         */
+        static ProductionMessage processMessage(ProductionMessage message, ClientSession session) {
+            ProductionMessage response = dispatch(message, session);
+            response.setRequestId(message.getRequestId());
+            return response;
+        }
+        
+        /**
+         * Traiter une requête et remettre sa réponse à reply: aussitôt, ou pour une requête qui modifie
+         * l'état (awaitsWal) une fois ses changements synchronisés sur disque (thread d'écriture du WAL),
+         * ou pour SUBSCRIBE avec le premier snapshot publié qui contient tout ce qui précède l'abonnement
+         * (sans quoi les changements entre le snapshot et l'abonnement n'arriveraient jamais à l'abonné)
          */
-        private ProductionMessage processMessage(ProductionMessage message) {
+        static void processMessage(ProductionMessage message, ClientSession session, Consumer<ProductionMessage> reply) {
+            ProductionMessage response = processMessage(message, session);
+            if (message.getType() == ProductionMessage.MessageType.SUBSCRIBE && response.isSuccess()) {
+                afterWorldPublished(versions.current(), () -> {
+                    ProductionMessage subscribed = subscribedResponse();
+                    subscribed.setRequestId(message.getRequestId());
+                    reply.accept(subscribed);
+                });
+                return;
+            }
+            if (!awaitsWal(message)) {
+                reply.accept(response);
+                return;
+            }
+            afterWalCommit(error -> reply.accept(error == null ? response : walFailure(response, error)));
+        }
+        
+        private static ProductionMessage dispatch(ProductionMessage message, ClientSession session) {
             try {
                 switch (message.getType()) {
                     case ALERT:
@@ -144,8 +1080,32 @@ public class ProductionControlServer {
                         return handleStatusUpdate(message.getPayload());
                         
                     case PRODUCTION_DATA:
+                        // Payload optionnel: dernière version vue par le client -> changements seulement
+                        if (message.getPayload() instanceof Number) {
+                            return getProductionDelta(((Number) message.getPayload()).longValue());
+                        }
                         return getProductionData();
                         
+                    case SUBSCRIBE:
+                        // Réponse avec l'état complet, puis uniquement les changements
+                        events.subscribe(session);
+                        return subscribedResponse();
+                        
+                    case SERVER_STATS:
+                        return new ProductionMessage(ProductionMessage.MessageType.SERVER_STATS, 
+                                sessionStats(), true, "Statistiques des sessions");
+                        
+                    case ALERT_QUERY:
+                        return queryAlerts((AlertQuery) message.getPayload());
+                        
+                    case TIME_SERIES:
+                        return queryTimeSeries((TimeSeriesQuery) message.getPayload());
+                        
+                    case UNSUBSCRIBE:
+                        events.unsubscribe(session);
+                        return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                                null, true, "Abonnement terminé");
+                        
                     default:
                         return new ProductionMessage(ProductionMessage.MessageType.ACK, 
                                 null, false, "Type de message inconnu");
@@ -159,26 +1119,58 @@ public class ProductionControlServer {
         /**
          * Gestion des alertes avec synchronisation
          */
-        private ProductionMessage handleAlert(Alert alert) {
-            synchronized (alerts) {
-                alert.setId(alertIdCounter++);
-                alerts.add(alert);
+        private static ProductionMessage handleAlert(Alert alert) {
+            Alert open = alertCoalescer.coalesce(alert);
+            if (open != alert) {
+                // Doublon dans la fenêtre: compté sur l'alerte ouverte, ni nouvelle alerte ni résolution
+                publishAlertOccurrences(open);
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, true, 
+                        "Alerte " + open.getId() + " déjà ouverte (" + open.getOccurrences() + " occurrences)");
             }
+            alertIndex.add(alert);
+            publishAlert(StateEvent.EventType.ALERT_RAISED, alert);
             
             System.out.println("\n⚠ ALERTE REÇUE: " + alert);
             
-            // Résolution automatique selon le type d'alerte
-            ProductionMessage resolution = resolveAlert(alert);
+            // Résolution par les threads d'alertes, les plus prioritaires d'abord: le client n'attend pas
+            if (!alertPipeline.submit(alert)) {
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, true, 
+                        "Alerte " + alert.getId() + " enregistrée (" + alert.getPriority()
+                                + "), file de résolution pleine: non résolue automatiquement");
+            }
             
             return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                    resolution.getPayload(), true, 
-                    "Alerte traitée: " + resolution.getResponseMessage());
+                    null, true, 
+                    "Alerte " + alert.getId() + " enregistrée (" + alert.getPriority() + "), résolution en cours");
+        }
+        
+        /**
+         * Résolution d'une alerte en attente (thread d'alertes)
+         * Le résultat est visible par l'événement ALERT_RESOLVED, le snapshot et le delta
+         */
+        static void resolveQueuedAlert(Alert alert) {
+            ProductionMessage resolution = resolveAlert(alert);
+            // Remplacement ou réapprovisionnement sur disque avant d'annoncer la résolution
+            afterWalCommit(error -> announceResolution(alert, error == null ? resolution : walFailure(resolution, error)));
+        }
+        
+        private static void announceResolution(Alert alert, ProductionMessage resolution) {
+            System.out.println("  ⚙ Alerte " + alert.getId() + " traitée: " + resolution.getResponseMessage());
+            if (alert.isResolved() && alertJournal != null) {
+                alertJournal.resolved(alert);
+            }
+            if (alert.isResolved() && alertLog.get(alert.getId()) == alert) {
+                alertIndex.resolved(alert);
+                publishAlert(StateEvent.EventType.ALERT_RESOLVED, alert);
+            }
         }
         
         /**
          * Résolution automatique des alertes
          */
-        private ProductionMessage resolveAlert(Alert alert) {
+        private static ProductionMessage resolveAlert(Alert alert) {
             switch (alert.getType()) {
                 case MACHINE_FAILURE:
                     return handleMachineFailure(alert);
@@ -200,378 +1192,456 @@ public class ProductionControlServer {
          * Gestion panne machine: Remplacement automatique
          * Exemple: M1 tombe en panne → M2 la remplace
          */
-        private ProductionMessage handleMachineFailure(Alert alert) {
-            synchronized (machinesLock) {
-                int failedId = alert.getSourceId();
-                Machine failedMachine = machines.get(failedId);
+        private static ProductionMessage handleMachineFailure(Alert alert) {
+            int failedId = alert.getSourceId();
+            Machine failedMachine = machines.get(failedId);
+            
+            if (failedMachine == null) {
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, false, "Machine inconnue");
+            }
+            
+            // Arrêter la machine en panne
+            if (transition(failedMachine, Machine.MachineState.FAILURE) != Machine.MachineState.FAILURE) {
+                publishMachine(failedMachine);
+            }
+            System.out.println("  → Arrêt de " + failedMachine.getName() + " [État: FAILURE]");
+            
+            // Réserver une machine de remplacement du même type et de la même station (STOPPED → RUNNING)
+            StationShard shard = shardOf(failedMachine);
+            Machine replacement = shard.index.claimStopped(failedMachine.getType());
+            
+            if (replacement != null) {
+                cycleScheduler.machineStarted(replacement, shard);
+                publishMachine(replacement);
+                System.out.println("  → Démarrage de " + replacement.getName() + " (remplacement) [État: RUNNING]");
                 
-                if (failedMachine == null) {
-                    return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                            null, false, "Machine inconnue");
-                }
+                alert.setResolved(true);
                 
-                // Arrêter la machine en panne ET METTRE À JOUR dans la map
-                failedMachine.setState(Machine.MachineState.FAILURE);
-                machines.put(failedId, failedMachine); // IMPORTANT: Mise à jour explicite
-                System.out.println("  → Arrêt de " + failedMachine.getName() + " [État: FAILURE]");
+                // Vérifier si on peut démarrer l'assemblage
+                checkAndStartAssembly(shard);
                 
-                // Chercher une machine de remplacement du même type
-                Machine replacement = findReplacementMachine(failedMachine.getType(), failedId);
+                ControlCommand cmd = new ControlCommand(
+                        ControlCommand.CommandType.REPLACE_MACHINE,
+                        failedId, replacement.getId(),
+                        "Machine remplacée avec succès");
                 
-                if (replacement != null) {
-                    replacement.setState(Machine.MachineState.RUNNING);
-                    machines.put(replacement.getId(), replacement); // IMPORTANT: Mise à jour
-                    System.out.println("  → Démarrage de " + replacement.getName() + " (remplacement) [État: RUNNING]");
-                    
-                    alert.setResolved(true);
-                    
-                    // Vérifier si on peut démarrer l'assemblage
-                    checkAndStartAssembly();
-                    
-                    ControlCommand cmd = new ControlCommand(
-                            ControlCommand.CommandType.REPLACE_MACHINE,
-                            failedId, replacement.getId(),
-                            "Machine remplacée avec succès");
-                    
-                    return new ProductionMessage(ProductionMessage.MessageType.COMMAND, 
-                            cmd, true, 
-                            failedMachine.getName() + " remplacée par " + replacement.getName());
-                } else {
-                    return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                            null, false, "Aucune machine de remplacement disponible");
-                }
+                return new ProductionMessage(ProductionMessage.MessageType.COMMAND, 
+                        cmd, true, 
+                        failedMachine.getName() + " remplacée par " + replacement.getName());
+            } else {
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, false, "Aucune machine de remplacement disponible");
             }
         }
         
         /**
-         * Trouver une machine de remplacement
+         * Stations concernées par une alerte de stockage: celle qu'alimente la machine source, la station
+         * source pour une alerte émise par une station, ou toutes si la source est inconnue (superviseur).
+         * Machines et stations partagent le même espace d'identifiants: le nom de la source départage
+         * une machine et une station de même numéro.
          */
-        private Machine findReplacementMachine(Machine.MachineType type, int excludeId) {
-            for (Machine m : machines.values()) {
-                if (m.getType() == type && 
-                    m.getId() != excludeId && 
-                    m.getState() == Machine.MachineState.STOPPED) {
-                    return m;
+        private static List<StationShard> shardsForAlert(Alert alert) {
+            Machine machine = machines.get(alert.getSourceId());
+            StationShard station = STORAGE_ALERTS.contains(alert.getType())
+                    ? shardsById.get(alert.getSourceId()) : null;
+            if (machine != null && (station == null
+                    || !station.station.getName().equals(alert.getSourceName()))) {
+                StationShard shard = shardOf(machine);
+                if (shard != null) {
+                    return Collections.singletonList(shard);
                 }
+            } else if (station != null) {
+                return Collections.singletonList(station);
             }
-            return null;
+            return Arrays.asList(stationShards);
         }
         
         /**
          * Gestion zone de stockage pleine: Arrêt machine correspondante
          */
-        private ProductionMessage handleStorageFull(Alert alert) {
-            synchronized (machinesLock) {
-                synchronized (assemblyLock) {
-                    String partType = alert.getMessage().split(":")[0];
-                    
-                    // Arrêter les machines produisant cette pièce
-                    for (Machine m : machines.values()) {
-                        if (m.getCurrentPart().equals(partType) && 
-                            m.getState() == Machine.MachineState.RUNNING) {
-                            m.setState(Machine.MachineState.STOPPED);
-                            machines.put(m.getId(), m); // Mettre à jour dans la map
-                            System.out.println("  → Arrêt de " + m.getName() + " (stockage plein)");
-                        }
+        private static ProductionMessage handleStorageFull(Alert alert) {
+            Machine.PartType partType = alert.getPartType();
+            if (partType == null) {
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, false, "Type de pièce manquant dans l'alerte");
+            }
+            
+            // Arrêter les machines produisant cette pièce (RUNNING → STOPPED)
+            for (StationShard shard : shardsForAlert(alert)) {
+                for (Machine m : shard.index.producersOf(partType)) {
+                    if (tryTransition(m, Machine.MachineState.RUNNING, Machine.MachineState.STOPPED)) {
+                        publishMachine(m);
+                        System.out.println("  → Arrêt de " + m.getName() + " (stockage plein)");
                     }
-                    
-                    alert.setResolved(true);
-                    return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                            null, true, "Production arrêtée pour " + partType);
                 }
             }
+            
+            alert.setResolved(true);
+            return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                    null, true, "Production arrêtée pour " + partType.zoneName());
         }
         
         /**
          * Gestion zone de stockage vide/basse: Démarrage machines
          */
-        private ProductionMessage handleStorageLow(Alert alert) {
-            synchronized (machinesLock) {
-                String partType = alert.getMessage().split(":")[0];
-                
-                // Démarrer les machines produisant cette pièce
-                boolean started = false;
-                for (Machine m : machines.values()) {
-                    if (m.getCurrentPart().equals(partType) && 
-                        m.getState() == Machine.MachineState.STOPPED) {
-                        m.setState(Machine.MachineState.RUNNING);
-                        machines.put(m.getId(), m); // Mettre à jour dans la map
+        private static ProductionMessage handleStorageLow(Alert alert) {
+            Machine.PartType partType = alert.getPartType();
+            if (partType == null) {
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, false, "Type de pièce manquant dans l'alerte");
+            }
+            
+            // Démarrer les machines produisant cette pièce (STOPPED → RUNNING)
+            boolean started = false;
+            for (StationShard shard : shardsForAlert(alert)) {
+                for (Machine m : shard.index.producersOf(partType)) {
+                    if (tryTransition(m, Machine.MachineState.STOPPED, Machine.MachineState.RUNNING)) {
+                        publishMachine(m);
                         System.out.println("  → Démarrage de " + m.getName() + " (stockage bas)");
                         started = true;
                     }
                 }
-                
-                if (started) {
-                    alert.setResolved(true);
-                    return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                            null, true, "Production relancée pour " + partType);
-                } else {
-                    return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                            null, false, "Aucune machine disponible");
-                }
+            }
+            
+            if (started) {
+                alert.setResolved(true);
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, true, "Production relancée pour " + partType.zoneName());
+            } else {
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, false, "Aucune machine disponible");
             }
         }
         
         /**
          * Gestion des commandes de contrôle
+         * Seule la machine ciblée est modifiée: aucune attente derrière les autres machines
          */
-        private ProductionMessage handleCommand(ControlCommand command) {
-            synchronized (machinesLock) {
-                Machine target = machines.get(command.getTargetId());
-                
-                if (target == null) {
-                    return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                            null, false, "Machine non trouvée");
-                }
-                
-                switch (command.getType()) {
-                    case START_MACHINE:
-                        target.setState(Machine.MachineState.RUNNING);
-                        machines.put(target.getId(), target); // Mise à jour
-                        System.out.println("✓ Commande: Démarrage " + target.getName());
-                        
+        private static ProductionMessage handleCommand(ControlCommand command) {
+            Machine target = machines.get(command.getTargetId());
+            
+            if (target == null) {
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, false, "Machine non trouvée");
+            }
+            
+            switch (command.getType()) {
+                case START_MACHINE:
+                    if (transition(target, Machine.MachineState.RUNNING) != Machine.MachineState.RUNNING) {
+                        publishMachine(target);
                         // Vérifier si on peut démarrer l'assemblage
-                        checkAndStartAssembly();
-                        break;
-                        
-                    case STOP_MACHINE:
-                        target.setState(Machine.MachineState.STOPPED);
-                        machines.put(target.getId(), target); // Mise à jour
-                        System.out.println("✓ Commande: Arrêt " + target.getName());
-                        
+                        checkAndStartAssembly(shardOf(target));
+                    }
+                    System.out.println("✓ Commande: Démarrage " + target.getName());
+                    break;
+                    
+                case STOP_MACHINE:
+                    if (transition(target, Machine.MachineState.STOPPED) != Machine.MachineState.STOPPED) {
+                        publishMachine(target);
                         // Vérifier si on doit arrêter l'assemblage
-                        checkAndStopAssembly();
-                        break;
-                        
-                    case MAINTENANCE_MODE:
-                        target.setState(Machine.MachineState.MAINTENANCE);
-                        machines.put(target.getId(), target); // Mise à jour
-                        System.out.println("✓ Commande: Maintenance " + target.getName());
-                        break;
-                        
-                    default:
-                        return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                                null, false, "Commande non supportée");
-                }
-                
-                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                        target, true, "Commande exécutée");
+                        checkAndStopAssembly(shardOf(target));
+                    }
+                    System.out.println("✓ Commande: Arrêt " + target.getName());
+                    break;
+                    
+                case MAINTENANCE_MODE:
+                    if (transition(target, Machine.MachineState.MAINTENANCE) != Machine.MachineState.MAINTENANCE) {
+                        publishMachine(target);
+                    }
+                    System.out.println("✓ Commande: Maintenance " + target.getName());
+                    break;
+                    
+                default:
+                    return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                            null, false, "Commande non supportée");
             }
+            
+            return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                    copyOf(target), true, "Commande exécutée");
         }
         
         /**
-         * Démarrer le simulateur de production si pas déjà lancé
+         * Démarrer les cycles de production de la station si pas déjà lancés (appelé sous shard.lock)
          */
-        private static void startProductionSimulatorIfNeeded() {
-            synchronized (assemblyLock) {
-                if (!simulatorRunning) {
-                    simulatorRunning = true;
-                    productionSimulatorThread = new Thread(new ProductionSimulator());
-                    productionSimulatorThread.start();
-                    System.out.println(">>> [AUTO] Simulateur de production DEMARRE\n");
-                }
+        private static void startProductionCyclesIfNeeded(StationShard shard) {
+            if (!shard.cyclesStarted) {
+                cycleScheduler.startStation(shard, PRODUCTION_START_DELAY_MS);
+                System.out.println(">>> [AUTO] Cycles de production DEMARRES - " + shard.station.getName() + "\n");
             }
         }
         
         /**
-         * Vérifier si on peut démarrer l'assemblage
-         * L'assemblage démarre si au moins une machine de chaque type est en marche
+         * Vérifier si on peut démarrer l'assemblage d'une station
+         * L'assemblage démarre si au moins une machine de chaque type de la station est en marche
          */
-        private void checkAndStartAssembly() {
-            synchronized (machinesLock) {
-                synchronized (assemblyLock) {
-                    // Vérifier qu'on a au moins une machine en marche pour chaque type
-                    boolean hasTypeA = machines.values().stream()
-                        .anyMatch(m -> m.getType() == Machine.MachineType.TYPE_A && m.getState() == Machine.MachineState.RUNNING);
-                    boolean hasTypeB = machines.values().stream()
-                        .anyMatch(m -> m.getType() == Machine.MachineType.TYPE_B && m.getState() == Machine.MachineState.RUNNING);
-                    boolean hasTypeC = machines.values().stream()
-                        .anyMatch(m -> m.getType() == Machine.MachineType.TYPE_C && m.getState() == Machine.MachineState.RUNNING);
-                    boolean hasTypeD = machines.values().stream()
-                        .anyMatch(m -> m.getType() == Machine.MachineType.TYPE_D && m.getState() == Machine.MachineState.RUNNING);
+        private static void checkAndStartAssembly(StationShard shard) {
+            // Compteurs par type (MachineIndex): temps constant, sans verrou si rien ne change
+            if (!shard.index.allTypesRunning()) {
+                return;
+            }
+            shard.lock.lock();
+            try {
+                AssemblyStation station = shard.station;
+                if (shard.index.allTypesRunning() && 
+                    station.getState() != AssemblyStation.StationState.ASSEMBLING) {
+                    station.setState(AssemblyStation.StationState.ASSEMBLING);
+                    publishStation(StateEvent.EventType.STATION_STATE, shard);
+                    System.out.println("\n>>> [AUTO] " + station.getName() + " DEMARRE - Toutes les machines necessaires sont en marche!");
                     
-                    if (hasTypeA && hasTypeB && hasTypeC && hasTypeD) {
-                        if (assemblyStation.getState() != AssemblyStation.StationState.ASSEMBLING) {
-                            assemblyStation.setState(AssemblyStation.StationState.ASSEMBLING);
-                            System.out.println("\n>>> [AUTO] Station d'assemblage DEMARRE - Toutes les machines necessaires sont en marche!");
-                            
-                            // Démarrer le simulateur de production si pas déjà lancé
-                            startProductionSimulatorIfNeeded();
-                        }
-                    }
+                    // Démarrer les cycles de la station si pas déjà lancés
+                    startProductionCyclesIfNeeded(shard);
                 }
+            } finally {
+                shard.lock.unlock();
             }
         }
         
         /**
-         * Vérifier si on doit arrêter l'assemblage
+         * Vérifier si on doit arrêter l'assemblage d'une station
          */
-        private void checkAndStopAssembly() {
-            synchronized (machinesLock) {
-                synchronized (assemblyLock) {
-                    // Vérifier qu'on a au moins une machine en marche pour chaque type
-                    boolean hasTypeA = machines.values().stream()
-                        .anyMatch(m -> m.getType() == Machine.MachineType.TYPE_A && m.getState() == Machine.MachineState.RUNNING);
-                    boolean hasTypeB = machines.values().stream()
-                        .anyMatch(m -> m.getType() == Machine.MachineType.TYPE_B && m.getState() == Machine.MachineState.RUNNING);
-                    boolean hasTypeC = machines.values().stream()
-                        .anyMatch(m -> m.getType() == Machine.MachineType.TYPE_C && m.getState() == Machine.MachineState.RUNNING);
-                    boolean hasTypeD = machines.values().stream()
-                        .anyMatch(m -> m.getType() == Machine.MachineType.TYPE_D && m.getState() == Machine.MachineState.RUNNING);
-                    
-                    if (!hasTypeA || !hasTypeB || !hasTypeC || !hasTypeD) {
-                        if (assemblyStation.getState() == AssemblyStation.StationState.ASSEMBLING) {
-                            assemblyStation.setState(AssemblyStation.StationState.WAITING_PARTS);
-                            System.out.println("\n>>> [AUTO] Station d'assemblage EN ATTENTE - Il manque des machines en marche!");
-                        }
-                    }
+        private static void checkAndStopAssembly(StationShard shard) {
+            if (shard.index.allTypesRunning()) {
+                return;
+            }
+            shard.lock.lock();
+            try {
+                AssemblyStation station = shard.station;
+                if (!shard.index.allTypesRunning() && 
+                    station.getState() == AssemblyStation.StationState.ASSEMBLING) {
+                    station.setState(AssemblyStation.StationState.WAITING_PARTS);
+                    publishStation(StateEvent.EventType.STATION_STATE, shard);
+                    System.out.println("\n>>> [AUTO] " + station.getName() + " EN ATTENTE - Il manque des machines en marche!");
                 }
+            } finally {
+                shard.lock.unlock();
             }
         }
         
         /**
          * Mise à jour de statut
          */
-        private ProductionMessage handleStatusUpdate(Object payload) {
+        private static ProductionMessage handleStatusUpdate(Object payload) {
             if (payload instanceof Machine) {
-                synchronized (machinesLock) {
-                    Machine updated = (Machine) payload;
-                    machines.put(updated.getId(), updated);
-                    System.out.println("✓ Mise à jour: " + updated.getName() + " [État: " + updated.getState() + "]");
+                Machine updated = (Machine) payload;
+                if (updated.getState() == null) {
                     return new ProductionMessage(ProductionMessage.MessageType.ACK, 
-                            null, true, "Statut machine mis à jour");
+                            null, false, "État machine manquant");
+                }
+                // Nouvelle machine: rattachée à la station indiquée, sinon à la station principale
+                // (station fixée avant l'insertion: une transition concurrente trouve déjà sa station)
+                StationShard shard = shardsById.get(updated.getStationId());
+                if (shard == null) {
+                    shard = stationShards[0];
+                    updated.setStationId(shard.station.getId());
                 }
+                // Appliquer sur l'instance existante: les transitions concurrentes portent sur le même objet
+                Machine current = machines.putIfAbsent(updated.getId(), updated);
+                if (current != null) {
+                    transition(current, updated.getState());
+                    current.setProductionCount(updated.getProductionCount());
+                } else {
+                    current = updated;
+                    shard.add(current);
+                    if (current.getState() == Machine.MachineState.RUNNING) {
+                        // Déjà en marche à son arrivée: produit comme une machine démarrée
+                        cycleScheduler.machineStarted(current, shard);
+                    }
+                }
+                publishMachine(current);
+                System.out.println("✓ Mise à jour: " + current.getName() + " [État: " + current.getState() + "]");
+                return new ProductionMessage(ProductionMessage.MessageType.ACK, 
+                        null, true, "Statut machine mis à jour");
             }
             return new ProductionMessage(ProductionMessage.MessageType.ACK, 
                     null, false, "Type de mise à jour non supporté");
         }
         
+        private static ProductionMessage subscribedResponse() {
+            ProductionMessage snapshot = getProductionData();
+            snapshot.setResponseMessage("Abonnement actif");
+            return snapshot;
+        }
+        
         /**
          * Obtenir les données de production
-         * IMPORTANT: Crée de nouvelles instances pour éviter problèmes de sérialisation
+         * Dernier snapshot publié: aucun verrou ni attente, payload encodé une fois et partagé (WorldSnapshot)
+         */
+        private static ProductionMessage getProductionData() {
+            return new ProductionMessage(ProductionMessage.MessageType.PRODUCTION_DATA, 
+                    world.payload(), true, "Données récupérées");
+        }
+        
+        /**
+         * Page d'alertes correspondant à la requête, servie par les index (AlertIndex),
+         * complétée depuis le journal sur disque au-delà de la fenêtre en mémoire (--journal)
+         * Payload: "alerts" (copies, plus récentes d'abord) et "hasMore" (page suivante: query.nextPage)
+         */
+        private static ProductionMessage queryAlerts(AlertQuery query) {
+            if (query == null) {
+                query = new AlertQuery();
+            }
+            int limit = Math.max(1, Math.min(query.getLimit(), AlertQuery.MAX_LIMIT));
+            List<Alert> found = alertIndex.query(query, limit);
+            boolean hasMore = found.size() > limit;
+            
+            List<Alert> page = new ArrayList<>(Math.min(found.size(), limit));
+            for (int i = 0; i < found.size() && i < limit; i++) {
+                page.add(copyOf(found.get(i)));
+            }
+            Map<String, Object> data = new HashMap<>();
+            data.put("alerts", page);
+            data.put("hasMore", hasMore);
+            return new ProductionMessage(ProductionMessage.MessageType.ALERT_QUERY, 
+                    data, true, page.size() + " alerte(s) sur " + alertIndex.size() + " conservées");
+        }
+        
+        /**
+         * Points d'une série temporelle, bruts ou regroupés par intervalles de step ms
+         * Payload: "series", "step" (0 = bruts), "timestamps" et "values"; sans série, "series" liste les noms.
+         * Plus de TimeSeriesStore.MAX_POINTS points: intervalle élargi, "step" indique celui appliqué.
          */
-        private ProductionMessage getProductionData() {
+        private static ProductionMessage queryTimeSeries(TimeSeriesQuery query) throws IOException {
+            if (timeSeries == null) {
+                return new ProductionMessage(ProductionMessage.MessageType.TIME_SERIES, 
+                        null, false, "Séries temporelles désactivées (--timeseries=DIR)");
+            }
             Map<String, Object> data = new HashMap<>();
+            if (query == null || query.getSeries() == null) {
+                List<String> names = timeSeries.seriesNames();
+                data.put("series", names);
+                data.put("interval", timeSeries.getIntervalMs());
+                return new ProductionMessage(ProductionMessage.MessageType.TIME_SERIES, 
+                        data, true, names.size() + " série(s)");
+            }
+            long to = query.getTo() != 0 ? query.getTo() : System.currentTimeMillis();
+            TimeSeriesStore.Points points = timeSeries.read(query.getSeries(), query.getFrom(), to);
             
-            synchronized (machinesLock) {
-                // Créer une liste fraîche avec les derniers états
-                List<Machine> machineList = new ArrayList<>();
-                for (Machine m : machines.values()) {
-                    // Créer une nouvelle instance pour la sérialisation
-                    Machine copy = new Machine(m.getId(), m.getName(), m.getType());
-                    copy.setState(m.getState());
-                    copy.setProductionCount(m.getProductionCount());
-                    copy.setCurrentPart(m.getCurrentPart());
-                    machineList.add(copy);
+            long step = Math.max(0, query.getStep());
+            if (points.size > 0) {
+                long span = points.times[points.size - 1] - points.times[0] + 1;
+                if ((step == 0 && points.size > TimeSeriesStore.MAX_POINTS) 
+                        || (step > 0 && span / step >= TimeSeriesStore.MAX_POINTS)) {
+                    step = (span + TimeSeriesStore.MAX_POINTS - 2) / (TimeSeriesStore.MAX_POINTS - 1);
                 }
-                data.put("machines", machineList);
+            }
+            if (step > 0) {
+                points = TimeSeriesStore.downsample(points, step, query.getAggregation() != null 
+                        ? query.getAggregation() : TimeSeriesQuery.Aggregation.LAST);
+            }
+            List<Long> timestamps = new ArrayList<>(points.size);
+            List<Long> values = new ArrayList<>(points.size);
+            for (int i = 0; i < points.size; i++) {
+                timestamps.add(points.times[i]);
+                values.add(points.values[i]);
+            }
+            data.put("series", query.getSeries());
+            data.put("step", step);
+            data.put("timestamps", timestamps);
+            data.put("values", values);
+            return new ProductionMessage(ProductionMessage.MessageType.TIME_SERIES, 
+                    data, true, points.size + " point(s)");
+        }
+        
+        /**
+         * Données modifiées depuis la version sinceVersion (machines, zones, station, alertes)
+         * Coût proportionnel au nombre de changements, pas à la taille de la ligne ni de l'historique.
+         * Le client renvoie la "version" de la réponse à sa prochaine requête.
+         */
+        private static ProductionMessage getProductionDelta(long sinceVersion) {
+            long current = versions.current();
+            if (sinceVersion > current) {
+                // Version inconnue (redémarrage du serveur): état complet
+                return getProductionData();
             }
             
-            synchronized (assemblyLock) {
-                // Créer une copie fraîche de la station d'assemblage avec les vraies valeurs
-                AssemblyStation stationCopy = new AssemblyStation(assemblyStation.getId(), assemblyStation.getName());
-                stationCopy.setState(assemblyStation.getState());
-                stationCopy.setAssembledProducts(assemblyStation.getAssembledProducts());
-                
-                // Copier les zones de stockage avec leurs quantités actuelles
-                for (Map.Entry<String, StorageZone> entry : assemblyStation.getStorageZones().entrySet()) {
-                    StorageZone originalZone = entry.getValue();
-                    StorageZone zoneCopy = new StorageZone(originalZone.getPartType(), originalZone.getMaxCapacity());
-                    zoneCopy.setCurrentQuantity(originalZone.getCurrentQuantity());
-                    stationCopy.getStorageZones().put(entry.getKey(), zoneCopy);
+            Map<String, Object> data = new HashMap<>();
+            data.put("version", current);
+            data.put("sinceVersion", sinceVersion);
+            
+            List<Machine> machineList = new ArrayList<>();
+            for (Integer id : versions.machines.changedBetween(sinceVersion, current)) {
+                Machine m = machines.get(id);
+                if (m != null) {
+                    machineList.add(copyOf(m));
+                }
+            }
+            data.put("machines", machineList);
+            
+            List<StorageZone> zoneList = new ArrayList<>();
+            for (Integer zoneKey : versions.zones.changedBetween(sinceVersion, current)) {
+                StationShard shard = stationShards[zoneKey / StationShard.PARTS];
+                zoneList.add(shard.inventory.toZone(zoneKey % StationShard.PARTS));
+            }
+            data.put("storageZones", zoneList);
+            
+            List<AssemblyStation> stationList = new ArrayList<>();
+            for (Integer stationId : versions.stations.changedBetween(sinceVersion, current)) {
+                StationShard shard = shardsById.get(stationId);
+                shard.lock.lock();
+                try {
+                    AssemblyStation copy = copyOf(shard);
+                    stationList.add(copy);
+                    if (shard.slot == 0) {
+                        data.put("assemblyStation", copy);
+                    }
+                } finally {
+                    shard.lock.unlock();
                 }
-                
-                data.put("assemblyStation", stationCopy);
             }
+            data.put("assemblyStations", stationList);
             
-            synchronized (alerts) {
-                data.put("alerts", new ArrayList<>(alerts));
+            List<Alert> alertList = new ArrayList<>();
+            for (Integer id : versions.alerts.changedBetween(sinceVersion, current)) {
+                Alert alert = alertLog.get(id);
+                if (alert != null) {
+                    alertList.add(copyOf(alert));
+                }
             }
+            data.put("alerts", alertList);
             
             return new ProductionMessage(ProductionMessage.MessageType.PRODUCTION_DATA, 
-                    data, true, "Données récupérées");
+                    data, true, "Changements depuis la version " + sinceVersion);
         }
     }
     
     /**
-     * Simulateur de production (Thread)
+     * Cycle de production d'une machine en marche (CycleScheduler): une pièce déposée dans sa zone
+     * Compteurs atomiques, sans verrou: ni les autres machines ni les autres stations ne sont touchées
      */
-    static class ProductionSimulator implements Runnable {
-        private Random random = new Random();
+    private static void machineCycle(Machine m, StationShard shard) {
+        m.incrementProduction();
+        publishMachine(m);
         
-        @Override
-        public void run() {
+        PartInventory inventory = shard.inventory;
+        int part = m.getCurrentPart().ordinal();
+        if (inventory.tryAdd(part)) {
+            publishZone(shard, part);
+            if (verboseCycles) {
+                System.out.println("  [Production] " + m.getName() + " → " + inventory.partName(part) + " (" + inventory.quantity(part) + "/" + inventory.capacity(part) + ")");
+            }
+        }
+    }
+    
+    /**
+     * Cycle d'assemblage d'une station: le stock est consommé sans verrou, seule la station en prend un
+     */
+    private static void assemblyCycle(StationShard shard) {
+        PartInventory inventory = shard.inventory;
+        AssemblyStation station = shard.station;
+        if (station.getState() == AssemblyStation.StationState.ASSEMBLING 
+                && inventory.tryRemoveOneOfEach()) {
+            for (int part = 0; part < inventory.size(); part++) {
+                publishZone(shard, part);
+            }
+            shard.lock.lock();
             try {
-                Thread.sleep(5000); // Attendre le démarrage
-                
-                while (true) {
-                    Thread.sleep(3000 + random.nextInt(4000)); // 3-7 secondes
-                    
-                    // Simuler production et dépôt de pièces
-                    synchronized (machinesLock) {
-                        for (Machine m : machines.values()) {
-                            if (m.getState() == Machine.MachineState.RUNNING) {
-                                m.incrementProduction();
-                                machines.put(m.getId(), m); // Mise à jour dans la map
-                                
-                                synchronized (assemblyLock) {
-                                    StorageZone zone = assemblyStation.getStorageZone(m.getCurrentPart());
-                                    if (zone != null && !zone.isFull()) {
-                                        boolean added = zone.addPart();
-                                        if (added) {
-                                            System.out.println("  [Production] " + m.getName() + " → " + zone.getPartType() + " (" + zone.getCurrentQuantity() + "/" + zone.getMaxCapacity() + ")");
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    
-                    // Simuler assemblage
-                    synchronized (assemblyLock) {
-                        if (assemblyStation.getState() == AssemblyStation.StationState.ASSEMBLING) {
-                            boolean canAssemble = true;
-                            for (StorageZone zone : assemblyStation.getStorageZones().values()) {
-                                if (zone.getCurrentQuantity() == 0) {
-                                    canAssemble = false;
-                                    break;
-                                }
-                            }
-                            
-                            if (canAssemble) {
-                                for (StorageZone zone : assemblyStation.getStorageZones().values()) {
-                                    zone.removePart();
-                                }
-                                assemblyStation.incrementAssembled();
-                                System.out.println("  [Assemblage] Produit fini assemblé! Total: " + assemblyStation.getAssembledProducts());
-                            }
-                        }
-                    }
-                    
-                    // // Simuler panne aléatoire (1% de chance)
-                    // if (random.nextInt(100) < 1) {
-                    //     simulateFailure();
-                    // }
-                }
-            } catch (InterruptedException e) {
-                System.out.println("Simulateur arrêté");
+                station.incrementAssembled();
+                publishStation(StateEvent.EventType.ASSEMBLY_COMPLETED, shard);
+            } finally {
+                shard.lock.unlock();
             }
+            System.out.println("  [Assemblage] " + station.getName() + ": produit fini assemblé! Total: " + station.getAssembledProducts());
         }
-        
-    //     private void simulateFailure() {
-    //         synchronized (machinesLock) {
-    //             List<Machine> runningMachines = new ArrayList<>();
-    //             for (Machine m : machines.values()) {
-    //                 if (m.getState() == Machine.MachineState.RUNNING) {
-    //                     runningMachines.add(m);
-    //                 }
-    //             }
-                
-    //             if (!runningMachines.isEmpty()) {
-    //                 Machine failed = runningMachines.get(random.nextInt(runningMachines.size()));
-    //                 System.out.println("\n⚠ SIMULATION: Panne détectée sur " + failed.getName());
-    //             }
-    //         }
-    //     }
-    // }
+    }
 }
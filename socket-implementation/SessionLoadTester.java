@@ -0,0 +1,71 @@
+package socket.client;
+
+import common.*;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Outil de mesure: ouvre N sessions machine simultanées et les garde inactives
+ * Permet de comparer le nombre de sessions tenues par les différents modes serveur.
+ *
+ * Usage: java -cp bin socket.client.SessionLoadTester <sessions> [host] [port] [holdSeconds] [--legacy]
+ */
+public class SessionLoadTester {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java socket.client.SessionLoadTester <sessions> [host] [port] [holdSeconds] [--legacy]");
+            System.exit(1);
+        }
+        int sessions = Integer.parseInt(args[0]);
+        String host = args.length > 1 ? args[1] : "localhost";
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 9000;
+        int holdSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        boolean binary = !(args.length > 4 && args[4].equals("--legacy"));
+
+        List<MessageChannel> open = new ArrayList<>(sessions);
+        long start = System.nanoTime();
+        int failures = 0;
+
+        for (int i = 0; i < sessions; i++) {
+            MessageChannel channel = null;
+            try {
+                channel = MessageChannel.connect(host, port, binary);
+
+                // Une requête par session pour vérifier qu'elle est réellement servie
+                channel.send(new ProductionMessage(ProductionMessage.MessageType.PRODUCTION_DATA, null));
+                ProductionMessage response = channel.receive();
+                if (!response.isSuccess()) {
+                    throw new IOException(response.getResponseMessage());
+                }
+                open.add(channel);
+            } catch (Exception e) {
+                failures++;
+                if (channel != null) {
+                    channel.close();
+                }
+                System.err.println("[ERREUR] Session " + (i + 1) + ": " + e.getMessage());
+                if (failures > 10) {
+                    break;
+                }
+            }
+
+            if ((i + 1) % 1000 == 0) {
+                System.out.println("  " + (i + 1) + " sessions ouvertes...");
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("========================================");
+        System.out.println("  Sessions actives: " + open.size() + "/" + sessions);
+        System.out.println("  Echecs:           " + failures);
+        System.out.println("  Duree ouverture:  " + elapsedMs + " ms");
+        System.out.println("========================================");
+        System.out.println("Maintien des sessions pendant " + holdSeconds + " s...");
+
+        Thread.sleep(holdSeconds * 1000L);
+        for (MessageChannel c : open) {
+            c.close();
+        }
+    }
+}
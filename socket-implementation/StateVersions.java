@@ -0,0 +1,137 @@
+package socket.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version d'état globale, croissante, et journal des entités modifiées par version
+ *
+ * Chaque changement reçoit une nouvelle version. Quand current() vaut V, tous les changements
+ * de version <= V sont visibles dans les journaux. Un client qui a vu la version V ne demande
+ * ensuite que les changements > V.
+ *
+ * Les écrivains ne s'attendent pas entre eux: chacun signale son changement en cours dans une case
+ * (inFlight) avant de prendre sa version, et la libère une fois le changement enregistré. C'est le
+ * lecteur qui calcule la limite (watermark): la plus petite réservation en cours, ou la dernière
+ * version attribuée s'il n'y en a aucune.
+ */
+class StateVersions {
+    private static final long FREE = Long.MAX_VALUE;
+    private static final int STRIDE = 8;  // Une case par ligne de cache (8 longs): pas de faux partage
+
+    private final AtomicLong allocated = new AtomicLong();
+    // Case d'un écrivain en cours: version attribuée au moment de la réservation (la sienne sera plus grande)
+    private final AtomicLongArray inFlight;
+    private final int slots;
+    // Plus grande limite déjà calculée: current() ne recule jamais
+    private final AtomicLong watermark = new AtomicLong();
+
+    StateVersions() {
+        // Assez de cases pour les écrivains simultanés: ils ne restent dans touch que le temps d'un enregistrement
+        int wanted = Math.max(16, 2 * Runtime.getRuntime().availableProcessors());
+        slots = Integer.highestOneBit(wanted - 1) << 1;
+        inFlight = new AtomicLongArray(slots * STRIDE);
+        for (int i = 0; i < slots; i++) {
+            inFlight.set(i * STRIDE, FREE);
+        }
+    }
+
+    final ChangeLog<Integer> machines = new ChangeLog<>();
+    final ChangeLog<Integer> zones = new ChangeLog<>();  // Clé StationShard.zoneKey: station et pièce
+    final ChangeLog<Integer> stations = new ChangeLog<>();
+    final ChangeLog<Integer> alerts = new ChangeLog<>();
+
+    /**
+     * Dernière version dont tous les changements sont visibles
+     */
+    long current() {
+        long seen = watermark.get();
+        long limit = allocated.get();
+        if (limit == seen) {
+            return seen;  // Aucune version attribuée depuis: rien à parcourir
+        }
+        for (int i = 0; i < slots; i++) {
+            limit = Math.min(limit, inFlight.get(i * STRIDE));
+        }
+        if (limit <= seen) {
+            return seen;
+        }
+        // Une réservation lue en retard peut donner une limite plus basse qu'un lecteur précédent:
+        // toutes deux sont sûres, la plus grande est gardée
+        return watermark.accumulateAndGet(limit, Math::max);
+    }
+
+    /**
+     * Enregistrer un changement de l'entité key et retourner sa nouvelle version
+     */
+    <K> long touch(ChangeLog<K> log, K key) {
+        int slot = reserve();
+        try {
+            return log.record(key, allocated);
+        } finally {
+            inFlight.set(slot, FREE);
+        }
+    }
+
+    /**
+     * Réserver une case libre avant de prendre une version: la version à venir dépasse la valeur
+     * réservée, les lecteurs ne publient donc rien au-delà tant que la case est occupée
+     */
+    private int reserve() {
+        long floor = allocated.get();
+        int start = (int) Thread.currentThread().getId();
+        for (int i = 0; ; i++) {
+            int slot = ((start + i) & (slots - 1)) * STRIDE;
+            if (inFlight.get(slot) == FREE && inFlight.compareAndSet(slot, FREE, floor)) {
+                return slot;
+            }
+            if ((i & (slots - 1)) == slots - 1) {
+                Thread.yield();  // Toutes les cases prises (plus d'écrivains que de cases): rare
+            }
+        }
+    }
+
+    /**
+     * Journal des entités d'un type: dernière version par clé, et clés par version
+     */
+    static class ChangeLog<K> {
+        private final ConcurrentHashMap<K, Long> latest = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<Long, K> byVersion = new ConcurrentSkipListMap<>();
+
+        private long record(K key, AtomicLong allocated) {
+            long[] version = new long[1];
+            // compute() sérialise les changements d'une même clé sans bloquer les autres
+            latest.compute(key, (k, old) -> {
+                if (old != null) {
+                    byVersion.remove(old);
+                }
+                version[0] = allocated.incrementAndGet();
+                byVersion.put(version[0], k);
+                return version[0];
+            });
+            return version[0];
+        }
+
+        /**
+         * Oublier une entité qui n'existe plus (alerte sortie de la fenêtre): le journal reste borné
+         */
+        void forget(K key) {
+            latest.computeIfPresent(key, (k, version) -> {
+                byVersion.remove(version);
+                return null;
+            });
+        }
+
+        /**
+         * Clés modifiées dans l'intervalle ]since, upTo]
+         */
+        Collection<K> changedBetween(long since, long upTo) {
+            if (since >= upTo) {
+                return Collections.emptyList();
+            }
+            return new LinkedHashSet<>(byVersion.subMap(since, false, upTo, true).values());
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package socket.server;
+
+import common.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * Journal d'écriture anticipée (WAL) de l'état de la ligne, avec points de reprise
+ *
+ * Chaque changement publié (machine, zone, station) marque l'objet modifié. Toutes les commitMs,
+ * un thread d'écriture relit l'état courant des objets marqués et l'écrit en un seul lot suivi d'un
+ * seul fsync (validation groupée): un objet modifié plusieurs fois dans l'intervalle n'est écrit
+ * qu'une fois, et la valeur écrite, relue après le marquage, n'est jamais plus ancienne que le dernier
+ * changement. pendingBatch() donne la validation du lot qui contiendra les changements déjà marqués:
+ * une commande n'est acquittée qu'après (sauf --wal-async), et toutes celles d'un intervalle
+ * partagent le même fsync.
+ *
+ * Point de reprise (état complet) au démarrage, puis toutes les checkpointMs ou quand le WAL dépasse
+ * maxWalBytes: le WAL repart d'un nouveau fichier, les précédents sont supprimés. La reprise relit le
+ * point de reprise puis les lots des WAL suivants, jusqu'au premier lot incomplet: sa durée est bornée
+ * par la taille de l'état et maxWalBytes, pas par l'ancienneté de la ligne.
+ */
+class StateWal implements Closeable {
+    private static final byte RECORD_MACHINE = 1;
+    private static final byte RECORD_ZONE = 2;
+    private static final byte RECORD_STATION = 3;
+    private static final int FRAME_HEADER_BYTES = 8;  // Longueur + CRC32
+
+    private static final Machine.MachineState[] MACHINE_STATES = Machine.MachineState.values();
+    private static final Machine.PartType[] PARTS = Machine.PartType.values();
+    private static final AssemblyStation.StationState[] STATION_STATES = AssemblyStation.StationState.values();
+
+    private final File dir;
+    private final Map<Integer, Machine> machines;
+    private final StationShard[] shards;
+    private final Map<Integer, StationShard> shardsById;
+    private final long commitMs;
+    private final long checkpointMs;
+    private final long maxWalBytes;
+
+    // Objets modifiés depuis le dernier lot: identifiant machine, clé de zone, position de station
+    private final Set<Integer> dirtyMachines = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> dirtyZones = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> dirtyStations = ConcurrentHashMap.newKeySet();
+
+    // Validation du prochain lot: remplacée par le lot qui la prend, avant la lecture des marques
+    private final AtomicReference<CompletableFuture<Void>> nextBatch =
+            new AtomicReference<>(new CompletableFuture<>());
+
+    // Fichier WAL courant (thread d'écriture seulement, après start)
+    private FileChannel wal;
+    private long walSequence;
+    private long walBytes;
+    private long lastCheckpoint;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+
+    StateWal(File dir, Map<Integer, Machine> machines, StationShard[] shards,
+            Map<Integer, StationShard> shardsById, long commitMs, long checkpointMs, long maxWalBytes) throws IOException {
+        this.dir = dir;
+        this.machines = machines;
+        this.shards = shards;
+        this.shardsById = shardsById;
+        this.commitMs = commitMs;
+        this.checkpointMs = checkpointMs;
+        this.maxWalBytes = maxWalBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Répertoire du WAL impossible à créer: " + dir);
+        }
+    }
+
+    void machineChanged(Machine m) {
+        dirtyMachines.add(m.getId());
+    }
+
+    void zoneChanged(StationShard shard, int part) {
+        dirtyZones.add(shard.zoneKey(part));
+    }
+
+    void stationChanged(StationShard shard) {
+        dirtyStations.add(shard.slot);
+    }
+
+    /**
+     * Validation (write + fsync) d'un lot qui contient tous les changements marqués avant l'appel:
+     * le lot en préparation, ou le suivant si le lot en préparation vient d'être pris
+     */
+    CompletableFuture<Void> pendingBatch() {
+        return nextBatch.get();
+    }
+
+    /**
+     * Rétablir l'état d'avant l'arrêt (avant toute connexion et tout simulateur)
+     * @return nombre d'enregistrements appliqués
+     */
+    int recover() throws IOException {
+        int applied = 0;
+        long fromSequence = 0;
+        File checkpoint = new File(dir, "checkpoint.dat");
+        if (checkpoint.isFile()) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(checkpoint.toPath()));
+            fromSequence = data.getLong();
+            applied += replay(data);
+        }
+        for (long sequence : walSequences()) {
+            walSequence = Math.max(walSequence, sequence);
+            if (sequence >= fromSequence) {
+                applied += replay(ByteBuffer.wrap(Files.readAllBytes(walFile(sequence).toPath())));
+            }
+        }
+        walSequence = Math.max(walSequence, fromSequence);
+        return applied;
+    }
+
+    /**
+     * Premier point de reprise (état rétabli), puis démarrage du thread d'écriture
+     */
+    void start() throws IOException {
+        checkpoint();
+        running = true;
+        writer = new Thread(this::run, "wal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Dernier lot écrit et synchronisé (arrêt du serveur)
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writer != null) {
+            // Pas d'interruption: elle fermerait le FileChannel pendant une écriture
+            try {
+                writer.join(commitMs + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (wal != null) {
+                commit();
+                wal.close();
+            }
+        }
+    }
+
+    long getCommits() {
+        return commits.get();
+    }
+
+    long getRecords() {
+        return recordsWritten.get();
+    }
+
+    long getCheckpoints() {
+        return checkpoints.get();
+    }
+
+    // ------------------------------------------------------------------
+    // Écriture
+    // ------------------------------------------------------------------
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(commitMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                synchronized (this) {
+                    commit();
+                    if (System.currentTimeMillis() - lastCheckpoint >= checkpointMs || walBytes >= maxWalBytes) {
+                        checkpoint();
+                    }
+                }
+            } catch (IOException e) {
+                // Disque plein ou retiré: l'état reste en mémoire, point de reprise complet au prochain lot
+                System.err.println("[ERREUR] Écriture du WAL: " + e.getMessage());
+                lastCheckpoint = 0;
+            }
+        }
+    }
+
+    /**
+     * Un lot: état courant de chaque objet marqué, un write et un fsync
+     */
+    private void commit() throws IOException {
+        // Pris avant la lecture des marques: un changement marqué avant pendingBatch() est dans ce lot
+        CompletableFuture<Void> batch = nextBatch.getAndSet(new CompletableFuture<>());
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            int count = writeDirty(out);
+            if (count > 0) {
+                ByteBuffer frame = frame(bytes.toByteArray());
+                walBytes += frame.remaining();
+                while (frame.hasRemaining()) {
+                    wal.write(frame);
+                }
+                wal.force(false);
+                commits.incrementAndGet();
+                recordsWritten.addAndGet(count);
+            }
+        } catch (IOException | RuntimeException e) {
+            batch.completeExceptionally(e);
+            throw e;
+        }
+        batch.complete(null);
+    }
+
+    private int writeDirty(DataOutputStream out) throws IOException {
+        int count = 0;
+        // Retiré avant la lecture: un changement pendant la lecture marque à nouveau l'objet
+        for (Iterator<Integer> it = dirtyMachines.iterator(); it.hasNext(); ) {
+            Machine m = machines.get(it.next());
+            it.remove();
+            if (m != null) {
+                writeMachine(out, m);
+                count++;
+            }
+        }
+        for (Iterator<Integer> it = dirtyZones.iterator(); it.hasNext(); ) {
+            int key = it.next();
+            it.remove();
+            writeZone(out, shards[key / StationShard.PARTS], key % StationShard.PARTS);
+            count++;
+        }
+        for (Iterator<Integer> it = dirtyStations.iterator(); it.hasNext(); ) {
+            int slot = it.next();
+            it.remove();
+            writeStation(out, shards[slot]);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * État complet dans checkpoint.dat (écrit à côté puis renommé), WAL vidé
+     */
+    private void checkpoint() throws IOException {
+        long sequence = walSequence + 1;
+        FileChannel next = FileChannel.open(walFile(sequence).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (wal != null) {
+            // Lot en attente dans l'ancien WAL: il reste valable jusqu'au renommage du point de reprise
+            commit();
+            wal.close();
+        }
+        wal = next;
+        walSequence = sequence;
+        walBytes = 0;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Machine m : machines.values()) {
+            writeMachine(out, m);
+        }
+        for (StationShard shard : shards) {
+            for (int part = 0; part < StationShard.PARTS; part++) {
+                writeZone(out, shard, part);
+            }
+            writeStation(out, shard);
+        }
+        ByteBuffer frame = frame(bytes.toByteArray());
+
+        File tmp = new File(dir, "checkpoint.tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(8).putLong(sequence);
+            header.flip();
+            channel.write(new ByteBuffer[] { header, frame });
+            channel.force(true);
+        }
+        Files.move(tmp.toPath(), new File(dir, "checkpoint.dat").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (long old : walSequences()) {
+            if (old < sequence) {
+                Files.deleteIfExists(walFile(old).toPath());
+            }
+        }
+        lastCheckpoint = System.currentTimeMillis();
+        checkpoints.incrementAndGet();
+    }
+
+    private static void writeMachine(DataOutputStream out, Machine m) throws IOException {
+        out.writeByte(RECORD_MACHINE);
+        out.writeInt(m.getId());
+        out.writeByte(m.getState().ordinal());
+        out.writeInt(m.getProductionCount());
+        out.writeByte(m.getCurrentPart() != null ? m.getCurrentPart().ordinal() : 0xFF);
+    }
+
+    private static void writeZone(DataOutputStream out, StationShard shard, int part) throws IOException {
+        out.writeByte(RECORD_ZONE);
+        out.writeInt(shard.station.getId());
+        out.writeByte(part);
+        out.writeInt(shard.inventory.quantity(part));
+    }
+
+    private static void writeStation(DataOutputStream out, StationShard shard) throws IOException {
+        AssemblyStation.StationState state;
+        int assembled;
+        shard.lock.lock();
+        try {
+            state = shard.station.getState();
+            assembled = shard.station.getAssembledProducts();
+        } finally {
+            shard.lock.unlock();
+        }
+        out.writeByte(RECORD_STATION);
+        out.writeInt(shard.station.getId());
+        out.writeByte(state.ordinal());
+        out.writeInt(assembled);
+    }
+
+    private static ByteBuffer frame(byte[] records) {
+        CRC32 crc = new CRC32();
+        crc.update(records);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + records.length);
+        frame.putInt(records.length).putInt((int) crc.getValue()).put(records);
+        frame.flip();
+        return frame;
+    }
+
+    // ------------------------------------------------------------------
+    // Reprise
+    // ------------------------------------------------------------------
+
+    /**
+     * Appliquer les lots valides de data (arrêt au premier lot tronqué ou corrompu)
+     */
+    private int replay(ByteBuffer data) {
+        int applied = 0;
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= FRAME_HEADER_BYTES) {
+            int length = data.getInt();
+            int expected = data.getInt();
+            if (length < 0 || length > data.remaining()) {
+                break;
+            }
+            ByteBuffer records = data.slice();
+            records.limit(length);
+            crc.reset();
+            crc.update(records.duplicate());
+            if ((int) crc.getValue() != expected) {
+                break;
+            }
+            data.position(data.position() + length);
+            while (records.hasRemaining()) {
+                apply(records);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Appliquer un enregistrement; machine ou station absente de la topologie actuelle: ignoré
+     */
+    private void apply(ByteBuffer r) {
+        byte kind = r.get();
+        switch (kind) {
+            case RECORD_MACHINE: {
+                Machine m = machines.get(r.getInt());
+                Machine.MachineState state = MACHINE_STATES[r.get()];
+                int production = r.getInt();
+                int part = r.get() & 0xFF;
+                if (m != null) {
+                    ProductionControlServer.transition(m, state);
+                    m.setProductionCount(production);
+                    m.setCurrentPart(part < PARTS.length ? PARTS[part] : null);
+                }
+                break;
+            }
+            case RECORD_ZONE: {
+                StationShard shard = shardsById.get(r.getInt());
+                int part = r.get();
+                int quantity = r.getInt();
+                if (shard != null) {
+                    shard.inventory.restore(part, quantity);
+                }
+                break;
+            }
+            case RECORD_STATION: {
+                StationShard shard = shardsById.get(r.getInt());
+                AssemblyStation.StationState state = STATION_STATES[r.get()];
+                int assembled = r.getInt();
+                if (shard != null) {
+                    shard.station.setState(state);
+                    shard.station.setAssembledProducts(assembled);
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Enregistrement WAL inconnu: " + kind);
+        }
+    }
+
+    private File walFile(long sequence) {
+        return new File(dir, String.format("wal-%016d.log", sequence));
+    }
+
+    private List<Long> walSequences() {
+        List<Long> sequences = new ArrayList<>();
+        File[] files = dir.listFiles((d, name) -> name.startsWith("wal-") && name.endsWith(".log"));
+        for (File file : files) {
+            String name = file.getName();
+            sequences.add(Long.parseLong(name.substring("wal-".length(), name.length() - ".log".length())));
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+}
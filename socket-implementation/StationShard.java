@@ -0,0 +1,52 @@
+package socket.server;
+
+import common.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * État propre à une station d'assemblage et aux machines qui l'alimentent
+ *
+ * Chaque station a son stock, son index de machines, son verrou et ses cycles de production:
+ * démarrer, arrêter ou remplacer une machine ne touche que la station à laquelle elle livre,
+ * deux stations ne partagent ni verrou ni compteur.
+ */
+class StationShard {
+    static final int PARTS = Machine.PartType.values().length;
+
+    final int slot;  // Position dans le snapshot (ordre de déclaration dans la topologie)
+    final AssemblyStation station;
+    final PartInventory inventory;
+    final MachineIndex index = new MachineIndex();
+    final Queue<Machine> machines = new ConcurrentLinkedQueue<>();
+
+    // Verrou de la station: état d'assemblage et compteur de produits
+    final ReentrantLock lock = new ReentrantLock();
+
+    // Cycles de la station lancés (CycleScheduler.startStation, au premier assemblage, sous lock):
+    // une machine démarrée avant ne produit pas encore
+    volatile boolean cyclesStarted;
+
+    StationShard(int slot, AssemblyStation station) {
+        this.slot = slot;
+        this.station = station;
+        this.inventory = new PartInventory(station);
+    }
+
+    /**
+     * Rattacher une machine à la station et l'indexer
+     */
+    void add(Machine m) {
+        m.setStationId(station.getId());
+        machines.offer(m);
+        index.add(m);
+    }
+
+    /**
+     * Clé de zone dans le journal des versions (station et pièce en un seul entier)
+     */
+    int zoneKey(int part) {
+        return slot * PARTS + part;
+    }
+}
@@ -0,0 +1,101 @@
+package socket.server;
+
+import common.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Outil de mesure: séries temporelles (TimeSeriesStore) d'une grande ligne
+ * Relève M machines toutes les secondes pendant N secondes simulées (compteurs qui avancent
+ * au hasard), rouvre le stockage comme au redémarrage, puis lit une heure de points bruts
+ * et une journée regroupée par minute.
+ *
+ * Usage: java -cp bin socket.server.TimeSeriesBenchmark [machines] [secondes] [répertoire]
+ * Sans répertoire, un répertoire temporaire supprimé à la fin.
+ */
+public class TimeSeriesBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int machineCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 86_400;
+        boolean temporary = args.length < 3;
+        File dir = temporary ? Files.createTempDirectory("timeseries").toFile() : new File(args[2]);
+
+        PlantTopology.Station config = PlantTopology.defaultTopology().getStations().get(0);
+        StationShard shard = new StationShard(0, new AssemblyStation(config.getId(), config.getName(),
+                config.createStorageZones()));
+        Map<Integer, Machine> machines = new HashMap<>();
+        Machine.MachineType[] types = Machine.MachineType.values();
+        for (int i = 1; i <= machineCount; i++) {
+            Machine m = new Machine(i, "Machine-M" + i, types[i % types.length]);
+            machines.put(i, m);
+            shard.add(m);
+        }
+        StationShard[] shards = { shard };
+
+        long retention = 7L * 24 * 3600 * 1000;
+        long base = System.currentTimeMillis() - seconds * 1000L;
+        Random random = new Random(42);
+        TimeSeriesStore store = new TimeSeriesStore(dir, machines, shards, 1000, retention, 600);
+        long start = System.nanoTime();
+        for (int s = 0; s < seconds; s++) {
+            for (Machine m : machines.values()) {
+                if (random.nextInt(4) == 0) {
+                    m.setProductionCount(m.getProductionCount() + 1);
+                }
+            }
+            store.sample(base + s * 1000L + random.nextInt(3));
+        }
+        store.close();
+        long sampleNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        store = new TimeSeriesStore(dir, machines, shards, 1000, retention, 600);
+        long reopenNanos = System.nanoTime() - start;
+
+        long to = base + seconds * 1000L;
+        // Première lecture (pages du fichier non chargées), puis moyenne sur d'autres séries
+        TimeSeriesStore.Points hour = null;
+        TimeSeriesStore.Points day = null;
+        long[] hourNanos = new long[2];
+        long[] dayNanos = new long[2];
+        for (int i = 0; i < 101; i++) {
+            String series = TimeSeriesQuery.machineSeries(1 + (machineCount / 2 + i * 7) % machineCount);
+            start = System.nanoTime();
+            hour = store.read(series, to - 3600_000, to);
+            hourNanos[Math.min(i, 1)] += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            day = TimeSeriesStore.downsample(store.read(series, to - 86_400_000, to),
+                    60_000, TimeSeriesQuery.Aggregation.DELTA);
+            dayNanos[Math.min(i, 1)] += System.nanoTime() - start;
+        }
+        int chunks = store.getChunkCount();
+        store.close();
+
+        long bytes = 0;
+        for (File file : dir.listFiles()) {
+            bytes += file.length();
+        }
+        long points = (long) seconds * (machineCount + 1 + StationShard.PARTS);
+        System.out.println("=== Séries temporelles: " + machineCount + " machines, " + seconds + " relevés, "
+                + chunks + " blocs, " + bytes / (1024 * 1024) + " Mo ===");
+        System.out.printf("Relevés:                    %8.1f ms (%.1f µs/relevé, %.2f octets/point)%n",
+                sampleNanos / 1e6, sampleNanos / 1e3 / seconds, (double) bytes / points);
+        System.out.printf("Réouverture:                %8.1f ms%n", reopenNanos / 1e6);
+        System.out.printf("Une heure de points bruts:  %8.2f ms, puis %.2f ms (%d points)%n",
+                hourNanos[0] / 1e6, hourNanos[1] / 1e6 / 100, hour.size);
+        System.out.printf("Une journée par minute:     %8.2f ms, puis %.2f ms (%d points)%n",
+                dayNanos[0] / 1e6, dayNanos[1] / 1e6 / 100, day.size);
+
+        if (temporary) {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package socket.server;
+
+import common.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Séries temporelles de la ligne: compteurs de production et niveaux de stock échantillonnés
+ *
+ * Toutes les intervalMs, un thread relève la production de chaque machine, les produits assemblés
+ * de chaque station et le niveau de chaque zone. Stockage en colonnes par bloc de samplesPerChunk
+ * échantillons: une colonne de dates commune (écart à l'intervalle nominal), puis une colonne par série
+ * (écart à la valeur précédente), en varint zigzag: un compteur qui avance d'une pièce coûte un octet
+ * par échantillon, une date régulière aussi.
+ *
+ * Le bloc courant est en mémoire; plein, il est écrit dans un fichier (écrit à côté puis renommé).
+ * Une requête ne lit et ne décode que la colonne de la série demandée, dans les blocs qui recouvrent
+ * l'intervalle. Les blocs plus anciens que retentionMs sont supprimés; aucun fichier n'est projeté
+ * en mémoire ni gardé ouvert, la suppression n'attend donc pas le GC (Windows refuse de supprimer
+ * un fichier projeté). Une suppression refusée est retentée à l'expiration suivante.
+ */
+class TimeSeriesStore implements Closeable {
+    static final int MAX_POINTS = 10_000;  // Points par réponse; au-delà, regroupement automatique
+
+    private static final int MAGIC = 0x54534331;  // "TSC1"
+    private static final Machine.PartType[] PARTS = Machine.PartType.values();
+
+    private final File dir;
+    private final Map<Integer, Machine> machines;
+    private final StationShard[] shards;
+    private final long intervalMs;
+    private final long retentionMs;
+    private final int samplesPerChunk;
+
+    // Blocs écrits, par date du premier échantillon; bloc courant (accès sous le verrou de l'objet)
+    private final TreeMap<Long, Chunk> sealed = new TreeMap<>();
+    private ActiveChunk active;
+    private final List<File> undeleted = new ArrayList<>();  // Blocs expirés à supprimer à nouveau
+
+    private Thread sampler;
+    private volatile boolean running;
+    private boolean closed;
+    private long lastSampleTime;
+
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong chunksWritten = new AtomicLong();
+    private final AtomicLong chunksExpired = new AtomicLong();
+
+    TimeSeriesStore(File dir, Map<Integer, Machine> machines, StationShard[] shards,
+            long intervalMs, long retentionMs, int samplesPerChunk) throws IOException {
+        this.dir = dir;
+        this.machines = machines;
+        this.shards = shards;
+        this.intervalMs = intervalMs;
+        this.retentionMs = retentionMs;
+        this.samplesPerChunk = samplesPerChunk;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Répertoire des séries temporelles impossible à créer: " + dir);
+        }
+        File[] files = dir.listFiles((d, name) -> name.startsWith("ts-") && name.endsWith(".chunk"));
+        for (File file : files) {
+            try {
+                Chunk chunk = Chunk.open(file);
+                sealed.put(chunk.firstTime, chunk);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[AVERTISSEMENT] Bloc de séries temporelles illisible ignoré: " + file.getName());
+            }
+        }
+        expire(System.currentTimeMillis());
+    }
+
+    /**
+     * Démarrage du thread d'échantillonnage
+     */
+    void start() {
+        running = true;
+        sampler = new Thread(this::run, "timeseries");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Bloc courant écrit sur disque (arrêt du serveur), même incomplet
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            running = false;
+            closed = true;
+            seal();
+        }
+        // Après l'écriture: une interruption pendant l'écriture fermerait le FileChannel
+        if (sampler != null) {
+            sampler.interrupt();
+        }
+    }
+
+    /**
+     * Relevé de toutes les séries à la date time
+     */
+    synchronized void sample(long time) throws IOException {
+        if (closed || time <= lastSampleTime) {
+            return;  // Fermé, ou même milliseconde que le relevé précédent
+        }
+        lastSampleTime = time;
+        if (active == null) {
+            active = new ActiveChunk(intervalMs);
+        }
+        active.appendTime(time);
+        for (Machine m : machines.values()) {
+            active.append(TimeSeriesQuery.machineSeries(m.getId()), m.getProductionCount());
+        }
+        for (StationShard shard : shards) {
+            int stationId = shard.station.getId();
+            active.append(TimeSeriesQuery.stationSeries(stationId), shard.station.getAssembledProducts());
+            for (int part = 0; part < StationShard.PARTS; part++) {
+                active.append(TimeSeriesQuery.zoneSeries(stationId, PARTS[part]), shard.inventory.quantity(part));
+            }
+        }
+        // Série absente de ce relevé (machine retirée): dernière valeur répétée, colonnes alignées
+        active.fillMissing();
+        samples.incrementAndGet();
+        if (active.samples >= samplesPerChunk) {
+            seal();
+            expire(time);
+        }
+    }
+
+    /**
+     * Points bruts (date, valeur) d'une série entre from et to inclus, dans l'ordre des dates
+     */
+    synchronized Points read(String series, long from, long to) throws IOException {
+        Points points = new Points();
+        Long start = sealed.floorKey(from);
+        for (Chunk chunk : sealed.tailMap(start != null ? start : from, true).values()) {
+            if (chunk.firstTime > to) {
+                break;
+            }
+            if (chunk.lastTime >= from) {
+                chunk.read(series, from, to, points);
+            }
+        }
+        if (active != null && active.samples > 0) {
+            active.read(series, from, to, points);
+        }
+        return points;
+    }
+
+    /**
+     * Noms des séries connues (bloc courant et blocs conservés)
+     */
+    synchronized List<String> seriesNames() {
+        Set<String> names = new TreeSet<>();
+        for (Chunk chunk : sealed.values()) {
+            names.addAll(chunk.columns.keySet());
+        }
+        if (active != null) {
+            names.addAll(active.columns.keySet());
+        }
+        return new ArrayList<>(names);
+    }
+
+    long getIntervalMs() {
+        return intervalMs;
+    }
+
+    long getSamples() {
+        return samples.get();
+    }
+
+    long getChunksWritten() {
+        return chunksWritten.get();
+    }
+
+    long getChunksExpired() {
+        return chunksExpired.get();
+    }
+
+    synchronized int getChunkCount() {
+        return sealed.size() + (active != null && active.samples > 0 ? 1 : 0);
+    }
+
+    // ------------------------------------------------------------------
+    // Regroupement
+    // ------------------------------------------------------------------
+
+    /**
+     * Points regroupés par intervalles de step ms alignés sur l'époque (date = début de l'intervalle)
+     * DELTA: somme des augmentations du compteur, une baisse (remise à zéro) compte pour la nouvelle valeur.
+     */
+    static Points downsample(Points raw, long step, TimeSeriesQuery.Aggregation aggregation) {
+        Points result = new Points();
+        int i = 0;
+        while (i < raw.size) {
+            long bucket = Math.floorDiv(raw.times[i], step) * step;
+            long last = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE, sum = 0, delta = 0;
+            int count = 0;
+            for (; i < raw.size && raw.times[i] < bucket + step; i++) {
+                long value = raw.values[i];
+                last = value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+                count++;
+                if (i > 0) {
+                    long previous = raw.values[i - 1];
+                    delta += value >= previous ? value - previous : value;
+                }
+            }
+            long value;
+            switch (aggregation) {
+                case MIN:
+                    value = min;
+                    break;
+                case MAX:
+                    value = max;
+                    break;
+                case AVG:
+                    value = Math.round((double) sum / count);
+                    break;
+                case DELTA:
+                    value = delta;
+                    break;
+                default:
+                    value = last;
+                    break;
+            }
+            result.add(bucket, value);
+        }
+        return result;
+    }
+
+    // ------------------------------------------------------------------
+    // Blocs
+    // ------------------------------------------------------------------
+
+    private void run() {
+        long next = System.currentTimeMillis();
+        while (running) {
+            next += intervalMs;
+            long delay = next - System.currentTimeMillis();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                next = System.currentTimeMillis();  // Retard (GC, disque): pas de rattrapage en rafale
+            }
+            try {
+                sample(System.currentTimeMillis());
+            } catch (IOException e) {
+                // Bloc conservé en mémoire, nouvel essai au prochain bloc plein
+                System.err.println("[ERREUR] Écriture des séries temporelles: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Écrire le bloc courant dans son fichier et le remplacer par un bloc scellé, relu ensuite par lectures
+     * positionnelles du fichier (seuls les dates et le répertoire des colonnes restent en mémoire)
+     */
+    private void seal() throws IOException {
+        if (active == null || active.samples == 0) {
+            return;
+        }
+        File file = new File(dir, String.format("ts-%016d.chunk", active.firstTime));
+        File tmp = new File(dir, file.getName() + ".tmp");
+        ByteBuffer data = active.encode();
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        data.rewind();
+        Chunk chunk = new Chunk(file, data);  // Répertoire relu depuis l'encodage, sans relire le fichier
+        sealed.put(chunk.firstTime, chunk);
+        active = null;
+        chunksWritten.incrementAndGet();
+    }
+
+    private void expire(long now) {
+        // Suppressions refusées la dernière fois (fichier ouvert par un autre processus: antivirus, sauvegarde)
+        undeleted.removeIf(file -> file.delete() || !file.exists());
+        for (Iterator<Chunk> it = sealed.values().iterator(); it.hasNext(); ) {
+            Chunk chunk = it.next();
+            if (chunk.lastTime >= now - retentionMs) {
+                break;
+            }
+            it.remove();
+            if (!chunk.file.delete() && chunk.file.exists()) {
+                System.err.println("[AVERTISSEMENT] Bloc expiré non supprimé, nouvel essai au prochain bloc: "
+                        + chunk.file.getName());
+                undeleted.add(chunk.file);
+            }
+            chunksExpired.incrementAndGet();
+        }
+    }
+
+    /**
+     * Bloc en cours de remplissage: colonnes extensibles, une par série
+     */
+    private static final class ActiveChunk {
+        final long intervalMs;
+        final Column times = new Column(0);
+        final Map<String, Column> columns = new LinkedHashMap<>();
+        long[] decodedTimes = new long[64];
+        long firstTime;
+        long lastTime;
+        int samples;
+
+        ActiveChunk(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        void appendTime(long time) {
+            // Première date telle quelle, puis écart à l'intervalle nominal (0 si régulier)
+            times.put(samples == 0 ? time : time - lastTime - intervalMs);
+            if (samples == 0) {
+                firstTime = time;
+            }
+            if (samples == decodedTimes.length) {
+                decodedTimes = Arrays.copyOf(decodedTimes, samples * 2);
+            }
+            decodedTimes[samples++] = time;
+            lastTime = time;
+        }
+
+        void append(String series, long value) {
+            Column column = columns.get(series);
+            if (column == null) {
+                column = new Column(samples - 1);
+                columns.put(series, column);
+            }
+            column.append(value);
+        }
+
+        void fillMissing() {
+            for (Column column : columns.values()) {
+                if (column.start + column.count < samples) {
+                    column.append(column.last);
+                }
+            }
+        }
+
+        void read(String series, long from, long to, Points points) {
+            Column column = columns.get(series);
+            if (column != null) {
+                decode(decodedTimes, samples, ByteBuffer.wrap(column.bytes, 0, column.length), column.start,
+                        from, to, points);
+            }
+        }
+
+        /**
+         * En-tête, colonne des dates, puis chaque série: nom, premier échantillon, colonne
+         */
+        ByteBuffer encode() {
+            int size = 4 + 8 + 4 + 4 + 4 + times.length;
+            List<byte[]> names = new ArrayList<>(columns.size());
+            for (Map.Entry<String, Column> e : columns.entrySet()) {
+                byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                names.add(name);
+                size += 2 + name.length + 4 + 4 + e.getValue().length;
+            }
+            ByteBuffer data = ByteBuffer.allocate(size);
+            data.putInt(MAGIC).putLong(intervalMs).putInt(samples).putInt(columns.size());
+            data.putInt(times.length).put(times.bytes, 0, times.length);
+            int i = 0;
+            for (Column column : columns.values()) {
+                byte[] name = names.get(i++);
+                data.putShort((short) name.length).put(name);
+                data.putInt(column.start).putInt(column.length).put(column.bytes, 0, column.length);
+            }
+            data.flip();
+            return data;
+        }
+    }
+
+    /**
+     * Colonne compressée: première valeur puis écarts successifs, en varint zigzag
+     */
+    private static final class Column {
+        final int start;  // Échantillon du bloc où la série apparaît
+        byte[] bytes = new byte[16];
+        int length;
+        int count;
+        long last;
+
+        Column(int start) {
+            this.start = start;
+        }
+
+        void append(long value) {
+            put(count == 0 ? value : value - last);
+            last = value;
+            count++;
+        }
+
+        void put(long value) {
+            long v = (value << 1) ^ (value >> 63);
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((v & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[length++] = (byte) v;
+        }
+    }
+
+    /**
+     * Bloc écrit: dates et répertoire des colonnes relus à l'ouverture, colonnes lues à la demande
+     * (lecture positionnelle, fichier fermé aussitôt)
+     */
+    private static final class Chunk {
+        final File file;
+        final int samples;
+        final long firstTime;
+        final long lastTime;
+        final long[] times;  // Colonne des dates décodée à l'ouverture, commune à toutes les séries
+        final Map<String, int[]> columns;  // nom -> {premier échantillon, position, longueur}
+
+        private Chunk(File file, ByteBuffer data) {
+            this.file = file;
+            if (data.getInt() != MAGIC) {
+                throw new IllegalStateException("En-tête invalide");
+            }
+            long intervalMs = data.getLong();
+            samples = data.getInt();
+            int seriesCount = data.getInt();
+            int timesLength = data.getInt();
+            int timesOffset = data.position();
+            data.position(timesOffset + timesLength);
+            columns = new HashMap<>(seriesCount * 4 / 3 + 1);
+            for (int i = 0; i < seriesCount; i++) {
+                byte[] name = new byte[data.getShort()];
+                data.get(name);
+                int start = data.getInt();
+                int length = data.getInt();
+                columns.put(new String(name, StandardCharsets.UTF_8), new int[] { start, data.position(), length });
+                data.position(data.position() + length);
+            }
+            ByteBuffer encoded = data.duplicate();
+            encoded.position(timesOffset).limit(timesOffset + timesLength);
+            times = new long[samples];
+            for (int i = 0; i < samples; i++) {
+                long v = readVarlong(encoded);
+                times[i] = i == 0 ? v : times[i - 1] + intervalMs + v;
+            }
+            firstTime = times[0];
+            lastTime = times[samples - 1];
+        }
+
+        static Chunk open(File file) throws IOException {
+            return new Chunk(file, ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        }
+
+        void read(String series, long from, long to, Points points) throws IOException {
+            int[] column = columns.get(series);
+            if (column == null) {
+                return;
+            }
+            ByteBuffer values = ByteBuffer.allocate(column[2]);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while (values.hasRemaining()) {
+                    if (channel.read(values, column[1] + values.position()) < 0) {
+                        throw new EOFException("Bloc tronqué: " + file.getName());
+                    }
+                }
+            }
+            values.flip();
+            decode(times, samples, values, column[0], from, to, points);
+        }
+    }
+
+    /**
+     * Décoder une colonne (à partir de son premier échantillon), points entre from et to
+     */
+    private static void decode(long[] times, int samples, ByteBuffer values, int start,
+            long from, long to, Points points) {
+        long value = 0;
+        for (int i = start; i < samples && values.hasRemaining() && times[i] <= to; i++) {
+            long v = readVarlong(values);
+            value = i == start ? v : value + v;
+            if (times[i] >= from) {
+                points.add(times[i], value);
+            }
+        }
+    }
+
+    private static long readVarlong(ByteBuffer r) {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = r.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (result >>> 1) ^ -(result & 1);
+            }
+        }
+        throw new IllegalStateException("Varint invalide");
+    }
+
+    /**
+     * Points (date, valeur) en tableaux extensibles
+     */
+    static final class Points {
+        long[] times = new long[64];
+        long[] values = new long[64];
+        int size;
+
+        void add(long time, long value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package socket.server;
+
+import common.*;
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Outil de mesure: démarrage et empreinte mémoire du serveur pour une grande topologie
+ * Mesure le chargement de la topologie, l'initialisation de la ligne, la mémoire retenue,
+ * puis le coût des requêtes courantes (état complet, commande, delta) sur cette ligne, dont l'état
+ * complet lu juste après une commande et le délai avant que le snapshot publié la contienne.
+ *
+ * Usage: java -cp bin socket.server.TopologyBenchmark [machines] [fichier-topologie]
+ * Sans fichier, une station de zones de 20 et autant de machines de chaque type.
+ */
+public class TopologyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int machineCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String file = args.length > 1 ? args[1] : null;
+
+        // Journal du serveur (une ligne par commande) écarté pendant les mesures
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        long heapBefore = usedHeap();
+
+        long start = System.nanoTime();
+        PlantTopology topology = file != null ? PlantTopology.load(new File(file)) : generate(machineCount);
+        long parseNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ProductionControlServer.initializeProductionLine(topology);
+        long initNanos = System.nanoTime() - start;
+
+        long retained = usedHeap() - heapBefore;
+        int count = topology.getMachineCount();
+
+        // Premier état complet: encodé une fois, puis partagé par toutes les lectures
+        start = System.nanoTime();
+        ProductionMessage full = request(ProductionMessage.MessageType.PRODUCTION_DATA, null);
+        long firstFullNanos = System.nanoTime() - start;
+        int fullBytes = ((WireCodec.PreEncoded) full.getPayload()).size();
+
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            request(ProductionMessage.MessageType.PRODUCTION_DATA, null);
+        }
+        long sharedFullNanos = (System.nanoTime() - start) / 100;
+
+        // Commandes réparties sur toute la ligne: chacune range sa copie et prend une version
+        int commands = Math.min(count, 20_000);
+        int stride = Math.max(1, count / commands);
+        start = System.nanoTime();
+        for (int i = 0; i < commands; i++) {
+            int id = topology.getMachineId((i * stride) % count);
+            request(ProductionMessage.MessageType.COMMAND,
+                    new ControlCommand(ControlCommand.CommandType.START_MACHINE, id, "bench"));
+        }
+        long commandNanos = (System.nanoTime() - start) / commands;
+
+        // État complet lu après chaque commande: le dernier snapshot publié, sans attendre sa reconstruction
+        int interleaved = Math.min(count, 2_000);
+        long readNanos = 0;
+        long maxReadNanos = 0;
+        for (int i = 0; i < interleaved; i++) {
+            int id = topology.getMachineId((i * stride) % count);
+            request(ProductionMessage.MessageType.COMMAND,
+                    new ControlCommand(ControlCommand.CommandType.STOP_MACHINE, id, "bench"));
+            start = System.nanoTime();
+            request(ProductionMessage.MessageType.PRODUCTION_DATA, null);
+            long elapsed = System.nanoTime() - start;
+            readNanos += elapsed;
+            maxReadNanos = Math.max(maxReadNanos, elapsed);
+        }
+
+        // Délai de publication: commande, puis attente d'un snapshot qui la contient
+        int probes = 20;
+        long publishNanos = 0;
+        for (int i = 0; i < probes; i++) {
+            int id = topology.getMachineId((i * stride) % count);
+            request(ProductionMessage.MessageType.COMMAND,
+                    new ControlCommand(ControlCommand.CommandType.START_MACHINE, id, "bench"));
+            long target = ProductionControlServer.versions.current();
+            start = System.nanoTime();
+            while (snapshotVersion() < target) {
+                Thread.sleep(0, 100_000);
+            }
+            publishNanos += System.nanoTime() - start;
+        }
+
+        start = System.nanoTime();
+        ProductionMessage delta = request(ProductionMessage.MessageType.PRODUCTION_DATA, 0L);
+        long deltaNanos = System.nanoTime() - start;
+
+        System.setOut(console);
+        System.out.println("=== Topologie: " + count + " machines, " + topology.getStations().size() + " station(s) ===");
+        System.out.printf("Chargement topologie:    %8.1f ms%n", parseNanos / 1e6);
+        System.out.printf("Initialisation ligne:    %8.1f ms%n", initNanos / 1e6);
+        System.out.printf("Mémoire retenue:         %8.1f Mo (%d octets/machine)%n",
+                retained / 1e6, count > 0 ? retained / count : 0);
+        System.out.printf("État complet (1er):      %8.1f ms, %d octets%n", firstFullNanos / 1e6, fullBytes);
+        System.out.printf("État complet (partagé):  %8.1f µs%n", sharedFullNanos / 1e3);
+        System.out.printf("Commande START_MACHINE:  %8.1f µs (moyenne sur %d)%n", commandNanos / 1e3, commands);
+        System.out.printf("État complet après cmd:  %8.1f µs (moyenne sur %d, max %.1f µs)%n",
+                readNanos / 1e3 / interleaved, interleaved, maxReadNanos / 1e3);
+        System.out.printf("Publication du snapshot: %8.1f ms (commande -> état complet à jour)%n",
+                publishNanos / 1e6 / probes);
+        System.out.printf("Delta depuis 0:          %8.1f ms (%s)%n", deltaNanos / 1e6, delta.getResponseMessage());
+        System.exit(0);
+    }
+
+    /**
+     * Topologie générée: même nombre de machines de chaque type, une station
+     */
+    private static PlantTopology generate(int machineCount) throws IOException {
+        StringBuilder config = new StringBuilder("station 100 Station-Benchmark\n");
+        for (Machine.PartType part : Machine.PartType.values()) {
+            config.append("zone ").append(part.name()).append(" 20\n");
+        }
+        Machine.MachineType[] types = Machine.MachineType.values();
+        for (int i = 0; i < types.length; i++) {
+            int share = machineCount / types.length + (i < machineCount % types.length ? 1 : 0);
+            config.append("machines ").append(share).append(' ').append(types[i].name()).append('\n');
+        }
+        return PlantTopology.parse(new BufferedReader(new StringReader(config.toString())), "benchmark");
+    }
+
+    private static ProductionMessage request(ProductionMessage.MessageType type, Object payload) {
+        return ProductionControlServer.ClientHandler.processMessage(new ProductionMessage(type, payload), null);
+    }
+
+    private static long snapshotVersion() {
+        Object data = ((WireCodec.PreEncoded) request(ProductionMessage.MessageType.PRODUCTION_DATA, null)
+                .getPayload()).getValue();
+        return (Long) ((Map<?, ?>) data).get("version");
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
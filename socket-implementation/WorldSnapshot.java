@@ -0,0 +1,220 @@
+package socket.server;
+
+import common.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * État complet de la ligne, immuable, publié derrière une seule référence volatile
+ *
+ * Les écrivains ne construisent pas de snapshot: chacun range la copie de l'objet modifié dans sa case
+ * (Slots) et marque son bloc modifié, sans toucher aux autres cases ni à une référence commune.
+ * Un seul publieur (ProductionControlServer.publishWorld) construit ensuite le snapshot suivant en ne
+ * relisant et réencodant que les blocs modifiés; les lecteurs prennent le dernier publié, sans verrou
+ * ni attente. Les objets contenus sont des copies qui ne sont plus modifiées.
+ * version: tous les changements de version <= version sont présents dans ce snapshot (certains
+ * changements plus récents peuvent l'être aussi: le delta suivant les renverra).
+ */
+final class WorldSnapshot {
+    final long version;
+    private final WireCodec.PreEncoded payload;
+
+    private WorldSnapshot(long version, WireCodec.PreEncoded payload) {
+        this.version = version;
+        this.payload = payload;
+    }
+
+    static WorldSnapshot empty() {
+        return of(0, new Slots<Machine>(), new Slots<AssemblyStation>(), new Slots<Alert>());
+    }
+
+    /**
+     * Snapshot des dernières copies rangées (publieur seulement: les segments encodés des blocs sont
+     * les siens). Lire version avant les cases: toute copie d'un changement de version <= version y est
+     * déjà rangée (copie rangée et bloc marqué avant l'attribution de sa version)
+     */
+    static WorldSnapshot of(long version, Slots<Machine> machines, Slots<AssemblyStation> stations,
+            Slots<Alert> alerts) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("version", version);
+        WireCodec.Segments machineList = machines.encoded();
+        data.put("machines", machineList);
+        WireCodec.Segments stationList = stations.encoded();
+        data.put("assemblyStations", stationList);
+        // Station principale (première déclarée) pour les clients qui n'en connaissent qu'une
+        data.put("assemblyStation", stationList.size() == 0 ? null : stationList.get(0));
+        // Fenêtre circulaire: remise dans l'ordre d'arrivée
+        WireCodec.PreEncoded alertList = alerts.encodedSorted(Comparator.comparingInt(Alert::getId));
+        data.put("alerts", alertList);
+        // Une seule recopie des segments, dans un tampon déjà à la bonne taille
+        int expected = machineList.length() + 2 * stationList.length() + alertList.size() + 256;
+        return new WorldSnapshot(version, WireCodec.preEncode(data, expected));
+    }
+
+    /**
+     * Données PRODUCTION_DATA, encodées une seule fois pour tous les lecteurs
+     */
+    WireCodec.PreEncoded payload() {
+        return payload;
+    }
+
+    /**
+     * Dernière copie publiée de chaque objet, par case: tableau découpé en blocs qui grandit à la demande.
+     * Ranger une copie ne touche que sa case (compare-and-set) et le marqueur de son bloc, pas le reste
+     * du tableau: une ligne de 100 000 machines ne coûte rien de plus à republier, et deux écrivains
+     * ne se gênent pas.
+     */
+    static final class Slots<T> {
+        private static final int CHUNK = 64;
+
+        private volatile Chunk[] chunks = new Chunk[0];
+
+        // Publieur seulement: dernière liste triée encodée (encodedSorted)
+        private WireCodec.PreEncoded sorted;
+
+        /**
+         * Ranger dans la case index la valeur calculée par change à partir de la valeur courante
+         * (recommencé si un autre écrivain est passé entre les deux). La copie étant faite après la lecture
+         * de la case, le dernier écrivain y laisse toujours le dernier état de l'objet.
+         * change peut rendre la valeur courante: la case est alors laissée telle quelle.
+         */
+        @SuppressWarnings("unchecked")
+        void update(int index, UnaryOperator<T> change) {
+            Chunk chunk = chunk(index / CHUNK);
+            int offset = index % CHUNK;
+            while (true) {
+                T current = (T) chunk.values.get(offset);
+                T value = change.apply(current);
+                if (value == current) {
+                    return;
+                }
+                if (chunk.values.compareAndSet(offset, current, value)) {
+                    chunk.markDirty();
+                    return;
+                }
+            }
+        }
+
+        void set(int index, T value) {
+            Chunk chunk = chunk(index / CHUNK);
+            chunk.values.set(index % CHUNK, value);
+            chunk.markDirty();
+        }
+
+        /**
+         * Liste encodée des éléments, dans l'ordre des cases (publieur seulement): seuls les blocs
+         * modifiés depuis l'appel précédent sont relus et réencodés, les autres segments sont repris
+         */
+        WireCodec.Segments encoded() {
+            Chunk[] current = chunks;
+            Object[][] items = new Object[current.length][];
+            byte[][] segments = new byte[current.length][];
+            for (int i = 0; i < current.length; i++) {
+                Chunk chunk = current[i];
+                if (chunk == null) {
+                    items[i] = Chunk.NONE;
+                    segments[i] = Chunk.EMPTY;
+                    continue;
+                }
+                chunk.refresh();
+                items[i] = chunk.items;
+                segments[i] = chunk.encoded;
+            }
+            return new WireCodec.Segments(items, segments);
+        }
+
+        /**
+         * Liste encodée triée par order (publieur seulement): réencodée entière, mais seulement si
+         * un bloc a changé depuis l'appel précédent (fenêtre d'alertes, bornée et peu modifiée)
+         */
+        @SuppressWarnings("unchecked")
+        WireCodec.PreEncoded encodedSorted(Comparator<? super T> order) {
+            Chunk[] current = chunks;
+            boolean changed = sorted == null;
+            for (Chunk chunk : current) {
+                if (chunk != null && chunk.dirty.get() && chunk.dirty.getAndSet(false)) {
+                    changed = true;
+                }
+            }
+            if (changed) {
+                List<T> list = new ArrayList<>();
+                for (Chunk chunk : current) {
+                    if (chunk == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < CHUNK; i++) {
+                        Object value = chunk.values.get(i);
+                        if (value != null) {
+                            list.add((T) value);
+                        }
+                    }
+                }
+                list.sort(order);
+                sorted = WireCodec.preEncode(list);
+            }
+            return sorted;
+        }
+
+        private Chunk chunk(int chunkIndex) {
+            Chunk[] current = chunks;
+            if (chunkIndex < current.length && current[chunkIndex] != null) {
+                return current[chunkIndex];
+            }
+            // Nouveau bloc (machine ajoutée, fenêtre d'alertes qui se remplit): rare, sous verrou
+            synchronized (this) {
+                current = chunks;
+                if (chunkIndex < current.length && current[chunkIndex] != null) {
+                    return current[chunkIndex];
+                }
+                // Tableau des blocs copié: les lecteurs sans verrou ne voient jamais un tableau modifié
+                current = Arrays.copyOf(current, chunkIndex < current.length ? current.length
+                        : Math.max(chunkIndex + 1, current.length * 2));
+                current[chunkIndex] = new Chunk();
+                chunks = current;
+                return current[chunkIndex];
+            }
+        }
+
+        /**
+         * Bloc de cases, marqué modifié par les écrivains; éléments et octets encodés au dernier passage
+         * du publieur (champs lus et écrits par lui seul)
+         */
+        private static final class Chunk {
+            private static final Object[] NONE = new Object[0];
+            private static final byte[] EMPTY = new byte[0];
+
+            final AtomicReferenceArray<Object> values = new AtomicReferenceArray<>(CHUNK);
+            final AtomicBoolean dirty = new AtomicBoolean(true);
+            Object[] items = NONE;
+            byte[] encoded = EMPTY;
+
+            void markDirty() {
+                // Lecture d'abord: pendant une rafale, le marqueur déjà posé n'est pas réécrit
+                if (!dirty.get()) {
+                    dirty.set(true);
+                }
+            }
+
+            /**
+             * Marqueur effacé avant la relecture: un changement rangé pendant la relecture remarque le bloc
+             * et sera repris au passage suivant
+             */
+            void refresh() {
+                if (!dirty.get() || !dirty.getAndSet(false)) {
+                    return;
+                }
+                List<Object> list = new ArrayList<>(CHUNK);
+                for (int i = 0; i < CHUNK; i++) {
+                    Object value = values.get(i);
+                    if (value != null) {
+                        list.add(value);
+                    }
+                }
+                items = list.toArray();
+                encoded = WireCodec.encodeItems(list);
+            }
+        }
+    }
+}